@@ -2,6 +2,8 @@ package com.kryptnostic.multivariate.gf2;
 
 import java.util.List;
 
+import cern.colt.bitvector.BitVector;
+
 import com.fasterxml.jackson.annotation.JsonTypeInfo;
 
 /**
@@ -25,6 +27,25 @@ public interface CompoundPolynomialFunction extends PolynomialFunction {
 
     CompoundPolynomialFunction copy();
 
+    /**
+     * Evaluates the chain on the backing words of an input vector and writes the result into a caller supplied buffer.
+     * Intermediate results are kept in per thread buffers, so once warmed up evaluation performs no allocation as long
+     * as every function in the chain supports word level evaluation.
+     * 
+     * @param input words of a vector of the chain's input length.
+     * @param output buffer that will be overwritten with the words of the output, which must hold at least
+     *            {@code ( getOutputLength() + 63 ) >>> 6} words.
+     */
+    void apply( long[] input, long[] output );
+
+    /**
+     * {@link BitVector} variant of {@link #apply(long[], long[])}.
+     * 
+     * @param input vector of the chain's input length.
+     * @param output vector of the chain's output length, which will be overwritten with the result.
+     */
+    void applyInto( BitVector input, BitVector output );
+
     /**
      * @return The number of polynomial functions in this compoud polynomial function.
      */
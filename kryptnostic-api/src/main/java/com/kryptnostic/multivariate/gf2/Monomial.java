@@ -79,9 +79,49 @@ public class Monomial extends BitVector {
         Preconditions.checkArgument(
                 size() == input.size(),
                 "Number of terms in input doesn't not much number of terms in Monomial." );
-        BitVector check = copy();
-        check.and( input );
-        return check.equals( this );
+        return eval( bits, 0, bits.length, input.elements() );
+    }
+
+    /**
+     * Evaluates the monomial directly on the backing words of an input vector, without allocating. The caller is
+     * responsible for making sure that the input has the same number of variables as the monomial.
+     * 
+     * @param input words of the vector on which to evaluate the monomial.
+     * @return True if the monomial has all corresponding input bits set to 1, false otherwise.
+     */
+    public boolean eval( long[] input ) {
+        return eval( bits, 0, bits.length, input );
+    }
+
+    /**
+     * Evaluates a monomial stored as raw words on the raw words of an input vector.
+     * 
+     * @param monomial words of the monomial.
+     * @param input words of the vector on which to evaluate the monomial.
+     * @return True if every bit set in {@code monomial} is also set in {@code input}, false otherwise.
+     */
+    public static boolean eval( long[] monomial, long[] input ) {
+        return eval( monomial, 0, monomial.length, input );
+    }
+
+    /**
+     * Evaluates a monomial stored at {@code offset} in an array of packed monomial words on the raw words of an input
+     * vector.
+     * 
+     * @param monomials packed words of one or more monomials.
+     * @param offset index of the first word of the monomial to evaluate.
+     * @param length number of words in the monomial.
+     * @param input words of the vector on which to evaluate the monomial.
+     * @return True if every bit set in the monomial is also set in {@code input}, false otherwise.
+     */
+    public static boolean eval( long[] monomials, int offset, int length, long[] input ) {
+        for ( int w = 0; w < length; ++w ) {
+            long mw = monomials[ offset + w ];
+            if ( ( input[ w ] & mw ) != mw ) {
+                return false;
+            }
+        }
+        return true;
     }
 
     public Monomial partialEval( BitVector input ) {
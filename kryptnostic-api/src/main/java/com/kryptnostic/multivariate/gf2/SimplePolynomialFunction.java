@@ -1,5 +1,7 @@
 package com.kryptnostic.multivariate.gf2;
 
+import java.util.List;
+
 import cern.colt.bitvector.BitVector;
 
 import com.codahale.metrics.annotation.Timed;
@@ -50,6 +52,55 @@ public interface SimplePolynomialFunction extends PolynomialFunction {
     @Timed
     SimplePolynomialFunction resolve( BitVector input );
 
+    /**
+     * Resolves the function against many prefixes of the same length, equivalent to calling
+     * {@link #resolve(BitVector)} on each of them, but sharing the work that only depends on the prefix length.
+     * 
+     * @param prefixes values of the leading input bits, which must all have the same length.
+     * @return the resolved function for each prefix, in order.
+     */
+    @Timed
+    List<SimplePolynomialFunction> resolveAll( List<BitVector> prefixes );
+
+    /**
+     * Evaluates the function on the backing words of an input vector and writes the result into a caller supplied
+     * buffer. Once warmed up, evaluation performs no allocation, so a caller that reuses its buffers produces no
+     * garbage.
+     * 
+     * @param input words of a vector of the function's input length. Bits beyond the input length are ignored.
+     * @param output buffer that will be overwritten with the words of the output, which must hold at least
+     *            {@code ( getOutputLength() + 63 ) >>> 6} words.
+     */
+    void apply( long[] input, long[] output );
+
+    /**
+     * Variant of {@link #apply(long[], long[])} for callers holding {@link BitVector}s. It cannot be an overload of
+     * {@code apply}, since {@link #apply(BitVector, BitVector)} already evaluates the function on split inputs.
+     * 
+     * @param input vector of the function's input length.
+     * @param output vector of the function's output length, which will be overwritten with the result.
+     */
+    void applyInto( BitVector input, BitVector output );
+
+    /**
+     * Evaluates the function on many independent inputs at once. Inputs are processed 64 at a time in bit-sliced form,
+     * so each monomial is evaluated for all 64 inputs with a single chain of word operations.
+     * 
+     * @param inputs vectors of the function's input length.
+     * @return the result of applying the function to each input, in the same order as the inputs.
+     */
+    @Timed
+    BitVector[] applyBatch( BitVector[] inputs );
+
+    /**
+     * Word level variant of {@link #applyBatch(BitVector[])}.
+     * 
+     * @param inputs the backing words of each input vector.
+     * @return the backing words of each output vector, in the same order as the inputs.
+     */
+    @Timed
+    long[][] applyBatch( long[][] inputs );
+
     @Timed
     SimplePolynomialFunction optimize();
 
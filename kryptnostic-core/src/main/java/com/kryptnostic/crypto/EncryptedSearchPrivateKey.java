@@ -13,6 +13,7 @@ import com.kryptnostic.bitwise.BitVectors;
 import com.kryptnostic.linear.EnhancedBitMatrix;
 import com.kryptnostic.linear.EnhancedBitMatrix.SingularMatrixException;
 import com.kryptnostic.multivariate.gf2.SimplePolynomialFunction;
+import com.kryptnostic.multivariate.polynomial.FunctionBundle;
 import com.kryptnostic.multivariate.polynomial.OptimizedPolynomialFunctionGF2;
 import com.kryptnostic.multivariate.polynomial.ParameterizedPolynomialFunctionGF2;
 
@@ -83,12 +84,24 @@ public class EncryptedSearchPrivateKey {
     public Pair<SimplePolynomialFunction, SimplePolynomialFunction> getQueryHasherPair(
             SimplePolynomialFunction globalHash,
             PrivateKey privateKey ) throws SingularMatrixException {
-        SimplePolynomialFunction hashOfDecryptor = globalHash.compose( privateKey.getMirroredDecryptor() );
+        SimplePolynomialFunction hashOfDecryptor = privateKey.getPreparedMirroredDecryptor().composeWith( globalHash );
         return Pair.of(
                 rightMultiply( hashOfDecryptor, leftSquaringMatrix ),
                 leftMultiply( hashOfDecryptor, rightSquaringMatrix ) );
     }
 
+    /**
+     * Both halves of the query hasher pair have the monomials of the hashed decryptor, so bundling them evaluates those
+     * monomials, and any pipelines, once for both hashes.
+     * 
+     * @return a bundle of the left and right query hashers, in that order.
+     */
+    public FunctionBundle getQueryHasherBundle( SimplePolynomialFunction globalHash, PrivateKey privateKey )
+            throws SingularMatrixException {
+        Pair<SimplePolynomialFunction, SimplePolynomialFunction> pair = getQueryHasherPair( globalHash, privateKey );
+        return FunctionBundle.of( pair.getLeft(), pair.getRight() );
+    }
+
     public static SimplePolynomialFunction rightMultiply( SimplePolynomialFunction f, EnhancedBitMatrix rhs ) {
         BitVector[] contributions = f.getContributions();
         BitVector[] newContributions = new BitVector[ contributions.length ];
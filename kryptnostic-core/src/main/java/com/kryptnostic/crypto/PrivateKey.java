@@ -11,6 +11,7 @@ import org.slf4j.LoggerFactory;
 import cern.colt.bitvector.BitVector;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.google.common.base.Preconditions;
 import com.kryptnostic.bitwise.BitVectors;
@@ -18,6 +19,7 @@ import com.kryptnostic.linear.EnhancedBitMatrix;
 import com.kryptnostic.linear.EnhancedBitMatrix.NonSquareMatrixException;
 import com.kryptnostic.linear.EnhancedBitMatrix.SingularMatrixException;
 import com.kryptnostic.multivariate.gf2.SimplePolynomialFunction;
+import com.kryptnostic.multivariate.polynomial.PreparedInner;
 import com.kryptnostic.multivariate.util.ParameterizedPolynomialFunctions;
 import com.kryptnostic.multivariate.util.SimplePolynomialFunctions;
 
@@ -68,6 +70,14 @@ public class PrivateKey {
     private final BitVector                  mixingConstant;
     private final int                        longsPerBlock;
 
+    /*
+     * Decryptors prepared for composition, which are built on first use and shared by every homomorphic function
+     * computed with this key.
+     */
+    private volatile PreparedInner           preparedDecryptor;
+    private volatile PreparedInner           preparedBinaryDecryptor;
+    private volatile PreparedInner           preparedMirroredDecryptor;
+
     public PrivateKey( int cipherTextBlockLength, int plainTextBlockLength ) {
         this( cipherTextBlockLength, plainTextBlockLength, DEFAULT_CHAIN_LENGTH );
     }
@@ -215,11 +225,13 @@ public class PrivateKey {
     }
 
     public SimplePolynomialFunction computeHomomorphicFunction( SimplePolynomialFunction f ) {
-        return encrypt( f.compose( decryptor ), SimplePolynomialFunctions.randomManyToOneLinearCombination( E1.cols() ) );
+        return encrypt(
+                getPreparedDecryptor().composeWith( f ),
+                SimplePolynomialFunctions.randomManyToOneLinearCombination( E1.cols() ) );
     }
 
     public SimplePolynomialFunction computeBinaryHomomorphicFunction( SimplePolynomialFunction f ) {
-        return encryptBinary( f.compose( SimplePolynomialFunctions.concatenateInputsAndOutputs( decryptor, decryptor ) ) );
+        return encryptBinary( getPreparedBinaryDecryptor().composeWith( f ) );
     }
 
     public EnhancedBitMatrix getD() {
@@ -274,8 +286,24 @@ public class PrivateKey {
     }
 
     byte[] decrypt( byte[] ciphertext ) {
+        int blockBytes = longsPerBlock << 3;
+        Preconditions.checkArgument(
+                ciphertext.length % blockBytes == 0,
+                "Ciphertext length must be a multiple of the ciphertext block length." );
         ByteBuffer buffer = ByteBuffer.wrap( ciphertext );
         ByteBuffer decryptedBytes = ByteBuffer.allocate( ciphertext.length >>> 1 );
+        int blockCount = ciphertext.length / blockBytes;
+        if ( blockCount >= PublicKey.MIN_BATCH_BLOCKS ) {
+            BitVector[] blocks = new BitVector[ blockCount ];
+            for ( int b = 0; b < blockCount; ++b ) {
+                blocks[ b ] = fromBuffer( buffer, longsPerBlock );
+            }
+            for ( BitVector plaintextVector : decryptor.applyBatch( blocks ) ) {
+                toBuffer( decryptedBytes, plaintextVector );
+            }
+            return decryptedBytes.array();
+        }
+
         while ( buffer.hasRemaining() ) {
             BitVector X = fromBuffer( buffer, longsPerBlock );
             BitVector plaintextVector = decryptor.apply( X );
@@ -292,6 +320,47 @@ public class PrivateKey {
         return mirroredDecryptor;
     }
 
+    /**
+     * @return the decryptor prepared for composing many outer functions with it.
+     */
+    @JsonIgnore
+    public PreparedInner getPreparedDecryptor() {
+        PreparedInner prepared = preparedDecryptor;
+        if ( prepared == null ) {
+            prepared = new PreparedInner( decryptor );
+            preparedDecryptor = prepared;
+        }
+        return prepared;
+    }
+
+    /**
+     * @return the decryptor of two concatenated ciphertexts prepared for composing many outer functions with it.
+     */
+    @JsonIgnore
+    public PreparedInner getPreparedBinaryDecryptor() {
+        PreparedInner prepared = preparedBinaryDecryptor;
+        if ( prepared == null ) {
+            prepared = new PreparedInner( SimplePolynomialFunctions.concatenateInputsAndOutputs(
+                    decryptor,
+                    decryptor ) );
+            preparedBinaryDecryptor = prepared;
+        }
+        return prepared;
+    }
+
+    /**
+     * @return the mirrored decryptor prepared for composing many outer functions with it.
+     */
+    @JsonIgnore
+    public PreparedInner getPreparedMirroredDecryptor() {
+        PreparedInner prepared = preparedMirroredDecryptor;
+        if ( prepared == null ) {
+            prepared = new PreparedInner( mirroredDecryptor );
+            preparedMirroredDecryptor = prepared;
+        }
+        return prepared;
+    }
+
     public SimplePolynomialFunction buildDecryptor() throws SingularMatrixException {
         /*
          * G( x ) = Inv( A + B ) (L + D) x \mathcal D( x ) = L x + A G( x ) + c'_1 h'_1 + c'_2 h'_2
@@ -29,6 +29,11 @@ public class PublicKey {
     private static final String              PADDING_STRATEGY_PROPERTY = "padding-strategy";
     private static final String              LONGS_PER_BLOCK_PROPERTY  = "longs-per-block";
 
+    /*
+     * Below this many blocks the cost of bit-slicing outweighs evaluating each block on its own.
+     */
+    static final int                         MIN_BATCH_BLOCKS          = 16;
+
     private static final Logger              logger                    = LoggerFactory.getLogger( PublicKey.class );
     // TODO: Replace with bouncy castle or real number generator.
     private static final Random              r                         = new Random( 0 );
@@ -92,23 +97,31 @@ public class PublicKey {
          * 1) Pad the data so it aligns
          */
         plaintext = paddingStrategy.pad( plaintext );
+        int blockBytes = longsPerBlock << 3;
+        Preconditions.checkArgument(
+                plaintext.length % blockBytes == 0,
+                "Padded plaintext length must be a multiple of the plaintext block length." );
 
         ByteBuffer buffer = ByteBuffer.wrap( plaintext );
         ByteBuffer outBuf = ByteBuffer.allocate( plaintext.length << 1 );
 
         int blockLen = longsPerBlock << 1;
-        while ( buffer.remaining() > 0 ) {
-            long[] lpt = new long[ blockLen ];
-
-            for ( int i = 0; i < longsPerBlock; ++i ) {
-                lpt[ i ] = buffer.getLong();
+        int blockCount = plaintext.length / blockBytes;
+        if ( blockCount >= MIN_BATCH_BLOCKS ) {
+            long[][] blocks = new long[ blockCount ][];
+            for ( int b = 0; b < blockCount; ++b ) {
+                blocks[ b ] = readBlock( buffer, blockLen );
             }
-
-            for ( int i = longsPerBlock; i < blockLen; ++i ) {
-                lpt[ i ] = 0L;// r.nextLong();
+            for ( long[] ciphertext : encrypter.applyBatch( blocks ) ) {
+                for ( long lct : ciphertext ) {
+                    outBuf.putLong( lct );
+                }
             }
+            return outBuf.array();
+        }
 
-            long[] ciphertext = encrypt( lpt );
+        while ( buffer.remaining() > 0 ) {
+            long[] ciphertext = encrypt( readBlock( buffer, blockLen ) );
             for ( long lct : ciphertext ) {
                 outBuf.putLong( lct );
             }
@@ -117,6 +130,20 @@ public class PublicKey {
         return outBuf.array();
     }
 
+    private long[] readBlock( ByteBuffer buffer, int blockLen ) {
+        long[] lpt = new long[ blockLen ];
+
+        for ( int i = 0; i < longsPerBlock; ++i ) {
+            lpt[ i ] = buffer.getLong();
+        }
+
+        for ( int i = longsPerBlock; i < blockLen; ++i ) {
+            lpt[ i ] = 0L;// r.nextLong();
+        }
+
+        return lpt;
+    }
+
     long[] encrypt( long[] plaintext ) {
         logger.debug( "Expected plaintext block length: {}", encrypter.getInputLength() );
         logger.debug( "Observed plaintext block length: {}", plaintext.length * 8 * 8 );
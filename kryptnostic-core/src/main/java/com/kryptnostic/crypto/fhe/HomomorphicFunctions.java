@@ -12,6 +12,7 @@ import com.kryptnostic.crypto.PrivateKey;
 import com.kryptnostic.multivariate.gf2.CompoundPolynomialFunction;
 import com.kryptnostic.multivariate.gf2.Monomial;
 import com.kryptnostic.multivariate.gf2.SimplePolynomialFunction;
+import com.kryptnostic.multivariate.polynomial.FunctionBundle;
 import com.kryptnostic.multivariate.polynomial.OptimizedPolynomialFunctionGF2;
 import com.kryptnostic.multivariate.polynomial.ParameterizedPolynomialFunctionGF2;
 import com.kryptnostic.multivariate.util.ParameterizedPolynomialFunctions;
@@ -50,6 +51,20 @@ public class HomomorphicFunctions {
     }
 
     public static SimplePolynomialFunction HomomorphicHalfAdder(int length, PrivateKey privateKey) {
+        SimplePolynomialFunction[] parts = HomomorphicHalfAdderParts(length, privateKey);
+        // return privateKey.computeBinaryHomomorphicFunction( BasicOperators.HALF_ADDER( 64 ) ) ;
+        return SimplePolynomialFunctions.concatenate(parts[0], parts[2]);
+    }
+
+    /**
+     * Bundles the xor, and and carry portions of the half adder, so that a single pass over their shared monomials and
+     * pipelines evaluates all three.
+     */
+    public static FunctionBundle HomomorphicHalfAdderBundle(int length, PrivateKey privateKey) {
+        return FunctionBundle.of(HomomorphicHalfAdderParts(length, privateKey));
+    }
+
+    private static SimplePolynomialFunction[] HomomorphicHalfAdderParts(int length, PrivateKey privateKey) {
         SimplePolynomialFunction xor = privateKey.computeBinaryHomomorphicFunction(SimplePolynomialOperators
                 .BINARY_XOR(length));
         logger.info("Generated XOR portion of half adder.");
@@ -58,9 +73,8 @@ public class HomomorphicFunctions {
         logger.info("Generated AND portion of half adder.");
         SimplePolynomialFunction carry = privateKey.computeBinaryHomomorphicFunction(SimplePolynomialOperators.LSH(
                 length, 1).compose(SimplePolynomialOperators.BINARY_AND(length)));
-        // return privateKey.computeBinaryHomomorphicFunction( BasicOperators.HALF_ADDER( 64 ) ) ;
         logger.debug("Generated carry portion of half adder");
-        return SimplePolynomialFunctions.concatenate(xor, carry);
+        return new SimplePolynomialFunction[] { xor, and, carry };
     }
 
     // TODO: Fix this to support parameterized functions
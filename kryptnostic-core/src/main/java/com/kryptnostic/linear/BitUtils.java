@@ -14,4 +14,91 @@ public final class BitUtils {
         l ^= l >> 1;
         return l & 1L;
     }
+
+    /**
+     * Transposes the 64 x 64 bit matrix stored in {@code block[ offset ]} through {@code block[ offset + 63 ]} in
+     * place, so that bit {@code c} of row {@code r} becomes bit {@code r} of row {@code c}. Bits are numbered from the
+     * least significant bit, matching {@link cern.colt.bitvector.BitVector}.
+     *
+     * @param block array containing the matrix.
+     * @param offset index of the first row of the matrix.
+     */
+    public static void transpose( long[] block, int offset ) {
+        long m = 0x00000000FFFFFFFFL;
+        for ( int j = 32; j != 0; j >>>= 1, m ^= m << j ) {
+            for ( int k = 0; k < 64; k = ( ( k | j ) + 1 ) & ~j ) {
+                int lo = offset + k;
+                int hi = lo + j;
+                long t = ( ( block[ lo ] >>> j ) ^ block[ hi ] ) & m;
+                block[ lo ] ^= t << j;
+                block[ hi ] ^= t;
+            }
+        }
+    }
+
+    /**
+     * Bit-slices up to 64 vectors, so that bit {@code j} of {@code sliced[ i ]} is bit {@code i} of vector
+     * {@code offset + j}. Lanes beyond {@code count} are cleared.
+     *
+     * @param vectors words of the vectors to slice.
+     * @param offset index of the first vector to slice.
+     * @param count number of vectors to slice, at most 64.
+     * @param words number of words to read from each vector.
+     * @param sliced destination, which must hold at least {@code words << 6} longs.
+     */
+    public static void slice( long[][] vectors, int offset, int count, int words, long[] sliced ) {
+        for ( int w = 0; w < words; ++w ) {
+            int base = w << 6;
+            for ( int j = 0; j < 64; ++j ) {
+                sliced[ base + j ] = j < count ? vectors[ offset + j ][ w ] : 0L;
+            }
+            Kernels.get().transpose( sliced, base );
+        }
+    }
+
+    /**
+     * Inverse of {@link #slice(long[][], int, int, int, long[])}, which xors the lanes of {@code sliced} into the
+     * words of vectors {@code offset} through {@code offset + count - 1}. The contents of {@code sliced} are destroyed.
+     *
+     * @param sliced bit-sliced words, holding at least {@code words << 6} longs.
+     * @param words number of words in each destination vector.
+     * @param vectors destination vectors.
+     * @param offset index of the first destination vector.
+     * @param count number of lanes to write, at most 64.
+     */
+    public static void unslice( long[] sliced, int words, long[][] vectors, int offset, int count ) {
+        for ( int w = 0; w < words; ++w ) {
+            int base = w << 6;
+            Kernels.get().transpose( sliced, base );
+            for ( int j = 0; j < count; ++j ) {
+                vectors[ offset + j ][ w ] ^= sliced[ base + j ];
+            }
+        }
+    }
+
+    /**
+     * Copies the first {@code length} bits of {@code src} into {@code dst} starting at bit {@code offset}, as
+     * {@link cern.colt.bitvector.BitVector#replaceFromToWith(int, int, cern.colt.bitvector.BitVector, int)} would, but
+     * on raw words. Bits of {@code dst} outside of the copied range are left untouched.
+     *
+     * @param src words to copy from.
+     * @param length number of bits to copy.
+     * @param dst words to copy into.
+     * @param offset index of the first destination bit.
+     */
+    public static void copyBits( long[] src, int length, long[] dst, int offset ) {
+        int shift = offset & 63;
+        int base = offset >>> 6;
+        int words = ( length + 63 ) >>> 6;
+        for ( int w = 0; w < words; ++w ) {
+            int bits = Math.min( 64, length - ( w << 6 ) );
+            long mask = bits == 64 ? -1L : ( 1L << bits ) - 1;
+            long word = src[ w ] & mask;
+            dst[ base + w ] = ( dst[ base + w ] & ~( mask << shift ) ) | ( word << shift );
+            if ( shift != 0 && bits > 64 - shift ) {
+                long highMask = mask >>> ( 64 - shift );
+                dst[ base + w + 1 ] = ( dst[ base + w + 1 ] & ~highMask ) | ( word >>> ( 64 - shift ) );
+            }
+        }
+    }
 }
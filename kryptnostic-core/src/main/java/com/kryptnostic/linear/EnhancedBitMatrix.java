@@ -389,19 +389,13 @@ public class EnhancedBitMatrix implements Serializable {
     }
 
     public BitVector multiply( BitVector v ) {
-        // TODO: Optimize this a little better.
         Preconditions.checkArgument( v.size() == cols() , "Vector must the same length as the number of columns in the matrix." );
         BitVector result = new BitVector( rows.size() );
+        WordKernels kernels = Kernels.get();
+        long[] words = v.elements();
+        int length = ( v.size() + 63 ) >>> 6;
         for ( int i = 0; i < rows.size(); ++i ) {
-            BitVector row = rows.get( i );
-            BitVector prod = row.copy();
-            prod.and( v );
-
-            long r = 0L;
-            for ( long l : prod.elements() ) {
-                r ^= l;
-            }
-            if ( BitUtils.parity( r ) == 1L ) {
+            if ( kernels.andParity( rows.get( i ).elements(), words, length ) ) {
                 result.putQuick( i, true );
             }
         }
@@ -0,0 +1,94 @@
+package com.kryptnostic.linear;
+
+import java.util.List;
+
+import cern.colt.bitvector.BitVector;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Matrix over GF(2) prepared for repeated products with a row vector, using the method of the Four Russians. Rows are
+ * split into groups of {@link #GROUP_BITS}, and every linear combination of the rows in a group is tabulated, so a
+ * product costs one table lookup per group instead of one row xor per set bit of the vector.
+ */
+public final class FourRussiansMatrix {
+    public static final int GROUP_BITS  = 8;
+    private static final int GROUP_SIZE = 1 << GROUP_BITS;
+
+    private final int        rows;
+    private final int        cols;
+    private final int        rowLength;
+    private final long[]     tables;
+
+    /**
+     * @param matrixRows rows of the matrix, which must all have the same length.
+     * @param cols number of columns of the matrix.
+     */
+    public FourRussiansMatrix( List<BitVector> matrixRows, int cols ) {
+        this.rows = matrixRows.size();
+        this.cols = cols;
+        this.rowLength = ( cols + 63 ) >>> 6;
+        int groups = ( rows + GROUP_BITS - 1 ) / GROUP_BITS;
+        this.tables = new long[ groups * GROUP_SIZE * rowLength ];
+
+        for ( int g = 0; g < groups; ++g ) {
+            int tableOffset = g * GROUP_SIZE * rowLength;
+            /*
+             * Each entry is the entry without its highest bit xored with the row of that bit, so every entry costs a
+             * single row xor.
+             */
+            for ( int entry = 1; entry < GROUP_SIZE; ++entry ) {
+                int high = 31 - Integer.numberOfLeadingZeros( entry );
+                int row = g * GROUP_BITS + high;
+                int dst = tableOffset + entry * rowLength;
+                int src = tableOffset + ( entry ^ ( 1 << high ) ) * rowLength;
+                if ( row < rows ) {
+                    BitVector r = matrixRows.get( row );
+                    Preconditions.checkArgument( r.size() == cols, "All rows must have the same number of columns." );
+                    long[] words = r.elements();
+                    for ( int w = 0; w < rowLength; ++w ) {
+                        tables[ dst + w ] = tables[ src + w ] ^ words[ w ];
+                    }
+                } else {
+                    System.arraycopy( tables, src, tables, dst, rowLength );
+                }
+            }
+        }
+    }
+
+    public int rows() {
+        return rows;
+    }
+
+    public int cols() {
+        return cols;
+    }
+
+    /**
+     * Xors the product of the row vector {@code v} with this matrix into {@code result}. Bits of {@code v} beyond the
+     * number of rows are ignored.
+     *
+     * @param v words of a vector with at least as many bits as this matrix has rows.
+     * @param result words of the output, which are accumulated into rather than overwritten.
+     */
+    public void multiplyInto( long[] v, long[] result ) {
+        int groups = tables.length / ( GROUP_SIZE * rowLength );
+        WordKernels kernels = Kernels.get();
+        for ( int g = 0; g < groups; ++g ) {
+            int bit = g * GROUP_BITS;
+            int entry = (int) ( v[ bit >>> 6 ] >>> ( bit & 63 ) ) & ( GROUP_SIZE - 1 );
+            if ( entry != 0 ) {
+                kernels.xor( tables, ( g * GROUP_SIZE + entry ) * rowLength, result, 0, rowLength );
+            }
+        }
+    }
+
+    public BitVector multiply( BitVector v ) {
+        Preconditions.checkArgument(
+                v.size() >= rows,
+                "Vector must have at least as many bits as the matrix has rows." );
+        long[] result = new long[ rowLength ];
+        multiplyInto( v.elements(), result );
+        return new BitVector( result, cols );
+    }
+}
@@ -0,0 +1,92 @@
+package com.kryptnostic.linear;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Random;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Selects the {@link WordKernels} used by the library. The first implementation registered with
+ * {@link ServiceLoader} that can be loaded on the running JVM and agrees with {@link ScalarWordKernels} on a quick self
+ * check is used, so an optional kernel module only has to be on the classpath to take effect. When no implementation
+ * qualifies, or the {@value #SCALAR_PROPERTY} system property is set to true, the scalar kernels are used.
+ *
+ * The selection is made once and held in a static final field, so callers that copy it into their own static final
+ * field only ever see a single implementation, which the JIT can inline.
+ */
+public final class Kernels {
+    public static final String      SCALAR_PROPERTY = "kryptnostic.kernels.scalar";
+
+    private static final Logger      logger          = LoggerFactory.getLogger( Kernels.class );
+    private static final WordKernels kernels         = load();
+
+    private Kernels() {}
+
+    /**
+     * @return the word kernels selected for this JVM.
+     */
+    public static WordKernels get() {
+        return kernels;
+    }
+
+    private static WordKernels load() {
+        WordKernels scalar = new ScalarWordKernels();
+        if ( Boolean.getBoolean( SCALAR_PROPERTY ) ) {
+            return scalar;
+        }
+        Iterator<WordKernels> providers = ServiceLoader.load( WordKernels.class ).iterator();
+        while ( true ) {
+            try {
+                if ( !providers.hasNext() ) {
+                    break;
+                }
+                WordKernels candidate = providers.next();
+                if ( agrees( candidate, scalar ) ) {
+                    logger.info( "Using word kernels {}.", candidate.getClass().getName() );
+                    return candidate;
+                }
+                logger.warn( "Word kernels {} disagree with the scalar kernels.", candidate.getClass().getName() );
+            } catch ( ServiceConfigurationError | LinkageError | RuntimeException e ) {
+                /*
+                 * Kernels built against a newer JDK, or against a module that was not enabled, fail to load here.
+                 */
+                logger.debug( "Unable to load word kernels, skipping.", e );
+            }
+        }
+        return scalar;
+    }
+
+    private static boolean agrees( WordKernels candidate, WordKernels scalar ) {
+        Random r = new Random( 0L );
+        for ( int length = 0; length < 20; ++length ) {
+            long[] a = new long[ length + 3 ];
+            long[] b = new long[ length + 3 ];
+            for ( int w = 0; w < a.length; ++w ) {
+                a[ w ] = r.nextLong();
+                b[ w ] = r.nextLong();
+            }
+            if ( candidate.andParity( a, b, length ) != scalar.andParity( a, b, length ) ) {
+                return false;
+            }
+            long[] expected = b.clone();
+            long[] actual = b.clone();
+            scalar.xor( a, 1, expected, 2, length );
+            candidate.xor( a, 1, actual, 2, length );
+            if ( !Arrays.equals( expected, actual ) ) {
+                return false;
+            }
+        }
+        long[] expected = new long[ 65 ];
+        for ( int w = 0; w < expected.length; ++w ) {
+            expected[ w ] = r.nextLong();
+        }
+        long[] actual = expected.clone();
+        scalar.transpose( expected, 1 );
+        candidate.transpose( actual, 1 );
+        return Arrays.equals( expected, actual );
+    }
+}
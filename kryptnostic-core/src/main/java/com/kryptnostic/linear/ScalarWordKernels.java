@@ -0,0 +1,27 @@
+package com.kryptnostic.linear;
+
+/**
+ * Word kernels written as plain loops over longs, which run on any JVM.
+ */
+public final class ScalarWordKernels implements WordKernels {
+    @Override
+    public void xor( long[] src, int srcOffset, long[] dst, int dstOffset, int length ) {
+        for ( int w = 0; w < length; ++w ) {
+            dst[ dstOffset + w ] ^= src[ srcOffset + w ];
+        }
+    }
+
+    @Override
+    public boolean andParity( long[] a, long[] b, int length ) {
+        long r = 0L;
+        for ( int w = 0; w < length; ++w ) {
+            r ^= a[ w ] & b[ w ];
+        }
+        return ( Long.bitCount( r ) & 1 ) != 0;
+    }
+
+    @Override
+    public void transpose( long[] block, int offset ) {
+        BitUtils.transpose( block, offset );
+    }
+}
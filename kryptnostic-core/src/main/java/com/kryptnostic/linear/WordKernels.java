@@ -0,0 +1,28 @@
+package com.kryptnostic.linear;
+
+/**
+ * Word loops that dominate evaluation, behind an interface so that an implementation using wider registers than a
+ * long can be plugged in at runtime. Implementations are discovered by {@link Kernels} through
+ * {@link java.util.ServiceLoader}, and {@link ScalarWordKernels} is used when none is available.
+ *
+ * Implementations must be stateless and safe for concurrent use.
+ */
+public interface WordKernels {
+    /**
+     * Xors {@code length} words of {@code src} starting at {@code srcOffset} into {@code dst} starting at
+     * {@code dstOffset}.
+     */
+    void xor( long[] src, int srcOffset, long[] dst, int dstOffset, int length );
+
+    /**
+     * @return the parity of the bitwise and of the first {@code length} words of {@code a} and {@code b}, which is
+     *         their inner product over GF(2).
+     */
+    boolean andParity( long[] a, long[] b, int length );
+
+    /**
+     * Transposes the 64 x 64 bit matrix stored in {@code block[ offset ]} through {@code block[ offset + 63 ]} in
+     * place, as {@link BitUtils#transpose(long[], int)} does.
+     */
+    void transpose( long[] block, int offset );
+}
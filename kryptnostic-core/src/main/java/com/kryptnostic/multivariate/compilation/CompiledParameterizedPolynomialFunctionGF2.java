@@ -0,0 +1,93 @@
+package com.kryptnostic.multivariate.compilation;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import cern.colt.bitvector.BitVector;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.base.Preconditions;
+import com.kryptnostic.multivariate.gf2.CompoundPolynomialFunction;
+import com.kryptnostic.multivariate.gf2.Monomial;
+import com.kryptnostic.multivariate.polynomial.ParameterizedPolynomialFunctionGF2;
+
+/**
+ * Parameterized polynomial function whose pipelines are evaluated as usual, but whose base monomials are evaluated by
+ * classes generated for its exact monomials and contributions.
+ *
+ * Serialized like any parameterized function, and compiled again when deserialized.
+ */
+public class CompiledParameterizedPolynomialFunctionGF2 extends ParameterizedPolynomialFunctionGF2 implements
+        CompiledPolynomialFunction {
+    private static final long             serialVersionUID = 4407766410291839254L;
+
+    private final transient CompiledTerms terms;
+
+    CompiledParameterizedPolynomialFunctionGF2( ParameterizedPolynomialFunctionGF2 source, CompiledTerms terms ) {
+        super(
+                source.getInputLength(),
+                source.getOutputLength(),
+                source.getMonomials(),
+                source.getContributions(),
+                source.getPipelines() );
+        this.terms = terms;
+    }
+
+    @JsonCreator
+    public static CompiledParameterizedPolynomialFunctionGF2 fromTerms(
+            @JsonProperty( INPUT_LENGTH_PROPERTY ) int inputLength,
+            @JsonProperty( OUTPUT_LENGTH_PROPERTY ) int outputLength,
+            @JsonProperty( MONOMIALS_PROPERTY ) Monomial[] monomials,
+            @JsonProperty( CONTRIBUTIONS_PROPERTY ) BitVector[] contributions,
+            @JsonProperty( PIPELINES_PROPERTY ) List<CompoundPolynomialFunction> pipelines ) {
+        return (CompiledParameterizedPolynomialFunctionGF2) PolynomialFunctionCompiler
+                .compile( new ParameterizedPolynomialFunctionGF2(
+                        inputLength,
+                        outputLength,
+                        monomials,
+                        contributions,
+                        pipelines ) );
+    }
+
+    /*
+     * The transient compiled terms are not restored by Java serialization, so the function is compiled again.
+     */
+    private Object readResolve() {
+        return fromTerms( inputLength, outputLength, monomials, contributions, getPipelines() );
+    }
+
+    @Override
+    public BitVector apply( BitVector input ) {
+        if ( !terms.isCompiled() ) {
+            return super.apply( input );
+        }
+        Preconditions.checkArgument(
+                input.size() == inputLength,
+                "Input length must match the input length of the function." );
+        long[] result = new long[ ( outputLength + 63 ) >>> 6 ];
+        terms.evaluate( parameterize( input.elements() ), result );
+        return new BitVector( result, outputLength );
+    }
+
+    @Override
+    public void apply( long[] input, long[] output ) {
+        if ( terms.isCompiled() ) {
+            terms.evaluate( parameterize( input ), output );
+        } else {
+            super.apply( input, output );
+        }
+    }
+
+    @JsonIgnore
+    @Override
+    public boolean isCompiled() {
+        return terms.isCompiled();
+    }
+
+    @Override
+    public long getCompilationTime( TimeUnit unit ) {
+        return terms.getCompilationTime( unit );
+    }
+}
@@ -0,0 +1,22 @@
+package com.kryptnostic.multivariate.compilation;
+
+import java.util.concurrent.TimeUnit;
+
+import com.kryptnostic.multivariate.gf2.SimplePolynomialFunction;
+
+/**
+ * Polynomial function produced by {@link PolynomialFunctionCompiler}.
+ */
+public interface CompiledPolynomialFunction extends SimplePolynomialFunction {
+    /**
+     * @return true if evaluation runs through generated code, false if the function exceeded the size limit of the
+     *         compiler and is evaluated by the interpreter.
+     */
+    boolean isCompiled();
+
+    /**
+     * @param unit of the returned duration.
+     * @return time spent generating and loading the evaluator classes for this function.
+     */
+    long getCompilationTime( TimeUnit unit );
+}
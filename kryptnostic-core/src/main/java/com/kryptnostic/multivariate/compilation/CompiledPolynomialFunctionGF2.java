@@ -0,0 +1,93 @@
+package com.kryptnostic.multivariate.compilation;
+
+import java.util.concurrent.TimeUnit;
+
+import cern.colt.bitvector.BitVector;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.base.Preconditions;
+import com.kryptnostic.multivariate.gf2.Monomial;
+import com.kryptnostic.multivariate.gf2.SimplePolynomialFunction;
+import com.kryptnostic.multivariate.polynomial.OptimizedPolynomialFunctionGF2;
+
+/**
+ * Polynomial function evaluated by classes generated for its exact monomials and contributions. All algebraic
+ * operations behave exactly as they do for {@link OptimizedPolynomialFunctionGF2}.
+ *
+ * Only the monomials and contributions are serialized. The generated classes exist only in the process that compiled
+ * them, so deserializing a compiled function compiles it again.
+ */
+public class CompiledPolynomialFunctionGF2 extends OptimizedPolynomialFunctionGF2 implements
+        CompiledPolynomialFunction {
+    private static final long                serialVersionUID = -6622005862612233751L;
+
+    private final transient CompiledTerms    terms;
+    private final transient SimplePolynomialFunction interpreter;
+
+    CompiledPolynomialFunctionGF2( SimplePolynomialFunction source, CompiledTerms terms ) {
+        super( source.getInputLength(), source.getOutputLength(), source.getMonomials(), source.getContributions() );
+        this.terms = terms;
+        this.interpreter = terms.isCompiled() ? null : source.optimize();
+    }
+
+    @JsonCreator
+    public static CompiledPolynomialFunctionGF2 fromTerms(
+            @JsonProperty( INPUT_LENGTH_PROPERTY ) int inputLength,
+            @JsonProperty( OUTPUT_LENGTH_PROPERTY ) int outputLength,
+            @JsonProperty( MONOMIALS_PROPERTY ) Monomial[] monomials,
+            @JsonProperty( CONTRIBUTIONS_PROPERTY ) BitVector[] contributions ) {
+        return (CompiledPolynomialFunctionGF2) PolynomialFunctionCompiler.compile( new OptimizedPolynomialFunctionGF2(
+                inputLength,
+                outputLength,
+                monomials,
+                contributions ) );
+    }
+
+    /*
+     * The transient compiled terms are not restored by Java serialization, so the function is compiled again.
+     */
+    private Object readResolve() {
+        return fromTerms( inputLength, outputLength, monomials, contributions );
+    }
+
+    @Override
+    public BitVector apply( BitVector input ) {
+        if ( !terms.isCompiled() ) {
+            return interpreter.apply( input );
+        }
+        Preconditions.checkArgument(
+                input.size() == inputLength,
+                "Input length must match the input length of the function." );
+        return new BitVector( terms.evaluate( input.elements() ), outputLength );
+    }
+
+    @Override
+    public void apply( long[] input, long[] output ) {
+        if ( terms.isCompiled() ) {
+            terms.evaluate( input, output );
+        } else {
+            interpreter.apply( input, output );
+        }
+    }
+
+    /**
+     * Already compiled, so there is nothing left to do.
+     */
+    @Override
+    public SimplePolynomialFunction optimize() {
+        return this;
+    }
+
+    @JsonIgnore
+    @Override
+    public boolean isCompiled() {
+        return terms.isCompiled();
+    }
+
+    @Override
+    public long getCompilationTime( TimeUnit unit ) {
+        return terms.getCompilationTime( unit );
+    }
+}
@@ -0,0 +1,45 @@
+package com.kryptnostic.multivariate.compilation;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Generated evaluators for the terms of a function, along with the time it took to produce them.
+ */
+final class CompiledTerms {
+    private final WordEvaluator[] evaluators;
+    private final int             outputWords;
+    private final long            compilationNanos;
+
+    CompiledTerms( WordEvaluator[] evaluators, int outputLength, long compilationNanos ) {
+        this.evaluators = evaluators;
+        this.outputWords = ( outputLength + 63 ) >>> 6;
+        this.compilationNanos = compilationNanos;
+    }
+
+    boolean isCompiled() {
+        return evaluators != null;
+    }
+
+    long getCompilationTime( TimeUnit unit ) {
+        return unit.convert( compilationNanos, TimeUnit.NANOSECONDS );
+    }
+
+    long[] evaluate( long[] input ) {
+        long[] output = new long[ outputWords ];
+        evaluate( input, output );
+        return output;
+    }
+
+    void evaluate( long[] input, long[] output ) {
+        Preconditions.checkArgument(
+                output.length >= outputWords,
+                "Output must have enough words to hold the output length of the function." );
+        Arrays.fill( output, 0, outputWords, 0L );
+        for ( WordEvaluator evaluator : evaluators ) {
+            evaluator.evaluate( input, output );
+        }
+    }
+}
@@ -0,0 +1,510 @@
+package com.kryptnostic.multivariate.compilation;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import cern.colt.bitvector.BitVector;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.kryptnostic.multivariate.gf2.Monomial;
+
+/**
+ * Emits class files implementing {@link WordEvaluator} in which every monomial and contribution of a function is
+ * hard-coded as straight-line code. For each monomial the generated code computes
+ *
+ * <pre>
+ * t    = OR_w ( ( in_w &amp; m_w ) ^ m_w )
+ * fire = ~( ( t | -t ) &gt;&gt; 63 )
+ * out_j ^= fire &amp; c_j
+ * </pre>
+ *
+ * which is all ones exactly when every variable of the monomial is set. The code has no branches, so no stack map
+ * frames are needed, and input and output words are held in locals for the JIT to register allocate.
+ *
+ * Terms are split across methods small enough for HotSpot to compile, and across classes small enough to stay within
+ * the limits of a single constant pool.
+ */
+final class EvaluatorGenerator {
+    private static final String        PACKAGE             = "com/kryptnostic/multivariate/compilation/";
+    private static final String        EVALUATOR_INTERFACE = PACKAGE + "WordEvaluator";
+    private static final String        EVALUATE_DESCRIPTOR = "([J[J)V";
+    private static final AtomicInteger classCounter        = new AtomicInteger();
+
+    /*
+     * HotSpot refuses to compile methods with more than 8000 bytes of bytecode.
+     */
+    private static final int           MAX_METHOD_BYTES    = 7000;
+    private static final int           MAX_POOL_ENTRIES    = 60000;
+
+    private static final int           ACC_PUBLIC          = 0x0001;
+    private static final int           ACC_FINAL           = 0x0010;
+    private static final int           ACC_SUPER           = 0x0020;
+
+    private static final int           ALOAD_0             = 0x2a;
+    private static final int           ALOAD_1             = 0x2b;
+    private static final int           ALOAD_2             = 0x2c;
+    private static final int           LALOAD              = 0x2f;
+    private static final int           LASTORE             = 0x50;
+    private static final int           LLOAD               = 0x16;
+    private static final int           LSTORE              = 0x37;
+    private static final int           WIDE                = 0xc4;
+    private static final int           LAND                = 0x7f;
+    private static final int           LOR                 = 0x81;
+    private static final int           LXOR                = 0x83;
+    private static final int           LNEG                = 0x75;
+    private static final int           LSHR                = 0x7b;
+    private static final int           ICONST_0            = 0x03;
+    private static final int           BIPUSH              = 0x10;
+    private static final int           SIPUSH              = 0x11;
+    private static final int           LDC2_W              = 0x14;
+    private static final int           INVOKESPECIAL       = 0xb7;
+    private static final int           INVOKEVIRTUAL       = 0xb6;
+    private static final int           RETURN              = 0xb1;
+    private static final int           MAX_STACK           = 8;
+
+    private final Monomial[]           monomials;
+    private final BitVector[]          contributions;
+    private final int                  inputWords;
+    private final int                  outputWords;
+    private final int                  tSlot;
+    private final int                  fireSlot;
+
+    EvaluatorGenerator( Monomial[] monomials, BitVector[] contributions, int variableCount, int outputLength ) {
+        this.monomials = monomials;
+        this.contributions = contributions;
+        this.inputWords = ( variableCount + 63 ) >>> 6;
+        this.outputWords = ( outputLength + 63 ) >>> 6;
+        this.tSlot = outputSlot( outputWords );
+        this.fireSlot = tSlot + 2;
+    }
+
+    /**
+     * Generates, loads and instantiates the evaluators for all terms.
+     *
+     * @return evaluators whose combined effect is the evaluation of the function.
+     */
+    WordEvaluator[] generate() {
+        GeneratedClassLoader loader = new GeneratedClassLoader( WordEvaluator.class.getClassLoader() );
+        List<WordEvaluator> evaluators = Lists.newArrayList();
+
+        ClassBuilder builder = null;
+        Code method = null;
+        for ( int i = 0; i < monomials.length; ++i ) {
+            long[] mask = monomials[ i ].elements();
+            long[] contribution = contributions[ i ].elements();
+            int constants = countNonZero( mask, inputWords ) + countNonZero( contribution, outputWords ) + 1;
+
+            if ( builder != null && !builder.hasRoomFor( constants ) ) {
+                builder.finishMethod( method, this );
+                evaluators.add( builder.load( loader ) );
+                builder = null;
+            }
+            if ( builder == null ) {
+                builder = new ClassBuilder();
+                method = startMethod();
+            } else if ( method.size() > MAX_METHOD_BYTES ) {
+                builder.finishMethod( method, this );
+                method = startMethod();
+            }
+
+            emitTerm( builder.pool, method, mask, contribution );
+        }
+
+        if ( builder != null ) {
+            builder.finishMethod( method, this );
+            evaluators.add( builder.load( loader ) );
+        }
+        return evaluators.toArray( new WordEvaluator[ evaluators.size() ] );
+    }
+
+    private Code startMethod() {
+        Code code = new Code();
+        for ( int w = 0; w < inputWords; ++w ) {
+            code.op( ALOAD_1 );
+            code.pushInt( w );
+            code.op( LALOAD );
+            code.localOp( LSTORE, inputSlot( w ) );
+        }
+        for ( int j = 0; j < outputWords; ++j ) {
+            code.op( ALOAD_2 );
+            code.pushInt( j );
+            code.op( LALOAD );
+            code.localOp( LSTORE, outputSlot( j ) );
+        }
+        return code;
+    }
+
+    private void finishMethod( Code code ) {
+        for ( int j = 0; j < outputWords; ++j ) {
+            code.op( ALOAD_2 );
+            code.pushInt( j );
+            code.localOp( LLOAD, outputSlot( j ) );
+            code.op( LASTORE );
+        }
+        code.op( RETURN );
+    }
+
+    private void emitTerm( ConstantPool pool, Code code, long[] mask, long[] contribution ) {
+        boolean constant = true;
+        for ( int w = 0; w < inputWords; ++w ) {
+            if ( mask[ w ] != 0L ) {
+                int index = pool.longConstant( mask[ w ] );
+                code.localOp( LLOAD, inputSlot( w ) );
+                code.ldc2( index );
+                code.op( LAND );
+                code.ldc2( index );
+                code.op( LXOR );
+                if ( !constant ) {
+                    code.op( LOR );
+                }
+                constant = false;
+            }
+        }
+
+        if ( constant ) {
+            for ( int j = 0; j < outputWords; ++j ) {
+                if ( contribution[ j ] != 0L ) {
+                    code.localOp( LLOAD, outputSlot( j ) );
+                    code.ldc2( pool.longConstant( contribution[ j ] ) );
+                    code.op( LXOR );
+                    code.localOp( LSTORE, outputSlot( j ) );
+                }
+            }
+            return;
+        }
+
+        code.localOp( LSTORE, tSlot );
+        code.localOp( LLOAD, tSlot );
+        code.localOp( LLOAD, tSlot );
+        code.op( LNEG );
+        code.op( LOR );
+        code.op( BIPUSH );
+        code.u1( 63 );
+        code.op( LSHR );
+        code.ldc2( pool.longConstant( -1L ) );
+        code.op( LXOR );
+        code.localOp( LSTORE, fireSlot );
+
+        for ( int j = 0; j < outputWords; ++j ) {
+            if ( contribution[ j ] != 0L ) {
+                code.localOp( LLOAD, outputSlot( j ) );
+                code.localOp( LLOAD, fireSlot );
+                code.ldc2( pool.longConstant( contribution[ j ] ) );
+                code.op( LAND );
+                code.op( LXOR );
+                code.localOp( LSTORE, outputSlot( j ) );
+            }
+        }
+    }
+
+    private int inputSlot( int word ) {
+        return 3 + ( word << 1 );
+    }
+
+    private int outputSlot( int word ) {
+        return 3 + ( ( inputWords + word ) << 1 );
+    }
+
+    private int maxLocals() {
+        return fireSlot + 2;
+    }
+
+    private static int countNonZero( long[] words, int count ) {
+        int nonZero = 0;
+        for ( int w = 0; w < count; ++w ) {
+            if ( words[ w ] != 0L ) {
+                ++nonZero;
+            }
+        }
+        return nonZero;
+    }
+
+    /**
+     * Accumulates the methods of a single generated class.
+     */
+    private static final class ClassBuilder {
+        private final String       name    = PACKAGE + "GeneratedEvaluator" + classCounter.incrementAndGet();
+        private final ConstantPool pool    = new ConstantPool();
+        private final List<byte[]> methods = Lists.newArrayList();
+
+        boolean hasRoomFor( int longConstants ) {
+            // Each long constant occupies two entries, and each method adds a name and a method reference.
+            return pool.size() + ( longConstants << 1 ) + ( ( methods.size() + 1 ) * 4 ) < MAX_POOL_ENTRIES;
+        }
+
+        void finishMethod( Code code, EvaluatorGenerator generator ) {
+            generator.finishMethod( code );
+            methods.add( writeMethod(
+                    pool,
+                    ACC_PUBLIC | ACC_FINAL,
+                    "evaluate" + methods.size(),
+                    EVALUATE_DESCRIPTOR,
+                    generator.maxLocals(),
+                    code.toByteArray() ) );
+        }
+
+        WordEvaluator load( GeneratedClassLoader loader ) {
+            Class<?> clazz = loader.define( name.replace( '/', '.' ), toByteArray() );
+            try {
+                return (WordEvaluator) clazz.getDeclaredConstructor().newInstance();
+            } catch ( ReflectiveOperationException e ) {
+                throw new IllegalStateException( "Unable to instantiate generated evaluator " + name, e );
+            }
+        }
+
+        private byte[] toByteArray() {
+            int thisClass = pool.classReference( name );
+            int superClass = pool.classReference( "java/lang/Object" );
+            int evaluatorInterface = pool.classReference( EVALUATOR_INTERFACE );
+
+            Code constructor = new Code();
+            constructor.op( ALOAD_0 );
+            constructor.op( INVOKESPECIAL );
+            constructor.u2( pool.methodReference( "java/lang/Object", "<init>", "()V" ) );
+            constructor.op( RETURN );
+            byte[] init = writeMethod( pool, ACC_PUBLIC, "<init>", "()V", 1, constructor.toByteArray() );
+
+            Code dispatch = new Code();
+            for ( int m = 0; m < methods.size(); ++m ) {
+                dispatch.op( ALOAD_0 );
+                dispatch.op( ALOAD_1 );
+                dispatch.op( ALOAD_2 );
+                dispatch.op( INVOKEVIRTUAL );
+                dispatch.u2( pool.methodReference( name, "evaluate" + m, EVALUATE_DESCRIPTOR ) );
+            }
+            dispatch.op( RETURN );
+            byte[] evaluate = writeMethod(
+                    pool,
+                    ACC_PUBLIC,
+                    "evaluate",
+                    EVALUATE_DESCRIPTOR,
+                    3,
+                    dispatch.toByteArray() );
+
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream( bytes );
+            try {
+                out.writeInt( 0xCAFEBABE );
+                out.writeShort( 0 );
+                out.writeShort( 51 );
+                pool.writeTo( out );
+                out.writeShort( ACC_PUBLIC | ACC_FINAL | ACC_SUPER );
+                out.writeShort( thisClass );
+                out.writeShort( superClass );
+                out.writeShort( 1 );
+                out.writeShort( evaluatorInterface );
+                out.writeShort( 0 );
+                out.writeShort( methods.size() + 2 );
+                out.write( init );
+                out.write( evaluate );
+                for ( byte[] method : methods ) {
+                    out.write( method );
+                }
+                out.writeShort( 0 );
+                out.flush();
+            } catch ( IOException e ) {
+                throw new IllegalStateException( "Unable to write generated class file.", e );
+            }
+            return bytes.toByteArray();
+        }
+
+        private static byte[] writeMethod(
+                ConstantPool pool,
+                int access,
+                String name,
+                String descriptor,
+                int maxLocals,
+                byte[] code ) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream( bytes );
+            try {
+                out.writeShort( access );
+                out.writeShort( pool.utf8( name ) );
+                out.writeShort( pool.utf8( descriptor ) );
+                out.writeShort( 1 );
+                out.writeShort( pool.utf8( "Code" ) );
+                out.writeInt( 12 + code.length );
+                out.writeShort( MAX_STACK );
+                out.writeShort( maxLocals );
+                out.writeInt( code.length );
+                out.write( code );
+                out.writeShort( 0 );
+                out.writeShort( 0 );
+                out.flush();
+            } catch ( IOException e ) {
+                throw new IllegalStateException( "Unable to write generated method.", e );
+            }
+            return bytes.toByteArray();
+        }
+    }
+
+    /**
+     * Constant pool of a generated class, deduplicating entries as they are added.
+     */
+    private static final class ConstantPool {
+        private static final int          UTF8          = 1;
+        private static final int          LONG          = 5;
+        private static final int          CLASS         = 7;
+        private static final int          METHOD_REF    = 10;
+        private static final int          NAME_AND_TYPE = 12;
+
+        private final ByteArrayOutputStream bytes       = new ByteArrayOutputStream();
+        private final DataOutputStream      out         = new DataOutputStream( bytes );
+        private final Map<String, Integer>  entries     = Maps.newHashMap();
+        private final Map<Long, Integer>    longs       = Maps.newHashMap();
+        private int                         count       = 1;
+
+        int size() {
+            return count;
+        }
+
+        int utf8( String value ) {
+            String key = "U" + value;
+            Integer index = entries.get( key );
+            if ( index == null ) {
+                try {
+                    out.writeByte( UTF8 );
+                    out.writeUTF( value );
+                } catch ( IOException e ) {
+                    throw new IllegalStateException( e );
+                }
+                index = count++;
+                entries.put( key, index );
+            }
+            return index;
+        }
+
+        int longConstant( long value ) {
+            Integer index = longs.get( value );
+            if ( index == null ) {
+                try {
+                    out.writeByte( LONG );
+                    out.writeLong( value );
+                } catch ( IOException e ) {
+                    throw new IllegalStateException( e );
+                }
+                index = count;
+                count += 2;
+                longs.put( value, index );
+            }
+            return index;
+        }
+
+        int classReference( String internalName ) {
+            String key = "C" + internalName;
+            Integer index = entries.get( key );
+            if ( index == null ) {
+                int nameIndex = utf8( internalName );
+                index = writeReference( CLASS, nameIndex );
+                entries.put( key, index );
+            }
+            return index;
+        }
+
+        int methodReference( String owner, String name, String descriptor ) {
+            String key = "M" + owner + "." + name + descriptor;
+            Integer index = entries.get( key );
+            if ( index == null ) {
+                int classIndex = classReference( owner );
+                int nameIndex = utf8( name );
+                int descriptorIndex = utf8( descriptor );
+                int nameAndType = writeReference( NAME_AND_TYPE, nameIndex, descriptorIndex );
+                index = writeReference( METHOD_REF, classIndex, nameAndType );
+                entries.put( key, index );
+            }
+            return index;
+        }
+
+        void writeTo( DataOutputStream target ) throws IOException {
+            out.flush();
+            target.writeShort( count );
+            bytes.writeTo( target );
+        }
+
+        private int writeReference( int tag, int... indices ) {
+            try {
+                out.writeByte( tag );
+                for ( int index : indices ) {
+                    out.writeShort( index );
+                }
+            } catch ( IOException e ) {
+                throw new IllegalStateException( e );
+            }
+            return count++;
+        }
+    }
+
+    /**
+     * Bytecode of a single method.
+     */
+    private static final class Code {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        void op( int opcode ) {
+            bytes.write( opcode );
+        }
+
+        void u1( int value ) {
+            bytes.write( value );
+        }
+
+        void u2( int value ) {
+            bytes.write( value >>> 8 );
+            bytes.write( value );
+        }
+
+        void pushInt( int value ) {
+            if ( value <= 5 ) {
+                op( ICONST_0 + value );
+            } else if ( value <= Byte.MAX_VALUE ) {
+                op( BIPUSH );
+                u1( value );
+            } else {
+                op( SIPUSH );
+                u2( value );
+            }
+        }
+
+        void localOp( int opcode, int slot ) {
+            if ( slot <= 0xff ) {
+                op( opcode );
+                u1( slot );
+            } else {
+                op( WIDE );
+                op( opcode );
+                u2( slot );
+            }
+        }
+
+        void ldc2( int index ) {
+            op( LDC2_W );
+            u2( index );
+        }
+
+        int size() {
+            return bytes.size();
+        }
+
+        byte[] toByteArray() {
+            return bytes.toByteArray();
+        }
+    }
+
+    /**
+     * Class loader owning the classes generated for a single function, so they can be unloaded along with it.
+     */
+    private static final class GeneratedClassLoader extends ClassLoader {
+        GeneratedClassLoader( ClassLoader parent ) {
+            super( parent );
+        }
+
+        Class<?> define( String name, byte[] classFile ) {
+            return defineClass( name, classFile, 0, classFile.length );
+        }
+    }
+}
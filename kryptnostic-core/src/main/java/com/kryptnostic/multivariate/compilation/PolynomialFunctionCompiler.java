@@ -0,0 +1,66 @@
+package com.kryptnostic.multivariate.compilation;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Preconditions;
+import com.kryptnostic.multivariate.gf2.Monomial;
+import com.kryptnostic.multivariate.gf2.SimplePolynomialFunction;
+import com.kryptnostic.multivariate.polynomial.ParameterizedPolynomialFunctionGF2;
+
+/**
+ * Opt-in compiler that turns a polynomial function into generated classes with its monomial masks and contributions
+ * hard-coded as straight-line code. This pays off for functions that are evaluated many times over their lifetime, such
+ * as the encrypter and decryptor of a key. The compilation time of each function is exposed, so callers can weigh it
+ * against the expected number of evaluations.
+ * 
+ * Functions with more monomials than the size limit are not compiled and keep being evaluated by the interpreter.
+ */
+public final class PolynomialFunctionCompiler {
+    private static final Logger logger                = LoggerFactory.getLogger( PolynomialFunctionCompiler.class );
+
+    /**
+     * Default limit on the number of monomials in a compiled function. Larger functions produce enough bytecode that
+     * loading and JIT compiling it outweighs the gain over the interpreter.
+     */
+    public static final int     DEFAULT_MAX_MONOMIALS = 1 << 14;
+
+    private PolynomialFunctionCompiler() {}
+
+    public static CompiledPolynomialFunction compile( SimplePolynomialFunction f ) {
+        return compile( f, DEFAULT_MAX_MONOMIALS );
+    }
+
+    /**
+     * @param f function to compile.
+     * @param maxMonomials largest number of monomials for which code will be generated.
+     * @return a function equivalent to {@code f}, evaluated by generated code if {@code f} has at most
+     *         {@code maxMonomials} monomials and by the interpreter otherwise.
+     */
+    public static CompiledPolynomialFunction compile( SimplePolynomialFunction f, int maxMonomials ) {
+        Preconditions.checkArgument( maxMonomials >= 0, "Monomial limit cannot be negative." );
+        Monomial[] monomials = f.getMonomials();
+        long start = System.nanoTime();
+        WordEvaluator[] evaluators = null;
+        if ( monomials.length <= maxMonomials ) {
+            int variableCount = monomials.length == 0 ? f.getInputLength() : monomials[ 0 ].size();
+            try {
+                evaluators = new EvaluatorGenerator( monomials, f.getContributions(), variableCount, f
+                        .getOutputLength() ).generate();
+            } catch ( LinkageError e ) {
+                logger.error( "Unable to load generated evaluator, falling back to interpreter.", e );
+            }
+        } else {
+            logger.debug(
+                    "Function with {} monomials exceeds compilation limit of {}, using interpreter.",
+                    monomials.length,
+                    maxMonomials );
+        }
+        CompiledTerms terms = new CompiledTerms( evaluators, f.getOutputLength(), System.nanoTime() - start );
+
+        if ( f.isParameterized() ) {
+            return new CompiledParameterizedPolynomialFunctionGF2( (ParameterizedPolynomialFunctionGF2) f, terms );
+        }
+        return new CompiledPolynomialFunctionGF2( f, terms );
+    }
+}
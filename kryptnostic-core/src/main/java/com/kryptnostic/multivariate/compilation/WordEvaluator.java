@@ -0,0 +1,15 @@
+package com.kryptnostic.multivariate.compilation;
+
+/**
+ * Evaluates a fixed set of polynomial terms on the backing words of an input vector. Implementations are generated at
+ * runtime by {@link PolynomialFunctionCompiler}, so this interface must remain public.
+ */
+public interface WordEvaluator {
+    /**
+     * Xors the contribution of every term that evaluates to one on {@code input} into {@code output}.
+     *
+     * @param input words of the input vector.
+     * @param output words of the output vector, which are accumulated into rather than overwritten.
+     */
+    void evaluate( long[] input, long[] output );
+}
@@ -1,7 +1,6 @@
 package com.kryptnostic.multivariate.learning;
 
 import java.util.List;
-import java.util.Set;
 
 import org.apache.commons.lang3.tuple.Pair;
 import org.slf4j.Logger;
@@ -36,18 +35,18 @@ public class MultivariateLearning {
 	 * @return Pair of inverse function and training data over which it was valid
 	 */
 	public static Pair<SimplePolynomialFunction, List <BitVector>> learnInverse(PolynomialFunction function, Integer orderOfInverse) {
-		Set<Monomial> monomials = Monomials.allMonomials( function.getOutputLength() , orderOfInverse);
+		Monomial[] monomials = Monomials.allMonomials( function.getOutputLength() , orderOfInverse).toArray( new Monomial[0] );
 		SimplePolynomialFunction monomialsFunction = functionFromMonomials( monomials );
 		
 		List<BitVector> functionInputs = null;
 		EnhancedBitMatrix coefficients = null;
 		
-		for (int quantityInput = monomials.size(); quantityInput < MAX_INPUT_VECTORS; quantityInput = quantityInput << 1) {
+		for (int quantityInput = monomials.length; quantityInput < MAX_INPUT_VECTORS; quantityInput = quantityInput << 1) {
 			Pair<List<BitVector>,List<BitVector>> trainingData = getTrainingData( function, quantityInput);
 			functionInputs = trainingData.getLeft();
 			List<BitVector> functionOutputs = Lists.newArrayList();
 			for (BitVector output : trainingData.getRight()) {
-				functionOutputs.add( monomialsFunction.apply( output ) );
+				functionOutputs.add( evaluateMonomials( monomials, output ) );
 			}
 			
 			coefficients = learnCoefficients(functionOutputs, functionInputs);
@@ -71,19 +70,19 @@ public class MultivariateLearning {
      * @return Pair of function and training data over which it was valid
      */
     public static Pair<SimplePolynomialFunction, List <BitVector>> learnFunction(PolynomialFunction function, Integer order) {
-        Set<Monomial> monomials = Monomials.allMonomials( function.getInputLength() , order);
+        Monomial[] monomials = Monomials.allMonomials( function.getInputLength() , order).toArray( new Monomial[0] );
         SimplePolynomialFunction monomialsFunction = functionFromMonomials( monomials );
         
         List<BitVector> functionInputs = null, extendedInputs;
         EnhancedBitMatrix coefficients = null;
         
-        for (int quantityInput = monomials.size(); quantityInput < MAX_INPUT_VECTORS; quantityInput = quantityInput << 1) {
+        for (int quantityInput = monomials.length; quantityInput < MAX_INPUT_VECTORS; quantityInput = quantityInput << 1) {
             Pair<List<BitVector>,List<BitVector>> trainingData = getTrainingData(function, quantityInput);
         	functionInputs = trainingData.getLeft();
             List<BitVector> functionOutputs = trainingData.getRight();
             extendedInputs = Lists.newArrayListWithCapacity( functionInputs.size() );
             for(BitVector input : functionInputs){
-                extendedInputs.add( monomialsFunction.apply( input ) );
+                extendedInputs.add( evaluateMonomials( monomials, input ) );
             }
             
             coefficients = learnCoefficients(extendedInputs, functionOutputs);
@@ -122,11 +121,10 @@ public class MultivariateLearning {
 	
     /**
      * Create polynomial with unit contribution from every monomial in the set given.
-     * @param monomialSet
+     * @param monomials
      * @return
      */
-	private static SimplePolynomialFunction functionFromMonomials( Set<Monomial> monomialSet ) {
-	    Monomial[] monomials = monomialSet.toArray( new Monomial[0] );
+	private static SimplePolynomialFunction functionFromMonomials( Monomial[] monomials ) {
 	    BitVector[] contributions = new BitVector[ monomials.length ];
 	    for( int i = 0 ; i < monomials.length ; ++i ) {
 	        BitVector contribution = new BitVector( monomials.length );
@@ -136,6 +134,24 @@ public class MultivariateLearning {
 	    return new OptimizedPolynomialFunctionGF2( monomials[ 0 ].size() , monomials.length , monomials, contributions );
 	}
 	
+	/**
+	 * Evaluates every monomial on the input and sets the corresponding output bit, which is equivalent to applying
+	 * {@link #functionFromMonomials(Monomial[])} without dispatching work or xoring unit contributions.
+	 * @param monomials
+	 * @param input
+	 * @return vector whose i-th bit is the value of the i-th monomial on {@code input}.
+	 */
+	private static BitVector evaluateMonomials( Monomial[] monomials, BitVector input ) {
+	    long[] in = input.elements();
+	    BitVector result = new BitVector( monomials.length );
+	    for( int i = 0 ; i < monomials.length ; ++i ) {
+	        if ( monomials[ i ].eval( in ) ) {
+	            result.putQuick( i, true );
+	        }
+	    }
+	    return result;
+	}
+	
 	/**
 	 * Returns a list of random inputs and the corresponding list of outputs for the given function.
 	 * @param function
@@ -7,8 +7,6 @@ import java.util.Map.Entry;
 import java.util.Set;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
 
 import org.apache.commons.lang3.tuple.Pair;
 import org.slf4j.Logger;
@@ -28,7 +26,9 @@ import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import com.kryptnostic.bitwise.BitVectors;
+import com.kryptnostic.linear.BitUtils;
 import com.kryptnostic.linear.EnhancedBitMatrix;
+import com.kryptnostic.linear.Kernels;
 import com.kryptnostic.multivariate.gf2.CompoundPolynomialFunction;
 import com.kryptnostic.multivariate.gf2.Monomial;
 import com.kryptnostic.multivariate.gf2.SimplePolynomialFunction;
@@ -47,7 +47,15 @@ public class BasePolynomialFunction extends PolynomialFunctionRepresentationGF2
     private static final long                   serialVersionUID            = 7153423105308932737L;
     private static final Logger                 logger                      = LoggerFactory
                                                                                     .getLogger( BasePolynomialFunction.class );
-    private final Lock                          productLock                 = new ReentrantLock();
+    /*
+     * 16 blocks of 64 inputs keep the bit-sliced inputs of a 256 bit function within 32KB.
+     */
+    protected static final int                  BATCH_BLOCKS_PER_PASS       = 16;
+    private static final WordScratch            firedScratch                = new WordScratch( 1 );
+    private transient volatile MonomialEvaluationPlan evaluationPlan;
+    private transient volatile MonomialVariableIndex variableIndex;
+    private transient volatile DegreeBuckets    degreeBuckets;
+    private transient volatile PrefixResolver   prefixResolver;
 
     protected static final Predicate<BitVector> notNilContributionPredicate = new Predicate<BitVector>() {
                                                                                 @Override
@@ -116,26 +124,12 @@ public class BasePolynomialFunction extends PolynomialFunctionRepresentationGF2
             return ParameterizedPolynomialFunctions.xor( this, rhs );
         }
 
-        Map<Monomial, BitVector> monomialContributionsMap = SimplePolynomialFunctions
-                .mapCopyFromMonomialsAndContributions( monomials, contributions );
         Monomial[] rhsMonomials = rhs.getMonomials();
-        BitVector[] rhsContributions = rhs.getContributions();
-        for ( int i = 0; i < rhsMonomials.length; ++i ) {
-            // TODO: Make sure that monomials are immutable as extending
-            // monomials without making a copy will cause hard to diagnose side
-            // effects and bugs
-            Monomial m = rhsMonomials[ i ];
-            BitVector contribution = monomialContributionsMap.get( m );
-            if ( contribution == null ) {
-                contribution = new BitVector( outputLength );
-                monomialContributionsMap.put( m, contribution );
-            }
-            contribution.xor( rhsContributions[ i ] );
-        }
-        return SimplePolynomialFunctions.fromMonomialContributionMap(
-                inputLength,
-                outputLength,
-                monomialContributionsMap );
+        MonomialContributions results = new MonomialContributions( variableCount( rhsMonomials ), outputLength,
+                monomials.length + rhsMonomials.length );
+        results.xorAll( monomials, contributions );
+        results.xorAll( rhsMonomials, rhs.getContributions() );
+        return results.toFunction( inputLength );
     }
 
     public SimplePolynomialFunction and( SimplePolynomialFunction rhs ) {
@@ -149,55 +143,170 @@ public class BasePolynomialFunction extends PolynomialFunctionRepresentationGF2
             return ParameterizedPolynomialFunctions.and( this, rhs );
         }
 
-        Map<Monomial, BitVector> results = Maps.newHashMap();
         Monomial[] rhsMonomials = rhs.getMonomials();
         BitVector[] rhsContributions = rhs.getContributions();
+        int variableCount = variableCount( rhsMonomials );
+        MonomialContributions results = new MonomialContributions( variableCount, outputLength, monomials.length
+                * rhsMonomials.length );
+        /*
+         * Products and and-ed contributions are built in reused word buffers, so only monomials that survive into the
+         * result are ever allocated.
+         */
+        long[] product = new long[ ( variableCount + 63 ) >>> 6 ];
+        long[] contribution = new long[ ( outputLength + 63 ) >>> 6 ];
         for ( int i = 0; i < monomials.length; ++i ) {
+            long[] lhsMonomial = monomials[ i ].elements();
+            long[] lhsContribution = contributions[ i ].elements();
             for ( int j = 0; j < rhsMonomials.length; ++j ) {
-                Monomial product = this.monomials[ i ].product( rhsMonomials[ j ] );
-                BitVector contribution = this.contributions[ i ].copy();
-                contribution.and( rhsContributions[ j ] );
-                BitVector existingContribution = results.get( product );
-
-                /*
-                 * If we have no existing contribution just store the computed contribution. Otherwise, xor into the
-                 * existing contribution
-                 */
-                if ( existingContribution == null ) {
-                    results.put( product, contribution );
-                } else {
-                    existingContribution.xor( contribution );
+                long[] rhsMonomial = rhsMonomials[ j ].elements();
+                for ( int w = 0; w < product.length; ++w ) {
+                    product[ w ] = lhsMonomial[ w ] | rhsMonomial[ w ];
+                }
+                long[] rhsContribution = rhsContributions[ j ].elements();
+                for ( int w = 0; w < contribution.length; ++w ) {
+                    contribution[ w ] = lhsContribution[ w ] & rhsContribution[ w ];
                 }
+                results.xor( product, 0, contribution, 0 );
             }
         }
 
-        removeNilContributions( results );
-        Monomial[] newMonomials = new Monomial[ results.size() ];
-        BitVector[] newContributions = new BitVector[ results.size() ];
-        int index = 0;
-        for ( Entry<Monomial, BitVector> result : results.entrySet() ) {
-            BitVector contribution = result.getValue();
-            if ( contribution.cardinality() > 0 ) {
-                newMonomials[ index ] = result.getKey();
-                newContributions[ index ] = contribution;
-                ++index;
-            }
-        }
+        return results.toFunction( inputLength );
+    }
 
-        return new BasePolynomialFunction( inputLength, outputLength, newMonomials, newContributions );
+    /*
+     * Number of variables of the monomials of this function and rhsMonomials, which is the input length unless the
+     * monomials say otherwise.
+     */
+    private int variableCount( Monomial[] rhsMonomials ) {
+        if ( monomials.length != 0 ) {
+            return monomials[ 0 ].size();
+        }
+        return rhsMonomials.length != 0 ? rhsMonomials[ 0 ].size() : inputLength;
     }
 
     public BitVector apply( BitVector input ) {
-        BitVector result = new BitVector( outputLength );
+        Preconditions.checkArgument(
+                monomials.length == 0 || monomials[ 0 ].size() == input.size(),
+                "Number of terms in input doesn't match number of terms in monomials." );
+        long[] result = new long[ ( outputLength + 63 ) >>> 6 ];
+        apply( input.elements(), result );
+        return new BitVector( result, outputLength );
+    }
 
-        for ( int i = 0; i < monomials.length; ++i ) {
-            Monomial term = monomials[ i ];
-            if ( term.eval( input ) ) {
-                result.xor( contributions[ i ] );
+    @Override
+    public void apply( long[] input, long[] output ) {
+        applyMonomials( input, output );
+    }
+
+    /**
+     * Evaluates the monomials of this function on an input that already has as many variables as each monomial, using
+     * the variable index, the evaluation plan or the degree buckets, whichever is cheapest. Unlike
+     * {@link #apply(long[], long[])} this is never overridden, so subclasses that transform their input first can
+     * evaluate the transformed input without transforming it again.
+     * 
+     * @param input words of the input to the monomials.
+     * @param output words of the output, which are overwritten.
+     */
+    protected final void applyMonomials( long[] input, long[] output ) {
+        final int outputWords = ( outputLength + 63 ) >>> 6;
+        Preconditions.checkArgument(
+                monomials.length == 0 || input.length >= ( monomials[ 0 ].size() + 63 ) >>> 6,
+                "Input must have enough words to hold the number of terms in monomials." );
+        Preconditions.checkArgument(
+                output.length >= outputWords,
+                "Output must have enough words to hold the output length of the function." );
+        Arrays.fill( output, 0, outputWords, 0L );
+
+        long[] fired = firedBuffer( monomials.length );
+        boolean evaluated = variableIndex().evaluate( input, fired );
+        if ( !evaluated ) {
+            MonomialEvaluationPlan plan = evaluationPlan();
+            if ( plan.isCheaperThanDirectEvaluation() ) {
+                plan.evaluate( input, fired );
+                evaluated = true;
+            }
+        }
+        if ( evaluated ) {
+            for ( int w = 0; w < ( monomials.length + 63 ) >>> 6; ++w ) {
+                for ( long bits = fired[ w ]; bits != 0L; bits &= bits - 1 ) {
+                    xorInto( contributions[ ( w << 6 ) + Long.numberOfTrailingZeros( bits ) ], output, outputWords );
+                }
             }
+            return;
         }
 
-        return result;
+        degreeBuckets().apply( input, output );
+    }
+
+    @Override
+    public void applyInto( BitVector input, BitVector output ) {
+        Preconditions.checkArgument(
+                input.size() == inputLength,
+                "Input must match the input length of the function." );
+        Preconditions.checkArgument(
+                output.size() == outputLength,
+                "Output must match the output length of the function." );
+        apply( input.elements(), output.elements() );
+    }
+
+    /**
+     * Hands out this thread's buffer for the set of monomials fired by an input. The buffer is shared by all functions,
+     * so it must not be held across a call that evaluates another function.
+     * 
+     * @param monomialCount number of monomials in the function being evaluated.
+     * @return a buffer of at least {@code ( monomialCount + 63 ) >>> 6} words, with unspecified contents.
+     */
+    static long[] firedBuffer( int monomialCount ) {
+        return firedScratch.get( 0, ( monomialCount + 63 ) >>> 6 );
+    }
+
+    private static void xorInto( BitVector contribution, long[] output, int outputWords ) {
+        Kernels.get().xor( contribution.elements(), 0, output, 0, outputWords );
+    }
+
+    /**
+     * Lazily builds the factor sharing evaluation plan for the monomials of this function. Concurrent callers may each
+     * build a plan, but they are equivalent, so whichever is published last is kept.
+     * 
+     * @return the evaluation plan for this function's monomials.
+     */
+    protected MonomialEvaluationPlan evaluationPlan() {
+        MonomialEvaluationPlan plan = evaluationPlan;
+        if ( plan == null ) {
+            plan = MonomialEvaluationPlan.build( monomials );
+            evaluationPlan = plan;
+        }
+        return plan;
+    }
+
+    /**
+     * Lazily builds the index from variables to the monomials they lead, which is used to evaluate sparse inputs.
+     * Concurrent callers may each build an index, but they are equivalent, so whichever is published last is kept.
+     * 
+     * @return the variable index for this function's monomials.
+     */
+    protected MonomialVariableIndex variableIndex() {
+        MonomialVariableIndex index = variableIndex;
+        if ( index == null ) {
+            index = MonomialVariableIndex.build( monomials );
+            variableIndex = index;
+        }
+        return index;
+    }
+
+    /**
+     * Lazily partitions the terms of this function by the order of their monomials. Concurrent callers may each build
+     * a partition, but they are equivalent, so whichever is published last is kept.
+     * 
+     * @return the degree buckets for this function's monomials.
+     */
+    DegreeBuckets degreeBuckets() {
+        DegreeBuckets buckets = degreeBuckets;
+        if ( buckets == null ) {
+            buckets = DegreeBuckets.build( monomials, contributions, inputLength, outputLength );
+            degreeBuckets = buckets;
+        }
+        return buckets;
     }
 
     @Override
@@ -206,23 +315,168 @@ public class BasePolynomialFunction extends PolynomialFunctionRepresentationGF2
     }
 
     @Override
-    public SimplePolynomialFunction resolve( BitVector input ) {
-        Map<Monomial, BitVector> contributionsMap = Maps.newHashMapWithExpectedSize( monomials.length );
-        for ( int i = 0; i < monomials.length; ++i ) {
-            Monomial resolved = monomials[ i ].partialEval( input );
-            if ( resolved != null ) {
-                BitVector contribution = contributionsMap.get( resolved );
-                if ( contribution == null ) {
-                    contribution = new BitVector( outputLength );
-                    contributionsMap.put( resolved, contribution );
+    public BitVector[] applyBatch( BitVector[] inputs ) {
+        long[][] words = new long[ inputs.length ][];
+        for ( int i = 0; i < inputs.length; ++i ) {
+            Preconditions.checkArgument(
+                    inputs[ i ].size() == inputLength,
+                    "Input length must match the input length of the function." );
+            words[ i ] = inputs[ i ].elements();
+        }
+
+        long[][] outputs = applyBatch( words );
+        BitVector[] results = new BitVector[ outputs.length ];
+        for ( int i = 0; i < outputs.length; ++i ) {
+            results[ i ] = new BitVector( outputs[ i ], outputLength );
+        }
+        return results;
+    }
+
+    @Override
+    public long[][] applyBatch( long[][] inputs ) {
+        int inputWords = ( inputLength + 63 ) >>> 6;
+        for ( long[] input : inputs ) {
+            Preconditions.checkArgument(
+                    input.length >= inputWords,
+                    "Each input must have enough words to hold the input length of the function." );
+        }
+        return evaluateBatch( inputs );
+    }
+
+    /**
+     * Evaluates the monomials of this function on inputs that already have as many variables as each monomial. Inputs
+     * are bit-sliced in blocks of 64, so that each monomial is evaluated for a whole block by and-ing together one word
+     * per variable. The firing lanes then receive the contribution either word by word or, when the contribution has
+     * fewer set bits than the work that would take, bit by bit into a bit-sliced accumulator. Several blocks are
+     * evaluated per pass over the monomials, so that the terms of large functions are only streamed from memory once
+     * for every {@value #BATCH_BLOCKS_PER_PASS} blocks.
+     * 
+     * @param inputs words of each input, wide enough to cover every variable of the monomials.
+     * @return words of each output.
+     */
+    protected long[][] evaluateBatch( long[][] inputs ) {
+        final int variableCount = monomials.length == 0 ? inputLength : monomials[ 0 ].size();
+        final int inputWords = ( variableCount + 63 ) >>> 6;
+        final int outputWords = ( outputLength + 63 ) >>> 6;
+        final int totalBlocks = ( inputs.length + 63 ) >>> 6;
+        final int passBlocks = Math.min( BATCH_BLOCKS_PER_PASS, totalBlocks );
+        final long[][] sliced = new long[ passBlocks ][ inputWords << 6 ];
+        final long[][] slicedResults = new long[ passBlocks ][ outputWords << 6 ];
+        final long[] laneMasks = new long[ passBlocks ];
+        final long[][] results = new long[ inputs.length ][];
+        for ( int i = 0; i < results.length; ++i ) {
+            results[ i ] = new long[ outputWords ];
+        }
+
+        for ( int firstBlock = 0; firstBlock < totalBlocks; firstBlock += passBlocks ) {
+            int blocks = Math.min( passBlocks, totalBlocks - firstBlock );
+            for ( int b = 0; b < blocks; ++b ) {
+                int offset = ( firstBlock + b ) << 6;
+                int lanes = Math.min( 64, inputs.length - offset );
+                laneMasks[ b ] = lanes == 64 ? -1L : ( 1L << lanes ) - 1;
+                BitUtils.slice( inputs, offset, lanes, inputWords, sliced[ b ] );
+                Arrays.fill( slicedResults[ b ], 0L );
+            }
+
+            for ( int i = 0; i < monomials.length; ++i ) {
+                long[] monomial = monomials[ i ].elements();
+                long[] contribution = contributions[ i ].elements();
+                int weight = 0;
+                for ( int w = 0; w < outputWords; ++w ) {
+                    weight += Long.bitCount( contribution[ w ] );
+                }
+
+                for ( int b = 0; b < blocks; ++b ) {
+                    long fired = evaluateSliced( monomial, sliced[ b ], laneMasks[ b ] );
+                    if ( fired == 0L ) {
+                        continue;
+                    }
+
+                    if ( Long.bitCount( fired ) * outputWords <= weight ) {
+                        int offset = ( firstBlock + b ) << 6;
+                        for ( long f = fired; f != 0L; f &= f - 1 ) {
+                            long[] result = results[ offset + Long.numberOfTrailingZeros( f ) ];
+                            for ( int w = 0; w < outputWords; ++w ) {
+                                result[ w ] ^= contribution[ w ];
+                            }
+                        }
+                    } else {
+                        long[] slicedResult = slicedResults[ b ];
+                        for ( int w = 0; w < outputWords; ++w ) {
+                            int base = w << 6;
+                            for ( long c = contribution[ w ]; c != 0L; c &= c - 1 ) {
+                                slicedResult[ base + Long.numberOfTrailingZeros( c ) ] ^= fired;
+                            }
+                        }
+                    }
                 }
-                contribution.xor( contributions[ i ] );
+            }
+
+            for ( int b = 0; b < blocks; ++b ) {
+                int offset = ( firstBlock + b ) << 6;
+                BitUtils.unslice( slicedResults[ b ], outputWords, results, offset, Math.min( 64, inputs.length - offset ) );
             }
         }
-        return SimplePolynomialFunctions.fromMonomialContributionMap(
-                inputLength - input.size(),
-                outputLength,
-                contributionsMap );
+
+        return results;
+    }
+
+    private static long evaluateSliced( long[] monomial, long[] sliced, long laneMask ) {
+        long fired = laneMask;
+        for ( int w = 0; w < monomial.length; ++w ) {
+            int base = w << 6;
+            for ( long m = monomial[ w ]; m != 0L; m &= m - 1 ) {
+                fired &= sliced[ base + Long.numberOfTrailingZeros( m ) ];
+                if ( fired == 0L ) {
+                    return 0L;
+                }
+            }
+        }
+        return fired;
+    }
+
+    /**
+     * Fixes the leading variables of the function to the bits of {@code input}. The split of the monomials into prefix
+     * and suffix is prepared once per prefix length and reused across calls, so resolving against many prefixes of the
+     * same length only costs word operations per monomial.
+     */
+    @Override
+    public SimplePolynomialFunction resolve( BitVector input ) {
+        return prefixResolver( input.size() ).resolve( input.elements() );
+    }
+
+    @Override
+    public List<SimplePolynomialFunction> resolveAll( List<BitVector> prefixes ) {
+        if ( prefixes.isEmpty() ) {
+            return ImmutableList.of();
+        }
+        int prefixLength = prefixes.get( 0 ).size();
+        long[][] words = new long[ prefixes.size() ][];
+        for ( int i = 0; i < words.length; ++i ) {
+            Preconditions.checkArgument(
+                    prefixes.get( i ).size() == prefixLength,
+                    "All prefixes must have the same length." );
+            words[ i ] = prefixes.get( i ).elements();
+        }
+        return prefixResolver( prefixLength ).resolveAll( words );
+    }
+
+    /**
+     * @return a resolver for prefixes of the provided length, which is kept for later calls with the same length.
+     */
+    PrefixResolver prefixResolver( int prefixLength ) {
+        PrefixResolver resolver = prefixResolver;
+        if ( resolver == null || resolver.getPrefixLength() != prefixLength ) {
+            resolver = new PrefixResolver(
+                    monomials,
+                    contributions,
+                    monomials.length == 0 ? inputLength : monomials[ 0 ].size(),
+                    inputLength,
+                    outputLength,
+                    prefixLength );
+            prefixResolver = resolver;
+        }
+        return resolver;
     }
 
     @Override
@@ -230,8 +484,26 @@ public class BasePolynomialFunction extends PolynomialFunctionRepresentationGF2
         return this.compose( SimplePolynomialFunctions.concatenate( lhs, rhs ) );
     }
 
+    /**
+     * Converts this function into the fastest evaluator available for it. Functions with few enough inputs are
+     * tabulated, functions of order at most two are stored as a quadratic form, and all other functions are evaluated
+     * by {@link OptimizedPolynomialFunctionGF2}.
+     * 
+     * @return a {@link TruthTableFunctionGF2}, a {@link QuadraticPolynomialFunctionGF2} or an
+     *         {@link OptimizedPolynomialFunctionGF2} sharing the monomials and contributions of this function.
+     */
     @Override
     public SimplePolynomialFunction optimize() {
+        if ( !isParameterized() && TruthTableFunctionGF2.fits( inputLength, outputLength )
+                && ( monomials.length == 0 || monomials[ 0 ].size() == inputLength ) ) {
+            return new TruthTableFunctionGF2( inputLength, outputLength, monomials, contributions );
+        }
+        if ( getMaximumMonomialOrder() <= 2 ) {
+            return new QuadraticPolynomialFunctionGF2( inputLength, outputLength, monomials, contributions );
+        }
+        if ( this instanceof OptimizedPolynomialFunctionGF2 ) {
+            return this;
+        }
         return new OptimizedPolynomialFunctionGF2( inputLength, outputLength, monomials, contributions );
     }
 
@@ -352,9 +624,49 @@ public class BasePolynomialFunction extends PolynomialFunctionRepresentationGF2
         return result;
     }
 
+    /**
+     * Given contributions of outer and inner polynomials in terms of the monomials of {@code monomials}, computes their
+     * product, interning any new product monomials. Safe to call from several threads sharing the same interner.
+     * 
+     * @param lhs contributions of the left factor.
+     * @param rhs contributions of the right factor.
+     * @param monomials basis of the contributions, which grows as new product monomials are found.
+     * @return contributions of the product, which may be shorter than the final size of the basis.
+     */
+    BitVector product( BitVector lhs, BitVector rhs, MonomialInterner monomials ) {
+        BitVector result = new BitVector( monomials.size() );
+        long[] key = new long[ ( monomials.getVariableCount() + 63 ) >>> 6 ];
+        for ( int i = 0; i < lhs.size(); ++i ) {
+            if ( lhs.getQuick( i ) ) {
+                long[] m = monomials.get( i ).elements();
+                for ( int j = 0; j < rhs.size(); ++j ) {
+                    if ( rhs.getQuick( j ) ) {
+                        long[] n = monomials.get( j ).elements();
+                        for ( int w = 0; w < key.length; ++w ) {
+                            key[ w ] = m[ w ] | n[ w ];
+                        }
+                        int index = monomials.intern( key );
+                        if ( index >= result.size() ) {
+                            result.setSize( Math.max( index + 1, result.size() << 1 ) );
+                        }
+
+                        if ( result.getQuick( index ) ) {
+                            result.clear( index );
+                        } else {
+                            result.set( index );
+                        }
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
     /**
      * Given contributions of outer and inner polynomials as well as the list of inner monomials, computes the product,
-     * updating the list of monomials, the map of monomials and returning the resultant contributions.
+     * updating the list of monomials, the map of monomials and returning the resultant contributions. Threads sharing
+     * the list synchronize on it to append new monomials, so compose uses
+     * {@link #product(BitVector, BitVector, MonomialInterner)} instead.
      * 
      * @param lhs
      * @param rhs
@@ -375,21 +687,19 @@ public class BasePolynomialFunction extends PolynomialFunctionRepresentationGF2
                         Monomial p = monomials.get( i ).product( monomials.get( j ) );
 
                         Integer indexObj = indices.get( p );
-                        int index;
                         if ( indexObj == null ) {
-                            productLock.lock();
-                            index = monomials.size();
-                            indexObj = indices.putIfAbsent( p, index );
-                            if ( indexObj == null ) {
-                                monomials.add( p );
-                                result.setSize( index );
-                                indexObj = index;
+                            synchronized ( monomials ) {
+                                int index = monomials.size();
+                                indexObj = indices.putIfAbsent( p, index );
+                                if ( indexObj == null ) {
+                                    monomials.add( p );
+                                    indexObj = index;
+                                }
                             }
-                            productLock.unlock();
                         }
 
                         if ( indexObj >= result.size() ) {
-                            result.setSize( result.size() << 1 );
+                            result.setSize( Math.max( indexObj + 1, result.size() << 1 ) );
                         }
 
                         if ( result.getQuick( indexObj ) ) {
@@ -514,19 +824,38 @@ public class BasePolynomialFunction extends PolynomialFunctionRepresentationGF2
 
     @Override
     public SimplePolynomialFunction compose( SimplePolynomialFunction inner ) {
+        return composePrepared( new PreparedInner( inner ) );
+    }
+
+    /**
+     * Composes this function with an inner function that has been prepared for composition, reusing the work done on
+     * the inner function by earlier compositions with it.
+     * 
+     * @param inner prepared inner function.
+     * @return a function computing {@code this( inner( x ) )}.
+     */
+    public SimplePolynomialFunction compose( PreparedInner inner ) {
+        return composePrepared( inner );
+    }
+
+    /*
+     * Subclasses override both compose methods, so each of them delegates here instead of to the other.
+     */
+    private SimplePolynomialFunction composePrepared( PreparedInner prepared ) {
+        SimplePolynomialFunction inner = prepared.getFunction();
         Preconditions.checkArgument(
                 inputLength == inner.getOutputLength(),
                 "Input length of outer function must match output length of inner function it is being composed with" );
         if ( ( inner.getMaximumMonomialOrder() == 1 ) && ( getMaximumMonomialOrder() == 2 ) ) {
-            return mvqCompose( inner );
+            return mvqCompose( prepared );
         }
 
-        ComposePreProcessResults prereqs = preProcessCompose( inner );
+        ComposePreProcessResults prereqs = preProcessCompose( prepared );
 
         logger.debug( "Expanding outer monomials." );
-        BitVector[] results = expandOuterMonomials( prereqs.monomialsList, prereqs.innerRows, prereqs.indices );
+        BitVector[] results = expandOuterMonomials( prereqs.monomials, prereqs.innerRows );
 
-        return postProcessCompose( prereqs.monomialsList, prereqs.indices, results, inner );
+        return postProcessCompose( prereqs.monomials, results, inner );
 
     }
 
@@ -634,56 +963,40 @@ public class BasePolynomialFunction extends PolynomialFunctionRepresentationGF2
     }
 
     public SimplePolynomialFunction mvqCompose( SimplePolynomialFunction inner ) {
+        return mvqCompose( new PreparedInner( inner ) );
+    }
+
+    /**
+     * Composes this quadratic function with a prepared affine function.
+     * 
+     * @param prepared affine inner function.
+     * @return a function computing {@code this( inner( x ) )}.
+     */
+    public SimplePolynomialFunction mvqCompose( PreparedInner prepared ) {
+        SimplePolynomialFunction inner = prepared.getFunction();
         Preconditions.checkArgument(
                 inner.getOutputLength() == getInputLength(),
                 "Inner output length must be equal outer input length." );
-        final int innerInputLength = ( inner instanceof ParameterizedPolynomialFunctionGF2 ) ? inner.getMonomials()[ 0 ]
-                .size() : inner.getInputLength();
+        Stopwatch watch = Stopwatch.createStarted();
+        final int innerInputLength = prepared.getVariableCount();
         final BitVector[][] buckets = bucket();
-        final Map<Monomial, BitVector> mc = Maps.newHashMapWithExpectedSize( 1 + innerInputLength
-                + ( innerInputLength * ( innerInputLength - 1 ) / 2 ) );
-        final EnhancedBitMatrix BT = ( (BasePolynomialFunction) inner ).orderedAffineContributions();
-        final EnhancedBitMatrix B = BT.transpose();
-
-        final Monomial[] cache = new Monomial[ innerInputLength + 1 ];
-        // final BitVector[][] rcache = new BitVector[ innerInputLength + 1 ][ innerInputLength + 1 ];
-        for ( int i = 0; i < innerInputLength; ++i ) {
-            cache[ i ] = Monomial.linearMonomial( innerInputLength, i );
-        }
-
-        cache[ innerInputLength ] = Monomial.constantMonomial( innerInputLength );
-
-        mc.put( cache[ innerInputLength ], buckets[ inputLength ][ 0 ] );
-        // Stopwatch w = Stopwatch.createUnstarted();
-        for ( int i = 0; i < buckets.length - 1; ++i ) {
-            EnhancedBitMatrix AT = EnhancedBitMatrix.directFromRows( Arrays.asList( buckets[ i ] ) );
-            EnhancedBitMatrix coeffMatrix = ( i == 0 ? BT : BT.resizeColumns( BT.cols() - i ) ).multiply( AT );
-            // Now for each row
-            BitVector outerRowInTermsOfInner = B.getRow( i );
-            for ( int j = 0; j < ( innerInputLength + 1 ); ++j ) {
-                if ( outerRowInTermsOfInner.get( j ) ) {
-                    for ( int k = 0; k < ( innerInputLength + 1 ); ++k ) {
-                        // inner_i * inner_j
-                        Monomial key = cache[ j ].product( cache[ k ] );
-                        // w.start();
-                        // BitVector c = rcache[j][k];//
-                        BitVector c = mc.get( key );
-                        // logger.debug( "Processing product {} took {} ms" , j , w.elapsed( TimeUnit.MICROSECONDS ) );
-                        // w.reset();
-                        if ( c == null ) {
-                            // c = rcache[j][k] = new BitVector( outputLength );
-                            c = new BitVector( outputLength );
-                            mc.put( key, c );
-                        }
-                        c.xor( coeffMatrix.getRow( k ) );
-                    }
-                }
-            }
-        }
-        SimplePolynomialFunction base = SimplePolynomialFunctions.fromMonomialContributionMap(
+        PreparedInner.AffineContributions affine = prepared.affineContributions();
+        final EnhancedBitMatrix BT = affine.BT;
+        final EnhancedBitMatrix B = affine.B;
+        long setup = watch.elapsed( TimeUnit.MILLISECONDS );
+
+        QuadraticContributions mc = accumulateBuckets( buckets, BT, B, innerInputLength );
+        mc.xor( innerInputLength, innerInputLength, buckets[ inputLength ][ 0 ].elements() );
+        long accumulate = watch.elapsed( TimeUnit.MILLISECONDS ) - setup;
+
+        SimplePolynomialFunction base = mc.toFunction( innerInputLength );
+        logger.debug(
+                "Composed {} outer variables with {} inner variables: setup {} ms, buckets {} ms, build {} ms.",
+                inputLength,
                 innerInputLength,
-                outputLength,
-                mc );
+                setup,
+                accumulate,
+                watch.elapsed( TimeUnit.MILLISECONDS ) - setup - accumulate );
         if ( inner instanceof ParameterizedPolynomialFunctionGF2 ) {
             return new ParameterizedPolynomialFunctionGF2(
                     inner.getInputLength(),
@@ -697,61 +1010,82 @@ public class BasePolynomialFunction extends PolynomialFunctionRepresentationGF2
     }
 
     /**
-     * Abstracts some of the preliminary work of the compose routine. If the composition is of a quadratic with a
-     * linear, pre-computes all of the monomial products.
+     * Accumulates the quadratic products contributed by every bucket of a quadratic composed with an affine function,
+     * except for the constant bucket.
      * 
-     * @param inner
-     * @return
+     * @param buckets of this function, as returned by {@link #bucket()}.
+     * @param BT affine contributions of the inner function, ordered by variable with the constant last.
+     * @param B transpose of {@code BT}.
+     * @param innerInputLength number of variables of the inner function.
+     * @return the contribution of each product of inner variables.
      */
-    protected ComposePreProcessResults preProcessCompose( SimplePolynomialFunction inner ) {
-        EnhancedBitMatrix contributionRows = new EnhancedBitMatrix( Arrays.asList( inner.getContributions() ) );
-        EnhancedBitMatrix.transpose( contributionRows );
-
-        List<Monomial> mList = Lists.newArrayList( inner.getMonomials() );
-        ConcurrentMap<Monomial, Integer> indices = Maps.newConcurrentMap();
-        Map<Monomial, Integer> indicesResults = Maps.newHashMapWithExpectedSize( mList.size() * ( mList.size() - 1 )
-                / 2 );
-        for ( int i = 0; i < mList.size(); ++i ) {
-            indices.put( mList.get( i ), i );
+    QuadraticContributions accumulateBuckets(
+            BitVector[][] buckets,
+            EnhancedBitMatrix BT,
+            EnhancedBitMatrix B,
+            int innerInputLength ) {
+        QuadraticContributions mc = new QuadraticContributions( innerInputLength, outputLength );
+        for ( int i = 0; i < buckets.length - 1; ++i ) {
+            accumulateBucket( i, buckets, BT, B, mc );
         }
+        return mc;
+    }
 
-        if ( this.getMaximumMonomialOrder() == 2 && inner.getMaximumMonomialOrder() == 1 ) {
-            Monomial[] linearMonomials = inner.getMonomials();
-            for ( int i = 0; i < linearMonomials.length; i++ ) {
-                for ( int j = i + 1; j < linearMonomials.length; j++ ) {
-                    Monomial p = mList.get( i ).product( mList.get( j ) );
-                    if ( indices.get( p ) == null ) {
-                        indices.put( p, mList.size() );
-                        mList.add( p );
-                    }
+    /**
+     * Xors the products contributed by the bucket of outer variable {@code i} into {@code mc}. Only reads the shared
+     * arguments, so buckets may be accumulated concurrently into different accumulators.
+     */
+    void accumulateBucket(
+            int i,
+            BitVector[][] buckets,
+            EnhancedBitMatrix BT,
+            EnhancedBitMatrix B,
+            QuadraticContributions mc ) {
+        EnhancedBitMatrix AT = EnhancedBitMatrix.directFromRows( Arrays.asList( buckets[ i ] ) );
+        EnhancedBitMatrix coeffMatrix = ( i == 0 ? BT : BT.resizeColumns( BT.cols() - i ) ).multiply( AT );
+        // getRow copies, so read the words of each coefficient row once instead of once per product.
+        List<BitVector> coeffRows = coeffMatrix.getRows();
+        long[][] coeffWords = new long[ coeffRows.size() ][];
+        for ( int k = 0; k < coeffWords.length; ++k ) {
+            coeffWords[ k ] = coeffRows.get( k ).elements();
+        }
+        // Now for each row, where index B.cols() - 1 is the constant term of the inner function.
+        BitVector outerRowInTermsOfInner = B.getRows().get( i );
+        int factors = outerRowInTermsOfInner.size();
+        for ( int j = 0; j < factors; ++j ) {
+            if ( outerRowInTermsOfInner.get( j ) ) {
+                for ( int k = 0; k < factors; ++k ) {
+                    // inner_i * inner_j
+                    mc.xor( j, k, coeffWords[ k ] );
                 }
             }
         }
+    }
 
-        Monomial[] linearMonomials = new Monomial[ inputLength ];
-        BitVector[] innerRows = new BitVector[ inputLength ];
-
-        for ( int i = 0; i < inputLength; ++i ) {
-            Monomial linearMonomial = Monomial.linearMonomial( inputLength, i );
-            linearMonomials[ i ] = linearMonomial;
-            innerRows[ i ] = contributionRows.getRow( i );
-        }
-        for ( int i = 0; i < monomials.length; ++i ) {
-            indicesResults.put( monomials[ i ], i );
-        }
+    /**
+     * Abstracts some of the preliminary work of the compose routine.
+     * 
+     * @param inner
+     * @return
+     */
+    protected ComposePreProcessResults preProcessCompose( SimplePolynomialFunction inner ) {
+        return preProcessCompose( new PreparedInner( inner ) );
+    }
 
+    /**
+     * Copies the parts of a prepared inner function that compose modifies, preparing them first if needed.
+     * 
+     * @param inner
+     * @return
+     */
+    protected ComposePreProcessResults preProcessCompose( PreparedInner inner ) {
         ComposePreProcessResults results = new ComposePreProcessResults();
-        results.indices = indices;
-        results.monomialsList = mList;
-        results.innerRows = innerRows;
-
+        results.monomials = inner.newInterner();
+        results.innerRows = inner.copyInnerRows();
         return results;
     }
 
-    protected BitVector[] expandOuterMonomials(
-            List<Monomial> mList,
-            BitVector[] innerRows,
-            ConcurrentMap<Monomial, Integer> indices ) {
+    BitVector[] expandOuterMonomials( MonomialInterner mList, BitVector[] innerRows ) {
         BitVector[] results = new BitVector[ monomials.length ];
         for ( int k = 0; k < monomials.length; ++k ) {
             Monomial m = monomials[ k ];
@@ -764,7 +1098,7 @@ public class BasePolynomialFunction extends PolynomialFunctionRepresentationGF2
                         if ( lhs == null ) {
                             lhs = innerRows[ i ];
                         } else {
-                            lhs = product( lhs, innerRows[ i ], mList, indices );
+                            lhs = product( lhs, innerRows[ i ], mList );
                         }
                     }
                 }
@@ -775,13 +1109,13 @@ public class BasePolynomialFunction extends PolynomialFunctionRepresentationGF2
     }
 
     protected SimplePolynomialFunction postProcessCompose(
-            List<Monomial> mList,
-            Map<Monomial, Integer> indices,
+            MonomialInterner mList,
             BitVector[] results,
             SimplePolynomialFunction inner ) {
         Optional<Integer> constantOuterMonomialIndex = Optional.absent();
-        Optional<Integer> constantInnerMonomialIndex = Optional.fromNullable( indices.get( Monomial
-                .constantMonomial( inner.getInputLength() ) ) );
+        int constantInnerIndex = mList.indexOf( Monomial.constantMonomial( mList.getVariableCount() ) );
+        Optional<Integer> constantInnerMonomialIndex = constantInnerIndex < 0 ? Optional.<Integer> absent()
+                : Optional.of( constantInnerIndex );
         // Now lets fix the contributions so they're all the same length.
         for ( int i = 0; i < results.length; ++i ) {
             BitVector contribution = results[ i ];
@@ -829,8 +1163,7 @@ public class BasePolynomialFunction extends PolynomialFunctionRepresentationGF2
                         contributions[ constantOuterMonomialIndex.get() ] );
             } else {
                 // Don't use the outer monomial directly since it maybe the wrong size.
-                // mList.add( monomials[ constantOuterMonomialIndex.get() ] );
-                mList.add( Monomial.constantMonomial( inner.getMonomials()[ 0 ].size() ) );
+                mList.intern( Monomial.constantMonomial( mList.getVariableCount() ) );
                 unfilteredContributions.add( contributions[ constantOuterMonomialIndex.get() ] );
             }
         }
@@ -897,9 +1230,8 @@ public class BasePolynomialFunction extends PolynomialFunctionRepresentationGF2
     }
 
     protected class ComposePreProcessResults {
-        public List<Monomial>                   monomialsList;
-        public ConcurrentMap<Monomial, Integer> indices;
-        public BitVector[]                      innerRows;
+        MonomialInterner   monomials;
+        public BitVector[] innerRows;
 
     }
 
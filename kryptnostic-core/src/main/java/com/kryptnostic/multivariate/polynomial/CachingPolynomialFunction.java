@@ -0,0 +1,124 @@
+package com.kryptnostic.multivariate.polynomial;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+import cern.colt.bitvector.BitVector;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.Weigher;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.kryptnostic.bitwise.BitVectors;
+import com.kryptnostic.multivariate.gf2.PolynomialFunction;
+
+/**
+ * Decorator that memoizes the outputs of a function, for call sites that evaluate the same inputs over and over, such
+ * as hashing popular search terms or encrypting all zero padding blocks. Outputs are kept in a bounded, least recently
+ * used cache keyed by the words of the input, which is safe for concurrent use and records hits, misses and evictions.
+ * Concurrent misses on the same input evaluate the function only once.
+ *
+ * Outputs are copied on the way out, so callers may modify the vectors they get back. Memoizing only makes sense for
+ * deterministic functions, and the cached outputs live in memory for as long as the decorator does.
+ */
+public class CachingPolynomialFunction implements PolynomialFunction {
+    /*
+     * Rough per entry cost of the key and value objects and the cache's own bookkeeping, on top of their word arrays.
+     */
+    private static final int                 ENTRY_OVERHEAD_BYTES = 128;
+
+    private final PolynomialFunction         function;
+    private final Cache<WordsKey, BitVector> cache;
+
+    private CachingPolynomialFunction( PolynomialFunction function, Cache<WordsKey, BitVector> cache ) {
+        this.function = function;
+        this.cache = cache;
+    }
+
+    /**
+     * @param function to memoize.
+     * @param maximumEntries number of outputs retained.
+     * @return a decorator retaining at most {@code maximumEntries} outputs.
+     */
+    public static CachingPolynomialFunction withMaximumEntries( PolynomialFunction function, long maximumEntries ) {
+        Preconditions.checkArgument( maximumEntries >= 0, "Maximum number of entries cannot be negative." );
+        return new CachingPolynomialFunction( function, CacheBuilder.newBuilder().maximumSize( maximumEntries )
+                .recordStats().<WordsKey, BitVector> build() );
+    }
+
+    /**
+     * @param function to memoize.
+     * @param maximumBytes approximate memory budget for cached inputs and outputs.
+     * @return a decorator whose cached inputs and outputs take up roughly at most {@code maximumBytes}.
+     */
+    public static CachingPolynomialFunction withMaximumBytes( PolynomialFunction function, long maximumBytes ) {
+        Preconditions.checkArgument( maximumBytes >= 0, "Maximum number of bytes cannot be negative." );
+        return new CachingPolynomialFunction( function, CacheBuilder.newBuilder().maximumWeight( maximumBytes )
+                .weigher( new Weigher<WordsKey, BitVector>() {
+                    @Override
+                    public int weigh( WordsKey key, BitVector value ) {
+                        return ENTRY_OVERHEAD_BYTES + key.bytes() + ( value.elements().length << 3 );
+                    }
+                } ).recordStats().<WordsKey, BitVector> build() );
+    }
+
+    @Override
+    public BitVector apply( final BitVector input ) {
+        Preconditions.checkArgument(
+                input.size() == function.getInputLength(),
+                "Input length must match the input length of the function." );
+        try {
+            return cache.get( WordsKey.of( input ), new Callable<BitVector>() {
+                @Override
+                public BitVector call() {
+                    return function.apply( input.copy() );
+                }
+            } ).copy();
+        } catch ( ExecutionException | UncheckedExecutionException e ) {
+            throw Throwables.propagate( e.getCause() );
+        }
+    }
+
+    @Override
+    public BitVector apply( BitVector lhs, BitVector rhs ) {
+        return apply( BitVectors.concatenate( lhs, rhs ) );
+    }
+
+    @Override
+    public int getInputLength() {
+        return function.getInputLength();
+    }
+
+    @Override
+    public int getOutputLength() {
+        return function.getOutputLength();
+    }
+
+    /**
+     * @return the function being memoized.
+     */
+    public PolynomialFunction getFunction() {
+        return function;
+    }
+
+    /**
+     * @return hit, miss, load and eviction counts since the decorator was created.
+     */
+    public CacheStats getStats() {
+        return cache.stats();
+    }
+
+    /**
+     * @return approximate number of cached outputs.
+     */
+    public long size() {
+        return cache.size();
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+}
@@ -1,6 +1,7 @@
 package com.kryptnostic.multivariate.polynomial;
 
 import java.io.Serializable;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
@@ -30,6 +31,9 @@ public class CompoundPolynomialFunctionGF2 implements CompoundPolynomialFunction
     private static final long serialVersionUID = 5911932565890972307L;
     private static final String FUNCTIONS_PROPERTY = "functions";
     private final LinkedList<PolynomialFunction> functions;
+    private transient volatile WordScratch intermediateScratch;
+    private transient volatile PolynomialFunction[] chain;
+    private transient volatile PipelinedBatchEvaluator batchEvaluator;
 
     public CompoundPolynomialFunctionGF2() {
         this(ImmutableList.<PolynomialFunction> of());
@@ -61,6 +65,7 @@ public class CompoundPolynomialFunctionGF2 implements CompoundPolynomialFunction
     public CompoundPolynomialFunction prefix(PolynomialFunction inner) {
         validateForCompose(inner);
         functions.addFirst(inner);
+        chainChanged();
         return this;
     }
 
@@ -69,6 +74,7 @@ public class CompoundPolynomialFunctionGF2 implements CompoundPolynomialFunction
         Preconditions.checkArgument(getOutputLength() == inner.getInputLength(),
                 "Function being appeneded must have the same length.");
         functions.addLast(inner);
+        chainChanged();
         return this;
     }
 
@@ -90,6 +96,108 @@ public class CompoundPolynomialFunctionGF2 implements CompoundPolynomialFunction
         return result;
     }
 
+    /**
+     * Evaluates each function in turn, alternating between two per thread buffers for the intermediate results. The
+     * last function writes directly into {@code output}. An empty chain is the identity, so it copies as many words of
+     * {@code input} as its output length spans.
+     */
+    @Override
+    public void apply(long[] input, long[] output) {
+        int outputWords = ( getOutputLength() + 63 ) >>> 6;
+        Preconditions.checkArgument(input.length >= ( getInputLength() + 63 ) >>> 6,
+                "Input must have enough words to hold the input length of the function.");
+        Preconditions.checkArgument(output.length >= outputWords,
+                "Output must have enough words to hold the output length of the function.");
+        PolynomialFunction[] chain = chain();
+        int count = chain.length;
+        if (count == 0) {
+            System.arraycopy(input, 0, output, 0, outputWords);
+            return;
+        }
+        WordScratch scratch = intermediateScratch();
+        long[] current = input;
+        for (int i = 0; i < count; ++i) {
+            PolynomialFunction f = chain[i];
+            long[] next = i == count - 1 ? output : scratch.get(i & 1, ( f.getOutputLength() + 63 ) >>> 6);
+            apply(f, current, next);
+            current = next;
+        }
+    }
+
+    /**
+     * Evaluates the function on many inputs at once, running every function of the chain on its own thread. See
+     * {@link #getBatchEvaluator()}.
+     */
+    public BitVector[] applyBatch(BitVector[] inputs) {
+        return getBatchEvaluator().apply(inputs);
+    }
+
+    /**
+     * @return the evaluator used by {@link #applyBatch(BitVector[])}, whose stage statistics accumulate over every
+     *         batch evaluated since the chain last changed.
+     */
+    @JsonIgnore
+    public PipelinedBatchEvaluator getBatchEvaluator() {
+        PipelinedBatchEvaluator evaluator = batchEvaluator;
+        if (evaluator == null) {
+            evaluator = new PipelinedBatchEvaluator(this);
+            batchEvaluator = evaluator;
+        }
+        return evaluator;
+    }
+
+    @Override
+    public void applyInto(BitVector input, BitVector output) {
+        Preconditions.checkArgument(input.size() == getInputLength(),
+                "Input must match the input length of the function.");
+        Preconditions.checkArgument(output.size() == getOutputLength(),
+                "Output must match the output length of the function.");
+        apply(input.elements(), output.elements());
+    }
+
+    /*
+     * Functions without word level evaluation are evaluated through BitVectors, which allocates.
+     */
+    static void apply(PolynomialFunction f, long[] input, long[] output) {
+        if (f instanceof SimplePolynomialFunction) {
+            ( (SimplePolynomialFunction) f ).apply(input, output);
+        } else if (f instanceof CompoundPolynomialFunction) {
+            ( (CompoundPolynomialFunction) f ).apply(input, output);
+        } else {
+            int outputWords = ( f.getOutputLength() + 63 ) >>> 6;
+            long[] result = f.apply(new BitVector(Arrays.copyOf(input, ( f.getInputLength() + 63 ) >>> 6),
+                    f.getInputLength())).elements();
+            System.arraycopy(result, 0, output, 0, outputWords);
+        }
+    }
+
+    /*
+     * Functions of the chain as an array, so that evaluation neither walks the linked list nor allocates an iterator.
+     * Cleared, together with the batch evaluator, by every method that changes the chain.
+     */
+    private PolynomialFunction[] chain() {
+        PolynomialFunction[] c = chain;
+        if (c == null) {
+            c = functions.toArray(new PolynomialFunction[functions.size()]);
+            chain = c;
+        }
+        return c;
+    }
+
+    private void chainChanged() {
+        chain = null;
+        batchEvaluator = null;
+    }
+
+    private WordScratch intermediateScratch() {
+        WordScratch scratch = intermediateScratch;
+        if (scratch == null) {
+            scratch = new WordScratch(2);
+            intermediateScratch = scratch;
+        }
+        return scratch;
+    }
+
     @Override
     public BitVector apply(BitVector lhs, BitVector rhs) {
         Preconditions.checkArgument(( lhs.size() + rhs.size() ) == getInputLength(),
@@ -145,5 +253,6 @@ public class CompoundPolynomialFunctionGF2 implements CompoundPolynomialFunction
                 "Cannot compose function that isn't of type SimplePolynomialFunction.");
         SimplePolynomialFunction outer = (SimplePolynomialFunction) functions.getFirst();
         functions.set(0, outer.compose(inner));
+        chainChanged();
     }
 }
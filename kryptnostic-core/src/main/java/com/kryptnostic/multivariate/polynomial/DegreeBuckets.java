@@ -0,0 +1,235 @@
+package com.kryptnostic.multivariate.polynomial;
+
+import java.util.Arrays;
+import java.util.List;
+
+import cern.colt.bitvector.BitVector;
+
+import com.google.common.collect.Lists;
+import com.kryptnostic.linear.FourRussiansMatrix;
+import com.kryptnostic.linear.Kernels;
+import com.kryptnostic.multivariate.gf2.Monomial;
+import com.kryptnostic.multivariate.predicates.MonomialOrderHomogeneityPredicate;
+
+/**
+ * Terms of a function partitioned by the order of their monomials, so that each order is evaluated by a kernel
+ * specialized for it:
+ *
+ * <ul>
+ * <li>the constant terms are folded into a single output row,</li>
+ * <li>the linear terms form a matrix with one output row per variable, multiplied with the Four Russians method when
+ * there are enough linear terms to pay for the table lookups and row by row over the set variables otherwise,</li>
+ * <li>the quadratic terms are stored as pairs of variable indices, so each one is tested with two bit lookups,</li>
+ * <li>only terms of order three and above keep their full monomial masks.</li>
+ * </ul>
+ *
+ * The constant and linear buckets form the affine part of the function, which is the only linear split a function
+ * builds. Parallel evaluation applies it with {@link #applyAffine(long[], long[])} and splits the
+ * {@link #getNonlinearTerms() nonlinear terms} across tasks.
+ */
+final class DegreeBuckets {
+    private static final MonomialOrderHomogeneityPredicate constant  = new MonomialOrderHomogeneityPredicate( 0 );
+    private static final MonomialOrderHomogeneityPredicate linear    = Monomial.getLinearHomogeneityPredicate();
+    private static final MonomialOrderHomogeneityPredicate quadratic = new MonomialOrderHomogeneityPredicate( 2 );
+
+    private final int                                      rowLength;
+    private final int[]                                    nonlinearTerms;
+    private final long[]                                   constantRow;
+    private final FourRussiansMatrix                       linearMatrix;
+    private final int[]                                    linearVariables;
+    private final long[]                                   linearRows;
+    private final int[]                                    quadraticPairs;
+    private final long[]                                   quadraticRows;
+    private final int                                      higherStride;
+    private final long[]                                   higherMasks;
+    private final long[]                                   higherRows;
+
+    private DegreeBuckets(
+            int rowLength,
+            int[] nonlinearTerms,
+            long[] constantRow,
+            FourRussiansMatrix linearMatrix,
+            int[] linearVariables,
+            long[] linearRows,
+            int[] quadraticPairs,
+            long[] quadraticRows,
+            int higherStride,
+            long[] higherMasks,
+            long[] higherRows ) {
+        this.rowLength = rowLength;
+        this.nonlinearTerms = nonlinearTerms;
+        this.constantRow = constantRow;
+        this.linearMatrix = linearMatrix;
+        this.linearVariables = linearVariables;
+        this.linearRows = linearRows;
+        this.quadraticPairs = quadraticPairs;
+        this.quadraticRows = quadraticRows;
+        this.higherStride = higherStride;
+        this.higherMasks = higherMasks;
+        this.higherRows = higherRows;
+    }
+
+    static DegreeBuckets build( Monomial[] monomials, BitVector[] contributions, int inputLength, int outputLength ) {
+        int variableCount = monomials.length == 0 ? inputLength : monomials[ 0 ].size();
+        int rowLength = ( outputLength + 63 ) >>> 6;
+        int higherStride = ( variableCount + 63 ) >>> 6;
+
+        long[] constantRow = new long[ rowLength ];
+        List<BitVector> variableRows = Lists.newArrayListWithCapacity( variableCount );
+        for ( int i = 0; i < variableCount; ++i ) {
+            variableRows.add( new BitVector( outputLength ) );
+        }
+        boolean[] hasLinearTerm = new boolean[ variableCount ];
+        int linearCount = 0;
+        int[] quadraticTerms = new int[ monomials.length ];
+        int quadraticCount = 0;
+        int[] higherTerms = new int[ monomials.length ];
+        int higherCount = 0;
+        int[] nonlinearTerms = new int[ monomials.length ];
+        int nonlinearCount = 0;
+
+        for ( int m = 0; m < monomials.length; ++m ) {
+            Monomial monomial = monomials[ m ];
+            if ( constant.apply( monomial ) ) {
+                xorRow( contributions[ m ].elements(), 0, constantRow, 0, rowLength );
+            } else if ( linear.apply( monomial ) ) {
+                int variable = nextVariable( monomial.elements(), 0 );
+                if ( !hasLinearTerm[ variable ] ) {
+                    hasLinearTerm[ variable ] = true;
+                    ++linearCount;
+                }
+                variableRows.get( variable ).xor( contributions[ m ] );
+            } else if ( quadratic.apply( monomial ) ) {
+                quadraticTerms[ quadraticCount++ ] = m;
+                nonlinearTerms[ nonlinearCount++ ] = m;
+            } else {
+                higherTerms[ higherCount++ ] = m;
+                nonlinearTerms[ nonlinearCount++ ] = m;
+            }
+        }
+
+        /*
+         * The matrix costs one lookup per group of variables whichever of them are set, so it only pays off once there
+         * are more linear terms than groups.
+         */
+        FourRussiansMatrix linearMatrix = null;
+        int[] linearVariables = new int[ 0 ];
+        long[] linearRows = new long[ 0 ];
+        int groups = ( variableCount + FourRussiansMatrix.GROUP_BITS - 1 ) / FourRussiansMatrix.GROUP_BITS;
+        if ( linearCount > groups ) {
+            linearMatrix = new FourRussiansMatrix( variableRows, outputLength );
+        } else {
+            linearVariables = new int[ linearCount ];
+            linearRows = new long[ linearCount * rowLength ];
+            for ( int i = 0, k = 0; i < variableCount; ++i ) {
+                if ( hasLinearTerm[ i ] ) {
+                    linearVariables[ k ] = i;
+                    xorRow( variableRows.get( i ).elements(), 0, linearRows, k * rowLength, rowLength );
+                    ++k;
+                }
+            }
+        }
+
+        int[] quadraticPairs = new int[ quadraticCount << 1 ];
+        long[] quadraticRows = new long[ quadraticCount * rowLength ];
+        for ( int k = 0; k < quadraticCount; ++k ) {
+            Monomial monomial = monomials[ quadraticTerms[ k ] ];
+            int i = nextVariable( monomial.elements(), 0 );
+            quadraticPairs[ k << 1 ] = i;
+            quadraticPairs[ ( k << 1 ) + 1 ] = nextVariable( monomial.elements(), i + 1 );
+            xorRow( contributions[ quadraticTerms[ k ] ].elements(), 0, quadraticRows, k * rowLength, rowLength );
+        }
+
+        long[] higherMasks = new long[ higherCount * higherStride ];
+        long[] higherRows = new long[ higherCount * rowLength ];
+        for ( int k = 0; k < higherCount; ++k ) {
+            long[] mask = monomials[ higherTerms[ k ] ].elements();
+            System.arraycopy( mask, 0, higherMasks, k * higherStride, higherStride );
+            xorRow( contributions[ higherTerms[ k ] ].elements(), 0, higherRows, k * rowLength, rowLength );
+        }
+
+        return new DegreeBuckets(
+                rowLength,
+                Arrays.copyOf( nonlinearTerms, nonlinearCount ),
+                constantRow,
+                linearMatrix,
+                linearVariables,
+                linearRows,
+                quadraticPairs,
+                quadraticRows,
+                higherStride,
+                higherMasks,
+                higherRows );
+    }
+
+    /**
+     * Xors the function evaluated on {@code input} into {@code result}.
+     */
+    void apply( long[] input, long[] result ) {
+        applyAffine( input, result );
+        applyQuadratic( input, result );
+        applyHigher( input, result );
+    }
+
+    /**
+     * @return indices of the monomials of order two and above, in the order they appear in the function.
+     */
+    int[] getNonlinearTerms() {
+        return nonlinearTerms;
+    }
+
+    /**
+     * Xors the constant and linear terms of the function evaluated on {@code input} into {@code result}.
+     */
+    void applyAffine( long[] input, long[] result ) {
+        xorRow( constantRow, 0, result, 0, rowLength );
+        applyLinear( input, result );
+    }
+
+    private void applyLinear( long[] input, long[] result ) {
+        if ( linearMatrix != null ) {
+            linearMatrix.multiplyInto( input, result );
+            return;
+        }
+        for ( int k = 0; k < linearVariables.length; ++k ) {
+            int i = linearVariables[ k ];
+            if ( ( input[ i >>> 6 ] & ( 1L << i ) ) != 0L ) {
+                xorRow( linearRows, k * rowLength, result, 0, rowLength );
+            }
+        }
+    }
+
+    private void applyQuadratic( long[] input, long[] result ) {
+        for ( int k = 0, p = 0; p < quadraticPairs.length; ++k, p += 2 ) {
+            int i = quadraticPairs[ p ];
+            int j = quadraticPairs[ p + 1 ];
+            if ( ( ( input[ i >>> 6 ] >>> i ) & ( input[ j >>> 6 ] >>> j ) & 1L ) != 0L ) {
+                xorRow( quadraticRows, k * rowLength, result, 0, rowLength );
+            }
+        }
+    }
+
+    private void applyHigher( long[] input, long[] result ) {
+        for ( int m = 0, c = 0; m < higherMasks.length; m += higherStride, c += rowLength ) {
+            if ( Monomial.eval( higherMasks, m, higherStride, input ) ) {
+                xorRow( higherRows, c, result, 0, rowLength );
+            }
+        }
+    }
+
+    /*
+     * Returns the index of the first variable at or after from that is set in the words of a monomial.
+     */
+    private static int nextVariable( long[] words, int from ) {
+        int w = from >>> 6;
+        long bits = words[ w ] & ( -1L << from );
+        while ( bits == 0L ) {
+            bits = words[ ++w ];
+        }
+        return ( w << 6 ) + Long.numberOfTrailingZeros( bits );
+    }
+
+    private static void xorRow( long[] src, int srcOffset, long[] dst, int dstOffset, int length ) {
+        Kernels.get().xor( src, srcOffset, dst, dstOffset, length );
+    }
+}
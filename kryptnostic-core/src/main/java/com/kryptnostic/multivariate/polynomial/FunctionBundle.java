@@ -0,0 +1,219 @@
+package com.kryptnostic.multivariate.polynomial;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import cern.colt.bitvector.BitVector;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+import com.kryptnostic.multivariate.gf2.CompoundPolynomialFunction;
+import com.kryptnostic.multivariate.gf2.Monomial;
+import com.kryptnostic.multivariate.gf2.SimplePolynomialFunction;
+
+/**
+ * Several functions of the same input merged into a single function over the union of their monomials, with one
+ * contribution column per function. Evaluating the bundle tests every distinct monomial once and produces the outputs
+ * of all functions, instead of re-testing shared monomials once per function, as happens for example with the two
+ * halves of a query hasher pair, which only differ in their contributions.
+ *
+ * The column of each function starts on a word boundary of the merged output, so splitting the merged output back
+ * into the output of each function only copies whole words. Parameterized functions can be bundled when they all share
+ * the same pipelines, in which case the pipelines are also only evaluated once.
+ */
+public final class FunctionBundle {
+    private final int                      inputLength;
+    private final int[]                    outputLengths;
+    private final int[]                    wordOffsets;
+    private final int                      mergedWords;
+    private final SimplePolynomialFunction merged;
+    private final WordScratch              scratch = new WordScratch( 1 );
+
+    /**
+     * @param functions to bundle, which must all have the same input length and monomial length, and must either all
+     *            be unparameterized or all share the same pipelines.
+     */
+    public FunctionBundle( List<SimplePolynomialFunction> functions ) {
+        Preconditions.checkArgument( !functions.isEmpty(), "At least one function is required to form a bundle." );
+        SimplePolynomialFunction first = functions.get( 0 );
+        this.inputLength = first.getInputLength();
+        this.outputLengths = new int[ functions.size() ];
+        this.wordOffsets = new int[ functions.size() + 1 ];
+        List<CompoundPolynomialFunction> pipelines = pipelinesOf( first );
+        for ( int f = 0; f < functions.size(); ++f ) {
+            SimplePolynomialFunction function = functions.get( f );
+            Preconditions.checkArgument(
+                    function.getInputLength() == inputLength,
+                    "All functions in a bundle must have the same input length." );
+            Preconditions.checkArgument(
+                    function.isParameterized() == first.isParameterized()
+                            && ( pipelines == null || pipelines.equals( pipelinesOf( function ) ) ),
+                    "Parameterized functions can only be bundled if they share the same pipelines." );
+            outputLengths[ f ] = function.getOutputLength();
+            wordOffsets[ f + 1 ] = wordOffsets[ f ] + ( ( outputLengths[ f ] + 63 ) >>> 6 );
+        }
+        this.mergedWords = wordOffsets[ functions.size() ];
+
+        /*
+         * Assign every distinct monomial a row of the merged contributions, then copy the contribution of each function
+         * into its column of that row.
+         */
+        Map<Monomial, long[]> rows = Maps.newLinkedHashMap();
+        int monomialLength = -1;
+        for ( int f = 0; f < functions.size(); ++f ) {
+            Monomial[] monomials = functions.get( f ).getMonomials();
+            BitVector[] contributions = functions.get( f ).getContributions();
+            for ( int m = 0; m < monomials.length; ++m ) {
+                if ( monomialLength < 0 ) {
+                    monomialLength = monomials[ m ].size();
+                }
+                Preconditions.checkArgument(
+                        monomials[ m ].size() == monomialLength,
+                        "All monomials in a bundle must have the same number of variables." );
+                long[] row = rows.get( monomials[ m ] );
+                if ( row == null ) {
+                    row = new long[ mergedWords ];
+                    rows.put( monomials[ m ], row );
+                }
+                long[] contribution = contributions[ m ].elements();
+                for ( int w = wordOffsets[ f ]; w < wordOffsets[ f + 1 ]; ++w ) {
+                    row[ w ] ^= contribution[ w - wordOffsets[ f ] ];
+                }
+            }
+        }
+
+        Monomial[] mergedMonomials = new Monomial[ rows.size() ];
+        BitVector[] mergedContributions = new BitVector[ rows.size() ];
+        int index = 0;
+        for ( Map.Entry<Monomial, long[]> entry : rows.entrySet() ) {
+            mergedMonomials[ index ] = entry.getKey();
+            mergedContributions[ index ] = new BitVector( entry.getValue(), mergedWords << 6 );
+            ++index;
+        }
+        if ( pipelines != null ) {
+            this.merged = new ParameterizedPolynomialFunctionGF2(
+                    inputLength,
+                    mergedWords << 6,
+                    mergedMonomials,
+                    mergedContributions,
+                    pipelines );
+        } else {
+            this.merged = new BasePolynomialFunction(
+                    inputLength,
+                    mergedWords << 6,
+                    mergedMonomials,
+                    mergedContributions ).optimize();
+        }
+    }
+
+    public static FunctionBundle of( SimplePolynomialFunction... functions ) {
+        return new FunctionBundle( ImmutableList.copyOf( functions ) );
+    }
+
+    /**
+     * @return number of functions in the bundle.
+     */
+    public int size() {
+        return outputLengths.length;
+    }
+
+    public int getInputLength() {
+        return inputLength;
+    }
+
+    /**
+     * @return number of distinct monomials evaluated for each input.
+     */
+    public int getMonomialCount() {
+        return merged.getMonomials().length;
+    }
+
+    /**
+     * Evaluates every function of the bundle on the provided input in a single pass over the shared monomials.
+     * 
+     * @param input vector of the bundle's input length.
+     * @return the output of each function, in the order the functions were bundled.
+     */
+    public BitVector[] apply( BitVector input ) {
+        Preconditions.checkArgument(
+                input.size() == inputLength,
+                "Input length must match the input length of the bundle." );
+        long[][] outputs = new long[ size() ][];
+        for ( int f = 0; f < outputs.length; ++f ) {
+            outputs[ f ] = new long[ wordOffsets[ f + 1 ] - wordOffsets[ f ] ];
+        }
+        apply( input.elements(), outputs );
+        return toBitVectors( outputs );
+    }
+
+    /**
+     * Word level variant of {@link #apply(BitVector)}, which performs no allocation once this thread's scratch buffer
+     * has been sized.
+     * 
+     * @param input words of a vector of the bundle's input length.
+     * @param outputs one array per function, each with enough words to hold the output of its function, which are
+     *            overwritten.
+     */
+    public void apply( long[] input, long[][] outputs ) {
+        Preconditions.checkArgument( outputs.length == size(), "There must be one output for every function." );
+        long[] result = scratch.get( 0, mergedWords );
+        merged.apply( input, result );
+        split( result, outputs );
+    }
+
+    /**
+     * Evaluates every function of the bundle on each of the provided inputs.
+     * 
+     * @param inputs vectors of the bundle's input length.
+     * @return for each input, the output of each function in the order the functions were bundled.
+     */
+    public BitVector[][] applyBatch( BitVector[] inputs ) {
+        long[][] words = new long[ inputs.length ][];
+        for ( int i = 0; i < inputs.length; ++i ) {
+            Preconditions.checkArgument(
+                    inputs[ i ].size() == inputLength,
+                    "Input length must match the input length of the bundle." );
+            words[ i ] = inputs[ i ].elements();
+        }
+        long[][] results = merged.applyBatch( words );
+        BitVector[][] outputs = new BitVector[ inputs.length ][];
+        for ( int i = 0; i < inputs.length; ++i ) {
+            long[][] split = new long[ size() ][];
+            for ( int f = 0; f < split.length; ++f ) {
+                split[ f ] = Arrays.copyOfRange( results[ i ], wordOffsets[ f ], wordOffsets[ f + 1 ] );
+            }
+            outputs[ i ] = toBitVectors( split );
+        }
+        return outputs;
+    }
+
+    private void split( long[] result, long[][] outputs ) {
+        for ( int f = 0; f < outputs.length; ++f ) {
+            int words = wordOffsets[ f + 1 ] - wordOffsets[ f ];
+            Preconditions.checkArgument(
+                    outputs[ f ].length >= words,
+                    "Each output must have enough words to hold the output length of its function." );
+            System.arraycopy( result, wordOffsets[ f ], outputs[ f ], 0, words );
+        }
+    }
+
+    private BitVector[] toBitVectors( long[][] outputs ) {
+        BitVector[] vectors = new BitVector[ outputs.length ];
+        for ( int f = 0; f < outputs.length; ++f ) {
+            vectors[ f ] = new BitVector( outputs[ f ], outputLengths[ f ] );
+        }
+        return vectors;
+    }
+
+    private static List<CompoundPolynomialFunction> pipelinesOf( SimplePolynomialFunction function ) {
+        if ( function instanceof ParameterizedPolynomialFunctionGF2 ) {
+            return ( (ParameterizedPolynomialFunctionGF2) function ).getPipelines();
+        }
+        Preconditions.checkArgument(
+                !function.isParameterized(),
+                "Only parameterized functions with accessible pipelines can be bundled." );
+        return null;
+    }
+}
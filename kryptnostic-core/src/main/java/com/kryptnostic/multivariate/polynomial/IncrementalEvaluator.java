@@ -0,0 +1,202 @@
+package com.kryptnostic.multivariate.polynomial;
+
+import java.util.Arrays;
+
+import cern.colt.bitvector.BitVector;
+
+import com.google.common.base.Preconditions;
+import com.kryptnostic.multivariate.gf2.Monomial;
+import com.kryptnostic.multivariate.gf2.SimplePolynomialFunction;
+
+/**
+ * Evaluator that keeps a current input and the output of a function on it, and updates the output as single input bits
+ * are flipped. Flipping x_i only changes the value of monomials containing x_i, and such a monomial changes exactly
+ * when all of its other variables are set, so an update only tests the monomials containing x_i instead of the whole
+ * function.
+ *
+ * This makes sweeps over inputs that differ in a few bits, such as exhaustive searches over a subset of the input bits
+ * with {@link #enumerate(int[], AssignmentVisitor)}, far cheaper than calling {@code apply} on every input.
+ *
+ * Instances are not thread safe.
+ */
+public final class IncrementalEvaluator {
+    private final SimplePolynomialFunction function;
+    private final int                      inputLength;
+    private final int                      outputLength;
+    private final int                      monomialStride;
+    private final int                      contributionStride;
+    private final int[]                    offsets;
+    private final long[]                   packedMonomials;
+    private final long[]                   packedContributions;
+    private final long[]                   input;
+    private final long[]                   output;
+
+    /**
+     * Visitor of the assignments produced by {@link IncrementalEvaluator#enumerate(int[], AssignmentVisitor)}.
+     */
+    public interface AssignmentVisitor {
+        /**
+         * @param assignment bit {@code j} holds the value currently assigned to the {@code j}-th enumerated variable.
+         * @param output words of the output of the function on the current input. They are only valid during the call
+         *            and must not be modified.
+         * @return true to continue the enumeration, false to stop it.
+         */
+        boolean visit( long assignment, long[] output );
+    }
+
+    /**
+     * Creates an evaluator whose current input is all zeros.
+     *
+     * @param function to evaluate, which must not be parameterized.
+     */
+    public IncrementalEvaluator( SimplePolynomialFunction function ) {
+        Preconditions.checkArgument(
+                !function.isParameterized(),
+                "Parameterized functions depend on their input through pipelines, so cannot be updated incrementally." );
+        this.function = function;
+        this.inputLength = function.getInputLength();
+        this.outputLength = function.getOutputLength();
+        this.monomialStride = ( inputLength + 63 ) >>> 6;
+        this.contributionStride = ( outputLength + 63 ) >>> 6;
+
+        /*
+         * Invert the function, so that the monomials containing x_i are stored contiguously starting at offsets[ i ].
+         */
+        Monomial[] monomials = function.getMonomials();
+        BitVector[] contributions = function.getContributions();
+        offsets = new int[ inputLength + 1 ];
+        int[][] variables = new int[ monomials.length ][];
+        for ( int m = 0; m < monomials.length; ++m ) {
+            Preconditions.checkArgument(
+                    monomials[ m ].size() == inputLength,
+                    "All monomials must have the same number of variables as the input." );
+            variables[ m ] = variablesOf( monomials[ m ] );
+            for ( int variable : variables[ m ] ) {
+                ++offsets[ variable + 1 ];
+            }
+        }
+        for ( int i = 0; i < inputLength; ++i ) {
+            offsets[ i + 1 ] += offsets[ i ];
+        }
+        packedMonomials = new long[ offsets[ inputLength ] * monomialStride ];
+        packedContributions = new long[ offsets[ inputLength ] * contributionStride ];
+        int[] next = Arrays.copyOf( offsets, inputLength );
+        for ( int m = 0; m < monomials.length; ++m ) {
+            for ( int variable : variables[ m ] ) {
+                int slot = next[ variable ]++;
+                System.arraycopy(
+                        monomials[ m ].elements(),
+                        0,
+                        packedMonomials,
+                        slot * monomialStride,
+                        monomialStride );
+                // The flipped variable itself is not tested when deciding whether the monomial changes value.
+                packedMonomials[ slot * monomialStride + ( variable >>> 6 ) ] &= ~( 1L << variable );
+                System.arraycopy(
+                        contributions[ m ].elements(),
+                        0,
+                        packedContributions,
+                        slot * contributionStride,
+                        contributionStride );
+            }
+        }
+
+        input = new long[ monomialStride ];
+        output = new long[ contributionStride ];
+        function.apply( input, output );
+    }
+
+    /**
+     * Replaces the current input, recomputing the output from scratch.
+     *
+     * @param newInput vector of the function's input length.
+     */
+    public void reset( BitVector newInput ) {
+        Preconditions.checkArgument(
+                newInput.size() == inputLength,
+                "Input must match the input length of the function." );
+        System.arraycopy( newInput.elements(), 0, input, 0, monomialStride );
+        function.apply( input, output );
+    }
+
+    /**
+     * Flips bit {@code variable} of the current input and updates the output.
+     *
+     * @param variable index of the input bit to flip.
+     */
+    public void flip( int variable ) {
+        Preconditions.checkElementIndex( variable, inputLength, "Variable" );
+        for ( int k = offsets[ variable ]; k < offsets[ variable + 1 ]; ++k ) {
+            if ( Monomial.eval( packedMonomials, k * monomialStride, monomialStride, input ) ) {
+                int c = k * contributionStride;
+                for ( int w = 0; w < contributionStride; ++w ) {
+                    output[ w ] ^= packedContributions[ c + w ];
+                }
+            }
+        }
+        input[ variable >>> 6 ] ^= 1L << variable;
+    }
+
+    /**
+     * Sets bit {@code variable} of the current input, updating the output only if the bit changes.
+     *
+     * @param variable index of the input bit to set.
+     * @param value new value of the bit.
+     */
+    public void set( int variable, boolean value ) {
+        Preconditions.checkElementIndex( variable, inputLength, "Variable" );
+        if ( ( ( input[ variable >>> 6 ] & ( 1L << variable ) ) != 0L ) != value ) {
+            flip( variable );
+        }
+    }
+
+    /**
+     * Visits every assignment of the provided input bits in Gray code order, so that consecutive assignments differ in
+     * a single bit and each step costs one {@link #flip(int)}. The enumeration starts by clearing the provided bits and
+     * leaves the evaluator at the last assignment visited. All other input bits keep their current values.
+     *
+     * @param variables indices of the input bits to enumerate, at most 62 of them.
+     * @param visitor called once per assignment, starting with the all zero assignment.
+     * @return true if every assignment was visited, false if the visitor stopped the enumeration.
+     */
+    public boolean enumerate( int[] variables, AssignmentVisitor visitor ) {
+        Preconditions.checkArgument( variables.length <= 62, "At most 62 variables can be enumerated." );
+        for ( int variable : variables ) {
+            set( variable, false );
+        }
+        long assignment = 0L;
+        if ( !visitor.visit( assignment, output ) ) {
+            return false;
+        }
+        long count = 1L << variables.length;
+        for ( long step = 1; step < count; ++step ) {
+            int j = Long.numberOfTrailingZeros( step );
+            flip( variables[ j ] );
+            assignment ^= 1L << j;
+            if ( !visitor.visit( assignment, output ) ) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public BitVector getInput() {
+        return new BitVector( Arrays.copyOf( input, monomialStride ), inputLength );
+    }
+
+    public BitVector getOutput() {
+        return new BitVector( Arrays.copyOf( output, contributionStride ), outputLength );
+    }
+
+    private static int[] variablesOf( Monomial monomial ) {
+        int[] result = new int[ monomial.cardinality() ];
+        long[] words = monomial.elements();
+        int count = 0;
+        for ( int w = 0; w < words.length && count < result.length; ++w ) {
+            for ( long bits = words[ w ]; bits != 0L && count < result.length; bits &= bits - 1 ) {
+                result[ count++ ] = ( w << 6 ) + Long.numberOfTrailingZeros( bits );
+            }
+        }
+        return result;
+    }
+}
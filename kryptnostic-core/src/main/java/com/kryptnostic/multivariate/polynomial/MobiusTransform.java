@@ -0,0 +1,122 @@
+package com.kryptnostic.multivariate.polynomial;
+
+import java.util.List;
+
+import cern.colt.bitvector.BitVector;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.kryptnostic.multivariate.gf2.Monomial;
+import com.kryptnostic.multivariate.gf2.SimplePolynomialFunction;
+
+/**
+ * Conversions between the algebraic normal form of a function, which is the monomial representation used throughout
+ * this package, and its truth table. Both directions are the same fast Mobius transform, which takes
+ * {@code n * 2^(n-1)} row xors for a function of {@code n} input bits.
+ *
+ * Truth tables hold one row of {@code ( outputLength + 63 ) >>> 6} words per input, with the row of input {@code x} at
+ * {@code x * rowLength}, where bit {@code i} of {@code x} is input bit {@code i}.
+ */
+public final class MobiusTransform {
+    /**
+     * Largest number of input bits for which a truth table can be built, which keeps table indices within an int.
+     */
+    public static final int MAX_INPUT_LENGTH = 26;
+
+    private MobiusTransform() {}
+
+    /**
+     * Tabulates the outputs of a function on every input.
+     * 
+     * @param f function of at most {@link #MAX_INPUT_LENGTH} input bits, which must not be parameterized.
+     * @return the truth table of {@code f}.
+     */
+    public static long[] toTruthTable( SimplePolynomialFunction f ) {
+        int inputLength = f.getInputLength();
+        Preconditions.checkArgument( !f.isParameterized(), "Parameterized functions cannot be tabulated directly." );
+        Preconditions.checkArgument( inputLength <= MAX_INPUT_LENGTH, "Function has too many inputs to tabulate." );
+        int rowLength = ( f.getOutputLength() + 63 ) >>> 6;
+        long[] table = new long[ rowLength << inputLength ];
+
+        /*
+         * The coefficient of the monomial over the variables in x is stored in the row of x, which the transform then
+         * turns into the value of the function on x.
+         */
+        Monomial[] monomials = f.getMonomials();
+        BitVector[] contributions = f.getContributions();
+        for ( int m = 0; m < monomials.length; ++m ) {
+            Preconditions.checkArgument(
+                    monomials[ m ].size() == inputLength,
+                    "All monomials must have the same number of variables as the input." );
+            long[] words = monomials[ m ].elements();
+            int row = inputLength == 0 ? 0 : (int) words[ 0 ];
+            long[] contribution = contributions[ m ].elements();
+            for ( int w = 0; w < rowLength; ++w ) {
+                table[ row * rowLength + w ] ^= contribution[ w ];
+            }
+        }
+        transform( table, inputLength, rowLength );
+        return table;
+    }
+
+    /**
+     * Recovers the algebraic normal form of a function from its truth table.
+     * 
+     * @param table truth table, as produced by {@link #toTruthTable(SimplePolynomialFunction)}. It is not modified.
+     * @param inputLength number of input bits of the function.
+     * @param outputLength number of output bits of the function.
+     * @return a function with one monomial for every non-zero coefficient of the algebraic normal form.
+     */
+    public static SimplePolynomialFunction fromTruthTable( long[] table, int inputLength, int outputLength ) {
+        Preconditions.checkArgument( inputLength <= MAX_INPUT_LENGTH, "Function has too many inputs to tabulate." );
+        int rowLength = ( outputLength + 63 ) >>> 6;
+        Preconditions.checkArgument(
+                table.length == rowLength << inputLength,
+                "Truth table must have one row for every input." );
+        long[] coefficients = table.clone();
+        transform( coefficients, inputLength, rowLength );
+
+        List<Monomial> monomials = Lists.newArrayList();
+        List<BitVector> contributions = Lists.newArrayList();
+        int monomialWords = Math.max( ( inputLength + 63 ) >>> 6, 1 );
+        for ( int x = 0; x < ( 1 << inputLength ); ++x ) {
+            boolean zero = true;
+            for ( int w = 0; w < rowLength && zero; ++w ) {
+                zero = coefficients[ x * rowLength + w ] == 0L;
+            }
+            if ( !zero ) {
+                long[] bits = new long[ monomialWords ];
+                bits[ 0 ] = x;
+                long[] contribution = new long[ rowLength ];
+                System.arraycopy( coefficients, x * rowLength, contribution, 0, rowLength );
+                monomials.add( new Monomial( bits, inputLength ) );
+                contributions.add( new BitVector( contribution, outputLength ) );
+            }
+        }
+        return new BasePolynomialFunction(
+                inputLength,
+                outputLength,
+                monomials.toArray( new Monomial[ 0 ] ),
+                contributions.toArray( new BitVector[ 0 ] ) );
+    }
+
+    /*
+     * The transform is its own inverse over GF(2): for every variable, the row of each input with the variable set is
+     * xored with the row of the same input with the variable cleared.
+     */
+    private static void transform( long[] table, int inputLength, int rowLength ) {
+        int size = 1 << inputLength;
+        for ( int i = 0; i < inputLength; ++i ) {
+            int bit = 1 << i;
+            for ( int x = 0; x < size; x += bit << 1 ) {
+                for ( int y = x; y < x + bit; ++y ) {
+                    int dst = ( y + bit ) * rowLength;
+                    int src = y * rowLength;
+                    for ( int w = 0; w < rowLength; ++w ) {
+                        table[ dst + w ] ^= table[ src + w ];
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.kryptnostic.multivariate.polynomial;
+
+import java.util.Arrays;
+
+import cern.colt.bitvector.BitVector;
+
+import com.google.common.base.Preconditions;
+import com.kryptnostic.multivariate.gf2.Monomial;
+import com.kryptnostic.multivariate.gf2.SimplePolynomialFunction;
+
+/**
+ * Accumulates the contribution of each monomial of a function under construction, xor-ing together the contributions
+ * of repeated monomials. Monomials are indexed by their words in a {@link MonomialIndex} and contributions are packed
+ * into one growable array of words, so adding a term never allocates a monomial, a bit vector or a map entry.
+ * Monomials whose contributions cancel out are dropped when the function is built.
+ *
+ * Instances are not safe for concurrent use.
+ */
+public final class MonomialContributions {
+    private final int           outputLength;
+    private final int           rowLength;
+    private final MonomialIndex index;
+    private long[]              rows;
+
+    /**
+     * @param variableCount number of variables of each monomial.
+     * @param outputLength length of each contribution.
+     * @param expectedMonomials number of distinct monomials to size the accumulator for.
+     */
+    public MonomialContributions( int variableCount, int outputLength, int expectedMonomials ) {
+        Preconditions.checkArgument( outputLength >= 0, "Output length cannot be negative." );
+        this.outputLength = outputLength;
+        this.rowLength = ( outputLength + 63 ) >>> 6;
+        this.index = new MonomialIndex( variableCount, expectedMonomials );
+        this.rows = new long[ Math.max( expectedMonomials, 1 ) * rowLength ];
+    }
+
+    /**
+     * Xors {@code contribution} into the contribution of {@code m}.
+     */
+    public void xor( Monomial m, BitVector contribution ) {
+        Preconditions.checkArgument(
+                contribution.size() == outputLength,
+                "Contribution length must match the output length." );
+        xor( m.elements(), 0, contribution.elements(), 0 );
+    }
+
+    /**
+     * Xors every term of {@code monomials} and {@code contributions} into this accumulator.
+     */
+    public void xorAll( Monomial[] monomials, BitVector[] contributions ) {
+        Preconditions.checkArgument(
+                monomials.length == contributions.length,
+                "Number of monomials must match the number of contributions." );
+        for ( int i = 0; i < monomials.length; ++i ) {
+            xor( monomials[ i ], contributions[ i ] );
+        }
+    }
+
+    /**
+     * Xors every contribution accumulated by {@code other} into this accumulator, which is how partial results
+     * accumulated by different threads are combined.
+     */
+    public void xorAll( MonomialContributions other ) {
+        Preconditions.checkArgument( other != this, "An accumulator cannot be xored into itself." );
+        Preconditions.checkArgument(
+                other.index.getVariableCount() == index.getVariableCount() && other.outputLength == outputLength,
+                "Accumulators must have the same number of variables and output length." );
+        long[] keys = other.index.keys();
+        int words = other.index.getWordsPerKey();
+        for ( int entry = 0; entry < other.index.size(); ++entry ) {
+            xor( keys, entry * words, other.rows, entry * rowLength );
+        }
+    }
+
+    /**
+     * Xors {@code rowLength} words of {@code contribution} starting at {@code contributionOffset} into the contribution
+     * of the monomial whose words start at {@code keyOffset} in {@code key}.
+     */
+    public void xor( long[] key, int keyOffset, long[] contribution, int contributionOffset ) {
+        int row = row( key, keyOffset );
+        for ( int w = 0; w < rowLength; ++w ) {
+            rows[ row + w ] ^= contribution[ contributionOffset + w ];
+        }
+    }
+
+    /**
+     * @return the number of distinct monomials seen so far, including those whose contributions cancelled out.
+     */
+    public int size() {
+        return index.size();
+    }
+
+    /**
+     * @param inputLength input length of the function, which may exceed the number of variables of its monomials.
+     * @return a function with every monomial whose contribution is non-zero, in the order they were first seen.
+     */
+    public SimplePolynomialFunction toFunction( int inputLength ) {
+        int nonZero = 0;
+        for ( int entry = 0; entry < index.size(); ++entry ) {
+            if ( !isZero( entry * rowLength ) ) {
+                ++nonZero;
+            }
+        }
+        Monomial[] monomials = new Monomial[ nonZero ];
+        BitVector[] contributions = new BitVector[ nonZero ];
+        for ( int entry = 0, i = 0; entry < index.size(); ++entry ) {
+            int row = entry * rowLength;
+            if ( !isZero( row ) ) {
+                monomials[ i ] = index.getMonomial( entry );
+                contributions[ i ] = new BitVector( Arrays.copyOfRange( rows, row, row + rowLength ), outputLength );
+                ++i;
+            }
+        }
+        return new OptimizedPolynomialFunctionGF2( inputLength, outputLength, monomials, contributions );
+    }
+
+    /*
+     * Returns the offset of the row of a monomial, adding a zero row for monomials not seen before.
+     */
+    private int row( long[] key, int keyOffset ) {
+        int entry = index.size();
+        int existing = index.putIfAbsent( key, keyOffset, entry );
+        if ( existing >= 0 ) {
+            return existing * rowLength;
+        }
+        if ( ( entry + 1 ) * rowLength > rows.length ) {
+            rows = Arrays.copyOf( rows, Math.max( rows.length << 1, ( entry + 1 ) * rowLength ) );
+        }
+        return entry * rowLength;
+    }
+
+    private boolean isZero( int offset ) {
+        for ( int w = 0; w < rowLength; ++w ) {
+            if ( rows[ offset + w ] != 0L ) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
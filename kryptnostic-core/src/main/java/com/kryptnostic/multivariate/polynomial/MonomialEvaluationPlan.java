@@ -0,0 +1,275 @@
+package com.kryptnostic.multivariate.polynomial;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import com.google.common.collect.Maps;
+import com.kryptnostic.multivariate.gf2.Monomial;
+
+/**
+ * Evaluation plan that shares common factors between the monomials of a function. Every node of the plan is the product
+ * of its parent node and a single variable, starting from the constant monomial at the root, so evaluating a node costs
+ * a single bit test instead of a full width test of a monomial.
+ *
+ * Nodes form a prefix tree over the variables of each monomial. Variables are ordered by how many monomials they appear
+ * in, so that the most frequent factors sit closest to the root and are shared by as many monomials as possible. The
+ * tree is laid out in depth first order, which allows the whole subtree below a node that evaluates to zero to be
+ * skipped in one step.
+ */
+public final class MonomialEvaluationPlan {
+    private final int    monomialCount;
+    private final int[]  variables;
+    private final int[]  subtreeEnds;
+    private final int[]  monomialOffsets;
+    private final int[]  monomialIndices;
+    private final double expectedPlanCost;
+    private final double expectedDirectCost;
+
+    private MonomialEvaluationPlan(
+            int monomialCount,
+            int[] variables,
+            int[] subtreeEnds,
+            int[] monomialOffsets,
+            int[] monomialIndices,
+            double expectedPlanCost,
+            double expectedDirectCost ) {
+        this.monomialCount = monomialCount;
+        this.variables = variables;
+        this.subtreeEnds = subtreeEnds;
+        this.monomialOffsets = monomialOffsets;
+        this.monomialIndices = monomialIndices;
+        this.expectedPlanCost = expectedPlanCost;
+        this.expectedDirectCost = expectedDirectCost;
+    }
+
+    /**
+     * Builds an evaluation plan for the provided monomials, which must all have the same number of variables.
+     *
+     * @param monomials to be evaluated by the plan.
+     * @return a plan, whose monomial indices match the indices of {@code monomials}.
+     */
+    public static MonomialEvaluationPlan build( Monomial[] monomials ) {
+        int variableCount = monomials.length == 0 ? 0 : monomials[ 0 ].size();
+        int[][] factors = new int[ monomials.length ][];
+        int[] frequencies = new int[ variableCount ];
+        int totalOrder = 0;
+        double expectedDirectCost = 0;
+        for ( int i = 0; i < monomials.length; ++i ) {
+            factors[ i ] = variablesOf( monomials[ i ] );
+            for ( int variable : factors[ i ] ) {
+                ++frequencies[ variable ];
+            }
+            totalOrder += factors[ i ].length;
+            expectedDirectCost += expectedWordsTested( monomials[ i ] );
+        }
+
+        /*
+         * Build the prefix tree in insertion order, recording the parent of every node and the node of every monomial.
+         */
+        int[] parents = new int[ totalOrder + 1 ];
+        int[] insertedVariables = new int[ totalOrder + 1 ];
+        int[] monomialNodes = new int[ monomials.length ];
+        Map<Long, Integer> children = Maps.newHashMapWithExpectedSize( totalOrder );
+        parents[ 0 ] = -1;
+        insertedVariables[ 0 ] = -1;
+        int nodeCount = 1;
+        for ( int i = 0; i < monomials.length; ++i ) {
+            sortByFrequency( factors[ i ], frequencies );
+            int node = 0;
+            for ( int variable : factors[ i ] ) {
+                Long key = ( ( (long) node ) << 32 ) | variable;
+                Integer child = children.get( key );
+                if ( child == null ) {
+                    child = nodeCount++;
+                    parents[ child ] = node;
+                    insertedVariables[ child ] = variable;
+                    children.put( key, child );
+                }
+                node = child;
+            }
+            monomialNodes[ i ] = node;
+        }
+
+        /*
+         * Lay the tree out in depth first order. Children are grouped by parent, then visited with an explicit stack.
+         */
+        int[] childOffsets = new int[ nodeCount + 1 ];
+        for ( int node = 1; node < nodeCount; ++node ) {
+            ++childOffsets[ parents[ node ] + 1 ];
+        }
+        for ( int node = 0; node < nodeCount; ++node ) {
+            childOffsets[ node + 1 ] += childOffsets[ node ];
+        }
+        int[] childList = new int[ Math.max( nodeCount - 1, 0 ) ];
+        int[] nextChild = Arrays.copyOf( childOffsets, nodeCount );
+        for ( int node = 1; node < nodeCount; ++node ) {
+            childList[ nextChild[ parents[ node ] ]++ ] = node;
+        }
+
+        int[] positions = new int[ nodeCount ];
+        int[] variables = new int[ nodeCount ];
+        int[] subtreeEnds = new int[ nodeCount ];
+        int[] depths = new int[ nodeCount ];
+        int[] stack = new int[ nodeCount ];
+        int[] stackChild = new int[ nodeCount ];
+        int top = 0;
+        int position = 0;
+        stack[ 0 ] = 0;
+        stackChild[ 0 ] = childOffsets[ 0 ];
+        positions[ 0 ] = position++;
+        variables[ 0 ] = -1;
+        double expectedPlanCost = 0;
+        while ( top >= 0 ) {
+            int node = stack[ top ];
+            if ( stackChild[ top ] < childOffsets[ node + 1 ] ) {
+                int child = childList[ stackChild[ top ]++ ];
+                int childPosition = position++;
+                positions[ child ] = childPosition;
+                variables[ childPosition ] = insertedVariables[ child ];
+                depths[ childPosition ] = depths[ positions[ node ] ] + 1;
+                // A node is only tested when its parent evaluated to one, which happens for half as many inputs.
+                expectedPlanCost += Math.pow( 0.5, depths[ childPosition ] - 1 );
+                stack[ ++top ] = child;
+                stackChild[ top ] = childOffsets[ child ];
+            } else {
+                subtreeEnds[ positions[ node ] ] = position;
+                --top;
+            }
+        }
+
+        int[] monomialOffsets = new int[ nodeCount + 1 ];
+        for ( int i = 0; i < monomials.length; ++i ) {
+            ++monomialOffsets[ positions[ monomialNodes[ i ] ] + 1 ];
+        }
+        for ( int node = 0; node < nodeCount; ++node ) {
+            monomialOffsets[ node + 1 ] += monomialOffsets[ node ];
+        }
+        int[] monomialIndices = new int[ monomials.length ];
+        int[] nextMonomial = Arrays.copyOf( monomialOffsets, nodeCount );
+        for ( int i = 0; i < monomials.length; ++i ) {
+            monomialIndices[ nextMonomial[ positions[ monomialNodes[ i ] ] ]++ ] = i;
+        }
+
+        return new MonomialEvaluationPlan(
+                monomials.length,
+                variables,
+                subtreeEnds,
+                monomialOffsets,
+                monomialIndices,
+                expectedPlanCost,
+                expectedDirectCost );
+    }
+
+    /**
+     * Evaluates every monomial of the plan on the provided input.
+     *
+     * @param input words of the input vector.
+     * @return a bit set, with one bit per monomial, in which the bits of the monomials that evaluate to one are set.
+     */
+    public long[] evaluate( long[] input ) {
+        long[] fired = new long[ ( monomialCount + 63 ) >>> 6 ];
+        evaluate( input, fired );
+        return fired;
+    }
+
+    /**
+     * Variant of {@link #evaluate(long[])} that writes into a caller supplied bit set instead of allocating one.
+     *
+     * @param input words of the input vector.
+     * @param fired bit set of at least {@code ( monomialCount + 63 ) >>> 6} words, which is overwritten.
+     */
+    public void evaluate( long[] input, long[] fired ) {
+        Arrays.fill( fired, 0, ( monomialCount + 63 ) >>> 6, 0L );
+        markFired( 0, fired );
+        int node = 1;
+        while ( node < variables.length ) {
+            int variable = variables[ node ];
+            if ( ( input[ variable >>> 6 ] & ( 1L << variable ) ) != 0L ) {
+                markFired( node, fired );
+                ++node;
+            } else {
+                node = subtreeEnds[ node ];
+            }
+        }
+    }
+
+    /**
+     * @return the number of nodes in the plan, excluding the constant monomial at its root.
+     */
+    public int getNodeCount() {
+        return variables.length - 1;
+    }
+
+    /**
+     * Compares the expected number of bit tests performed by the plan on a uniformly random input against the expected
+     * number of words compared when testing every monomial directly.
+     *
+     * @return true if evaluating with the plan is expected to be cheaper than testing monomials directly.
+     */
+    public boolean isCheaperThanDirectEvaluation() {
+        return isCheaperThanDirectEvaluation( 1 );
+    }
+
+    /**
+     * Variant of {@link #isCheaperThanDirectEvaluation()} for callers that can split direct evaluation across several
+     * threads, while the plan is always walked by a single thread.
+     *
+     * @param parallelism number of threads sharing direct evaluation.
+     * @return true if evaluating with the plan is expected to be cheaper than testing monomials directly.
+     */
+    public boolean isCheaperThanDirectEvaluation( int parallelism ) {
+        return expectedPlanCost * parallelism < expectedDirectCost;
+    }
+
+    private void markFired( int node, long[] fired ) {
+        for ( int k = monomialOffsets[ node ]; k < monomialOffsets[ node + 1 ]; ++k ) {
+            int i = monomialIndices[ k ];
+            fired[ i >>> 6 ] |= 1L << i;
+        }
+    }
+
+    /*
+     * Direct evaluation compares words in order and stops at the first word with a missing variable, so a word is only
+     * compared if all variables in the preceding words were set.
+     */
+    private static double expectedWordsTested( Monomial monomial ) {
+        double expected = 0;
+        double reached = 1;
+        for ( long word : monomial.elements() ) {
+            expected += reached;
+            reached *= Math.pow( 0.5, Long.bitCount( word ) );
+        }
+        return expected;
+    }
+
+    private static int[] variablesOf( Monomial monomial ) {
+        int[] result = new int[ monomial.cardinality() ];
+        long[] words = monomial.elements();
+        int count = 0;
+        for ( int w = 0; w < words.length && count < result.length; ++w ) {
+            for ( long bits = words[ w ]; bits != 0L && count < result.length; bits &= bits - 1 ) {
+                result[ count++ ] = ( w << 6 ) + Long.numberOfTrailingZeros( bits );
+            }
+        }
+        return result;
+    }
+
+    /*
+     * Monomials are short, so an insertion sort on (frequency descending, variable ascending) is sufficient.
+     */
+    private static void sortByFrequency( int[] factors, int[] frequencies ) {
+        for ( int i = 1; i < factors.length; ++i ) {
+            int variable = factors[ i ];
+            int j = i - 1;
+            while ( j >= 0 && precedes( variable, factors[ j ], frequencies ) ) {
+                factors[ j + 1 ] = factors[ j ];
+                --j;
+            }
+            factors[ j + 1 ] = variable;
+        }
+    }
+
+    private static boolean precedes( int lhs, int rhs, int[] frequencies ) {
+        return frequencies[ lhs ] > frequencies[ rhs ] || ( frequencies[ lhs ] == frequencies[ rhs ] && lhs < rhs );
+    }
+}
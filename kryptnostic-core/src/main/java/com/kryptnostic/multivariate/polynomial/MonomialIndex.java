@@ -0,0 +1,218 @@
+package com.kryptnostic.multivariate.polynomial;
+
+import java.util.Arrays;
+
+import com.google.common.base.Preconditions;
+import com.kryptnostic.multivariate.gf2.Monomial;
+
+/**
+ * Open addressing hash table from monomials to non-negative ints, keyed by the raw words of each monomial. Keys and
+ * values are stored in insertion order in flat primitive arrays, and the table itself only holds entry numbers, so
+ * an index of hundreds of thousands of monomials costs a few arrays instead of an entry, a boxed integer and a cached
+ * {@link Monomial} object for each key. Lookups hash the words directly and never allocate.
+ *
+ * All keys must have the same number of variables. Instances are not safe for concurrent use.
+ */
+public final class MonomialIndex {
+    private static final int DEFAULT_EXPECTED_SIZE = 16;
+
+    private final int        variableCount;
+    private final int        words;
+    private long[]           keys;
+    private int[]            values;
+    private int[]            hashes;
+    private int[]            table;
+    private int              mask;
+    private int              size;
+
+    public MonomialIndex( int variableCount ) {
+        this( variableCount, DEFAULT_EXPECTED_SIZE );
+    }
+
+    /**
+     * @param variableCount number of variables of every key.
+     * @param expectedSize number of keys the index is sized for before it has to grow.
+     */
+    public MonomialIndex( int variableCount, int expectedSize ) {
+        Preconditions.checkArgument( variableCount >= 0, "Number of variables cannot be negative." );
+        Preconditions.checkArgument( expectedSize >= 0, "Expected size cannot be negative." );
+        this.variableCount = variableCount;
+        this.words = ( variableCount + 63 ) >>> 6;
+        int entries = Math.max( expectedSize, 1 );
+        this.keys = new long[ entries * words ];
+        this.values = new int[ entries ];
+        this.hashes = new int[ entries ];
+        this.table = new int[ Integer.highestOneBit( Math.max( entries, 2 ) * 2 - 1 ) << 1 ];
+        this.mask = table.length - 1;
+    }
+
+    private MonomialIndex( MonomialIndex other ) {
+        this.variableCount = other.variableCount;
+        this.words = other.words;
+        this.keys = other.keys.clone();
+        this.values = other.values.clone();
+        this.hashes = other.hashes.clone();
+        this.table = other.table.clone();
+        this.mask = other.mask;
+        this.size = other.size;
+    }
+
+    /**
+     * @return an independent copy of this index, which is cheaper than adding the same keys to a new index.
+     */
+    public MonomialIndex copy() {
+        return new MonomialIndex( this );
+    }
+
+    public int getVariableCount() {
+        return variableCount;
+    }
+
+    /**
+     * @return number of keys in the index.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the value of {@code m}, or -1 if it is not in the index.
+     */
+    public int get( Monomial m ) {
+        return get( words( m ), 0 );
+    }
+
+    /**
+     * @param key array holding the words of the monomial to look up.
+     * @param offset index of the first word of the monomial in {@code key}.
+     * @return the value of the monomial, or -1 if it is not in the index.
+     */
+    public int get( long[] key, int offset ) {
+        int hash = hash( key, offset, words );
+        for ( int slot = hash & mask;; slot = ( slot + 1 ) & mask ) {
+            int entry = table[ slot ] - 1;
+            if ( entry < 0 ) {
+                return -1;
+            }
+            if ( hashes[ entry ] == hash && matches( entry, key, offset ) ) {
+                return values[ entry ];
+            }
+        }
+    }
+
+    /**
+     * @return the value already associated with {@code m}, or -1 if {@code m} was added with {@code value}.
+     */
+    public int putIfAbsent( Monomial m, int value ) {
+        return putIfAbsent( words( m ), 0, value );
+    }
+
+    /**
+     * @param key array holding the words of the monomial to add.
+     * @param offset index of the first word of the monomial in {@code key}.
+     * @param value non-negative value to associate with the monomial if it is not in the index yet.
+     * @return the value already associated with the monomial, or -1 if it was added with {@code value}.
+     */
+    public int putIfAbsent( long[] key, int offset, int value ) {
+        Preconditions.checkArgument( value >= 0, "Values must not be negative." );
+        int hash = hash( key, offset, words );
+        int slot = hash & mask;
+        for ( ;; slot = ( slot + 1 ) & mask ) {
+            int entry = table[ slot ] - 1;
+            if ( entry < 0 ) {
+                break;
+            }
+            if ( hashes[ entry ] == hash && matches( entry, key, offset ) ) {
+                return values[ entry ];
+            }
+        }
+
+        if ( size == values.length ) {
+            int capacity = values.length << 1;
+            keys = Arrays.copyOf( keys, capacity * words );
+            values = Arrays.copyOf( values, capacity );
+            hashes = Arrays.copyOf( hashes, capacity );
+        }
+        System.arraycopy( key, offset, keys, size * words, words );
+        values[ size ] = value;
+        hashes[ size ] = hash;
+        table[ slot ] = ++size;
+        // Keep the table at most half full, so probe sequences stay short.
+        if ( size << 1 > table.length ) {
+            rehash( table.length << 1 );
+        }
+        return -1;
+    }
+
+    /**
+     * @param entry position of a key in insertion order.
+     * @return a new monomial with the words of that key.
+     */
+    public Monomial getMonomial( int entry ) {
+        Preconditions.checkElementIndex( entry, size );
+        return new Monomial( Arrays.copyOfRange( keys, entry * words, ( entry + 1 ) * words ), variableCount );
+    }
+
+    /**
+     * @param entry position of a key in insertion order.
+     * @return the value of that key.
+     */
+    public int getValue( int entry ) {
+        Preconditions.checkElementIndex( entry, size );
+        return values[ entry ];
+    }
+
+    /*
+     * Words of every key in insertion order, with the key of each entry starting at entry * getWordsPerKey(). Only
+     * valid until the next insertion.
+     */
+    long[] keys() {
+        return keys;
+    }
+
+    int getWordsPerKey() {
+        return words;
+    }
+
+    private long[] words( Monomial m ) {
+        Preconditions.checkArgument(
+                m.size() == variableCount,
+                "Monomial must have the same number of variables as the index." );
+        return m.elements();
+    }
+
+    private boolean matches( int entry, long[] key, int offset ) {
+        int base = entry * words;
+        for ( int w = 0; w < words; ++w ) {
+            if ( keys[ base + w ] != key[ offset + w ] ) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void rehash( int capacity ) {
+        table = new int[ capacity ];
+        mask = capacity - 1;
+        for ( int entry = 0; entry < size; ++entry ) {
+            int slot = hashes[ entry ] & mask;
+            while ( table[ slot ] != 0 ) {
+                slot = ( slot + 1 ) & mask;
+            }
+            table[ slot ] = entry + 1;
+        }
+    }
+
+    /*
+     * Mixes every word so that monomials differing in a single high variable still spread across the table.
+     */
+    static int hash( long[] key, int offset, int words ) {
+        long h = 0x9E3779B97F4A7C15L;
+        for ( int w = 0; w < words; ++w ) {
+            h = ( h ^ key[ offset + w ] ) * 0xBF58476D1CE4E5B9L;
+            h ^= h >>> 31;
+        }
+        h *= 0x94D049BB133111EBL;
+        return (int) ( h ^ ( h >>> 32 ) );
+    }
+}
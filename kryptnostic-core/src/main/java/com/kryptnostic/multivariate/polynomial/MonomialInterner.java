@@ -0,0 +1,202 @@
+package com.kryptnostic.multivariate.polynomial;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.google.common.base.Preconditions;
+import com.kryptnostic.multivariate.gf2.Monomial;
+
+/**
+ * Append-only list of distinct monomials that assigns each new monomial the next index, for use by many threads at once
+ * while composing. Monomials are stored in fixed size chunks that never move once allocated, so reading a monomial
+ * never races with the list growing, and indices are handed out by an atomic counter.
+ *
+ * Indices are kept in {@link #STRIPES} {@link MonomialIndex} tables keyed by the words of each monomial, each guarded
+ * by its own lock and chosen by the high bits of the hash of the monomial. A lookup only holds its stripe's lock for
+ * one probe sequence, so threads working on different monomials rarely wait on each other.
+ */
+final class MonomialInterner extends AbstractList<Monomial> {
+    static final int              STRIPES     = 64;
+    private static final int      STRIPE_BITS = 6;
+    private static final int      CHUNK_BITS  = 12;
+    private static final int      CHUNK_SIZE  = 1 << CHUNK_BITS;
+    private static final int      CHUNK_MASK  = CHUNK_SIZE - 1;
+
+    private final int             variableCount;
+    private final int             words;
+    private final MonomialIndex[] indices     = new MonomialIndex[ STRIPES ];
+    private final Lock[]          stripes     = new Lock[ STRIPES ];
+    private final AtomicInteger   size        = new AtomicInteger();
+    private final Lock            chunksLock  = new ReentrantLock();
+    private volatile Monomial[][] chunks      = new Monomial[ 16 ][];
+
+    /**
+     * @param variableCount number of variables of every monomial.
+     * @param monomials initial monomials, which are assigned indices in iteration order. A monomial that appears more
+     *            than once keeps all of its positions, and later lookups find the first one.
+     */
+    MonomialInterner( int variableCount, Collection<Monomial> monomials ) {
+        this.variableCount = variableCount;
+        this.words = ( variableCount + 63 ) >>> 6;
+        int expectedPerStripe = Math.max( monomials.size() / STRIPES, 1 ) << 1;
+        for ( int i = 0; i < STRIPES; ++i ) {
+            indices[ i ] = new MonomialIndex( variableCount, expectedPerStripe );
+            stripes[ i ] = new ReentrantLock();
+        }
+        for ( Monomial m : monomials ) {
+            int index = size.getAndIncrement();
+            chunk( index >>> CHUNK_BITS )[ index & CHUNK_MASK ] = m;
+            indices[ stripe( words( m ) ) ].putIfAbsent( m.elements(), 0, index );
+        }
+    }
+
+    /**
+     * @param template interner to copy, which must not be interning concurrently.
+     */
+    MonomialInterner( MonomialInterner template ) {
+        this.variableCount = template.variableCount;
+        this.words = template.words;
+        for ( int i = 0; i < STRIPES; ++i ) {
+            indices[ i ] = template.indices[ i ].copy();
+            stripes[ i ] = new ReentrantLock();
+        }
+        Monomial[][] templateChunks = template.chunks;
+        Monomial[][] copiedChunks = new Monomial[ templateChunks.length ][];
+        for ( int c = 0; c < templateChunks.length; ++c ) {
+            if ( templateChunks[ c ] != null ) {
+                copiedChunks[ c ] = templateChunks[ c ].clone();
+            }
+        }
+        this.chunks = copiedChunks;
+        this.size.set( template.size() );
+    }
+
+    /**
+     * @return the index of {@code m}, assigning it the next free index if it has not been seen before.
+     */
+    int intern( Monomial m ) {
+        return intern( words( m ), m );
+    }
+
+    /**
+     * @param key array whose leading words are the words of a monomial, which is only read during the call.
+     * @return the index of the monomial, assigning it the next free index if it has not been seen before.
+     */
+    int intern( long[] key ) {
+        return intern( key, null );
+    }
+
+    /*
+     * Only allocates a monomial for key when it is new and none was given.
+     */
+    private int intern( long[] key, Monomial m ) {
+        int s = stripe( key );
+        Lock stripe = stripes[ s ];
+        stripe.lock();
+        try {
+            MonomialIndex index = indices[ s ];
+            int existing = index.get( key, 0 );
+            if ( existing >= 0 ) {
+                return existing;
+            }
+            int next = size.getAndIncrement();
+            chunk( next >>> CHUNK_BITS )[ next & CHUNK_MASK ] = m != null ? m : new Monomial(
+                    Arrays.copyOf( key, words ),
+                    variableCount );
+            /*
+             * Releasing the stripe lock orders the store into the chunk before any read of the monomial by a thread
+             * that finds the index under the same lock.
+             */
+            index.putIfAbsent( key, 0, next );
+            return next;
+        } finally {
+            stripe.unlock();
+        }
+    }
+
+    /**
+     * @return the index of {@code o}, or -1 if it has not been interned.
+     */
+    @Override
+    public int indexOf( Object o ) {
+        if ( !( o instanceof Monomial ) || ( (Monomial) o ).size() != variableCount ) {
+            return -1;
+        }
+        long[] key = ( (Monomial) o ).elements();
+        int s = stripe( key );
+        Lock stripe = stripes[ s ];
+        stripe.lock();
+        try {
+            return indices[ s ].get( key, 0 );
+        } finally {
+            stripe.unlock();
+        }
+    }
+
+    @Override
+    public boolean contains( Object o ) {
+        return indexOf( o ) >= 0;
+    }
+
+    /**
+     * Indices are assigned before monomials are stored, so only indices obtained from {@link #intern(Monomial)}, or
+     * any index once interning has stopped, may be read.
+     */
+    @Override
+    public Monomial get( int index ) {
+        return chunks[ index >>> CHUNK_BITS ][ index & CHUNK_MASK ];
+    }
+
+    /**
+     * @return the number of indices assigned so far.
+     */
+    @Override
+    public int size() {
+        return size.get();
+    }
+
+    int getVariableCount() {
+        return variableCount;
+    }
+
+    private long[] words( Monomial m ) {
+        Preconditions.checkArgument(
+                m.size() == variableCount,
+                "Monomial must have the same number of variables as the interner." );
+        return m.elements();
+    }
+
+    /*
+     * The tables probe from the low bits of the same hash, so the stripe is taken from the high bits.
+     */
+    private int stripe( long[] key ) {
+        return MonomialIndex.hash( key, 0, words ) >>> ( Integer.SIZE - STRIPE_BITS );
+    }
+
+    private Monomial[] chunk( int c ) {
+        Monomial[][] current = chunks;
+        if ( c < current.length && current[ c ] != null ) {
+            return current[ c ];
+        }
+        chunksLock.lock();
+        try {
+            current = chunks;
+            if ( c >= current.length ) {
+                Monomial[][] grown = new Monomial[ Math.max( current.length << 1, c + 1 ) ][];
+                System.arraycopy( current, 0, grown, 0, current.length );
+                current = grown;
+            }
+            if ( current[ c ] == null ) {
+                current[ c ] = new Monomial[ CHUNK_SIZE ];
+            }
+            chunks = current;
+            return current[ c ];
+        } finally {
+            chunksLock.unlock();
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package com.kryptnostic.multivariate.polynomial;
+
+import java.util.Arrays;
+
+import com.kryptnostic.multivariate.gf2.Monomial;
+
+/**
+ * Inverted index from input variables to the monomials they lead, where the leading variable of a monomial is the
+ * lowest variable it contains. A monomial can only evaluate to one if its leading variable is set, so enumerating the
+ * monomials led by the set bits of an input visits every monomial that can fire, at a cost proportional to the Hamming
+ * weight of the input rather than the number of monomials in the function.
+ *
+ * This pays off for mostly zero inputs, such as zero padded blocks or the zero filled half of a block being encrypted.
+ * For denser inputs {@link #evaluate(long[])} declines and the caller falls back to testing every monomial.
+ */
+public final class MonomialVariableIndex {
+    private final int    monomialCount;
+    private final int    variableCount;
+    private final int    stride;
+    private final int[]  constantMonomials;
+    private final int[]  offsets;
+    private final int[]  monomialIndices;
+    private final long[] packedMonomials;
+    private final int    candidateBudget;
+    private final int    maximumWeight;
+
+    private MonomialVariableIndex(
+            int monomialCount,
+            int variableCount,
+            int[] constantMonomials,
+            int[] offsets,
+            int[] monomialIndices,
+            long[] packedMonomials ) {
+        this.monomialCount = monomialCount;
+        this.variableCount = variableCount;
+        this.stride = ( variableCount + 63 ) >>> 6;
+        this.constantMonomials = constantMonomials;
+        this.offsets = offsets;
+        this.monomialIndices = monomialIndices;
+        this.packedMonomials = packedMonomials;
+        /*
+         * Testing a candidate costs about as much as testing a monomial directly, but candidates are reached through
+         * the index and recorded in a bit set, so the index only wins with well under one candidate per monomial.
+         */
+        this.candidateBudget = monomialCount >>> 1;
+        this.maximumWeight = maximumWeight( offsets, candidateBudget );
+    }
+
+    /**
+     * Builds an index for the provided monomials, which must all have the same number of variables.
+     *
+     * @param monomials to be indexed.
+     * @return an index, whose monomial indices match the indices of {@code monomials}.
+     */
+    public static MonomialVariableIndex build( Monomial[] monomials ) {
+        int variableCount = monomials.length == 0 ? 0 : monomials[ 0 ].size();
+        int stride = ( variableCount + 63 ) >>> 6;
+        int[] leaders = new int[ monomials.length ];
+        int[] offsets = new int[ variableCount + 1 ];
+        int constantCount = 0;
+        for ( int i = 0; i < monomials.length; ++i ) {
+            leaders[ i ] = leaderOf( monomials[ i ] );
+            if ( leaders[ i ] < 0 ) {
+                ++constantCount;
+            } else {
+                ++offsets[ leaders[ i ] + 1 ];
+            }
+        }
+        for ( int v = 0; v < variableCount; ++v ) {
+            offsets[ v + 1 ] += offsets[ v ];
+        }
+
+        int[] constantMonomials = new int[ constantCount ];
+        int[] monomialIndices = new int[ offsets[ variableCount ] ];
+        long[] packedMonomials = new long[ monomialIndices.length * stride ];
+        int[] next = Arrays.copyOf( offsets, variableCount );
+        constantCount = 0;
+        for ( int i = 0; i < monomials.length; ++i ) {
+            if ( leaders[ i ] < 0 ) {
+                constantMonomials[ constantCount++ ] = i;
+            } else {
+                int slot = next[ leaders[ i ] ]++;
+                monomialIndices[ slot ] = i;
+                System.arraycopy( monomials[ i ].elements(), 0, packedMonomials, slot * stride, stride );
+            }
+        }
+
+        return new MonomialVariableIndex(
+                monomials.length,
+                variableCount,
+                constantMonomials,
+                offsets,
+                monomialIndices,
+                packedMonomials );
+    }
+
+    /**
+     * Evaluates every monomial of the index on the provided input, if the input is sparse enough for the index to be
+     * cheaper than testing every monomial. The popcount of the input is checked first, so dense inputs are rejected
+     * without walking the index.
+     *
+     * @param input words of the input vector.
+     * @return a bit set, with one bit per monomial, in which the bits of the monomials that evaluate to one are set, or
+     *         null if the input is too dense for the index to pay off.
+     */
+    public long[] evaluate( long[] input ) {
+        long[] fired = new long[ ( monomialCount + 63 ) >>> 6 ];
+        return evaluate( input, fired ) ? fired : null;
+    }
+
+    /**
+     * Variant of {@link #evaluate(long[])} that writes into a caller supplied bit set instead of allocating one.
+     *
+     * @param input words of the input vector.
+     * @param fired bit set of at least {@code ( monomialCount + 63 ) >>> 6} words, which is overwritten if the input is
+     *            evaluated and left untouched otherwise.
+     * @return true if the input was evaluated, false if it is too dense for the index to pay off.
+     */
+    public boolean evaluate( long[] input, long[] fired ) {
+        final long tailMask = ( variableCount & 63 ) == 0 ? -1L : ( 1L << variableCount ) - 1;
+        int weight = 0;
+        for ( int w = 0; w < stride; ++w ) {
+            weight += Long.bitCount( w == stride - 1 ? input[ w ] & tailMask : input[ w ] );
+            if ( weight > maximumWeight ) {
+                return false;
+            }
+        }
+
+        int candidates = 0;
+        for ( int w = 0; w < stride; ++w ) {
+            long word = w == stride - 1 ? input[ w ] & tailMask : input[ w ];
+            for ( long bits = word; bits != 0L; bits &= bits - 1 ) {
+                int v = ( w << 6 ) + Long.numberOfTrailingZeros( bits );
+                candidates += offsets[ v + 1 ] - offsets[ v ];
+            }
+        }
+        if ( candidates > candidateBudget ) {
+            return false;
+        }
+
+        Arrays.fill( fired, 0, ( monomialCount + 63 ) >>> 6, 0L );
+        for ( int i : constantMonomials ) {
+            fired[ i >>> 6 ] |= 1L << i;
+        }
+        for ( int w = 0; w < stride; ++w ) {
+            long word = w == stride - 1 ? input[ w ] & tailMask : input[ w ];
+            for ( long bits = word; bits != 0L; bits &= bits - 1 ) {
+                int v = ( w << 6 ) + Long.numberOfTrailingZeros( bits );
+                for ( int k = offsets[ v ]; k < offsets[ v + 1 ]; ++k ) {
+                    // Words below the leading variable of a monomial are zero, so testing starts at its word.
+                    if ( matches( k * stride + w, stride - w, input, w ) ) {
+                        int i = monomialIndices[ k ];
+                        fired[ i >>> 6 ] |= 1L << i;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the largest input weight for which the index may be used.
+     */
+    public int getMaximumWeight() {
+        return maximumWeight;
+    }
+
+    private boolean matches( int offset, int length, long[] input, int inputOffset ) {
+        for ( int w = 0; w < length; ++w ) {
+            long mw = packedMonomials[ offset + w ];
+            if ( ( input[ inputOffset + w ] & mw ) != mw ) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /*
+     * An input of weight w has at least as many candidates as the w variables leading the fewest monomials, so once
+     * those exceed the budget no input of that weight can be evaluated through the index.
+     */
+    private static int maximumWeight( int[] offsets, int budget ) {
+        int[] counts = new int[ offsets.length - 1 ];
+        for ( int v = 0; v < counts.length; ++v ) {
+            counts[ v ] = offsets[ v + 1 ] - offsets[ v ];
+        }
+        Arrays.sort( counts );
+        int candidates = 0;
+        for ( int w = 0; w < counts.length; ++w ) {
+            candidates += counts[ w ];
+            if ( candidates > budget ) {
+                return w;
+            }
+        }
+        return counts.length;
+    }
+
+    private static int leaderOf( Monomial monomial ) {
+        long[] words = monomial.elements();
+        int length = ( monomial.size() + 63 ) >>> 6;
+        for ( int w = 0; w < length; ++w ) {
+            if ( words[ w ] != 0L ) {
+                return ( w << 6 ) + Long.numberOfTrailingZeros( words[ w ] );
+            }
+        }
+        return -1;
+    }
+}
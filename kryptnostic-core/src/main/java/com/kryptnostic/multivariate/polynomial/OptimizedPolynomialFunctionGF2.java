@@ -1,9 +1,17 @@
 package com.kryptnostic.multivariate.polynomial;
 
 import java.util.List;
-import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -13,8 +21,13 @@ import cern.colt.bitvector.BitVector;
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.ListeningExecutorService;
 import com.google.common.util.concurrent.MoreExecutors;
+import com.kryptnostic.linear.EnhancedBitMatrix;
 import com.kryptnostic.multivariate.gf2.Monomial;
 import com.kryptnostic.multivariate.gf2.SimplePolynomialFunction;
 
@@ -24,8 +37,16 @@ public class OptimizedPolynomialFunctionGF2 extends BasePolynomialFunction {
                                                                               .getLogger( OptimizedPolynomialFunctionGF2.class );
     protected static final int                      CONCURRENCY_LEVEL = Math.max( Runtime.getRuntime()
                                                                               .availableProcessors() - 1, 1 );
-    protected static final ListeningExecutorService executor          = MoreExecutors.listeningDecorator( Executors
-                                                                              .newFixedThreadPool( CONCURRENCY_LEVEL ) );
+    private static final ThreadLocal<Boolean>       onExecutor        = new ThreadLocal<Boolean>();
+    private static final ThreadPoolExecutor         pool              = new ThreadPoolExecutor(
+                                                                              CONCURRENCY_LEVEL,
+                                                                              CONCURRENCY_LEVEL,
+                                                                              0L,
+                                                                              TimeUnit.MILLISECONDS,
+                                                                              new LinkedBlockingQueue<Runnable>(),
+                                                                              new ExecutorThreadFactory() );
+    protected static final ListeningExecutorService executor          = MoreExecutors.listeningDecorator( pool );
+    static final ForkJoinPool                       forkJoinPool      = new ForkJoinPool( CONCURRENCY_LEVEL );
 
     @JsonCreator
     public OptimizedPolynomialFunctionGF2(
@@ -40,100 +61,261 @@ public class OptimizedPolynomialFunctionGF2 extends BasePolynomialFunction {
         super();
     }
 
+    /**
+     * Evaluates the function, splitting the nonlinear terms across a fork/join pool when there are enough of them to
+     * outweigh the cost of splitting. Each task accumulates into its own partial result and partial results are xored
+     * together as tasks are joined, so no locking is needed. Calls made from within the pool, such as from the
+     * pipelines of a parameterized function, split onto the same pool instead of oversubscribing it.
+     */
     public BitVector apply( final BitVector input ) {
+        Preconditions.checkArgument(
+                monomials.length == 0 || monomials[ 0 ].size() == input.size(),
+                "Number of terms in input doesn't match number of terms in monomials." );
 
-        final CountDownLatch latch = new CountDownLatch( CONCURRENCY_LEVEL );
-
-        final BitVector result = new BitVector( outputLength );
-        int blocks = ( monomials.length / CONCURRENCY_LEVEL );
-        int leftover = monomials.length % CONCURRENCY_LEVEL;
+        DegreeBuckets buckets = degreeBuckets();
+        int[] terms = buckets.getNonlinearTerms();
+        if ( terms.length < ParallelApplyThresholds.getSequentialThreshold() ) {
+            return super.apply( input );
+        }
 
-        for ( int i = 0; i < CONCURRENCY_LEVEL; i++ ) {
-            final int fromIndex = i * blocks;
-            int targetIndex = fromIndex + blocks;
-            if ( leftover != 0 && i == CONCURRENCY_LEVEL - 1 ) {
-                targetIndex += leftover;
+        long[] in = input.elements();
+        long[] fired = variableIndex().evaluate( in );
+        if ( fired == null ) {
+            MonomialEvaluationPlan plan = evaluationPlan();
+            if ( plan.isCheaperThanDirectEvaluation( CONCURRENCY_LEVEL ) ) {
+                fired = plan.evaluate( in );
             }
-            final int toIndex = targetIndex;
+        }
+        if ( fired != null ) {
+            // Only the contributions of fired monomials are left to xor, which is not worth splitting.
+            BitVector result = new BitVector( outputLength );
+            for ( int w = 0; w < fired.length; ++w ) {
+                for ( long bits = fired[ w ]; bits != 0L; bits &= bits - 1 ) {
+                    result.xor( contributions[ ( w << 6 ) + Long.numberOfTrailingZeros( bits ) ] );
+                }
+            }
+            return result;
+        }
 
-            Runnable r = new Runnable() {
-                @Override
-                public void run() {
-                    BitVector intermediary = new BitVector( outputLength );
-                    for ( int i = fromIndex; i < toIndex; ++i ) {
-                        Monomial term = monomials[ i ];
-                        if ( term.eval( input ) ) {
-                            intermediary.xor( contributions[ i ] );
+        int leafSize = Math.max( ParallelApplyThresholds.getLeafSize(), terms.length / ( CONCURRENCY_LEVEL << 2 ) );
+        TermsTask task = new TermsTask( monomials, contributions, terms, in, outputLength, 0, terms.length, leafSize );
+        long[] result = ForkJoinTask.inForkJoinPool() ? task.invoke() : forkJoinPool.invoke( task );
+        buckets.applyAffine( in, result );
+        return new BitVector( result, outputLength );
+    }
+
+    /**
+     * Evaluates a range of terms, recursively splitting it in half until it is no larger than the leaf size.
+     */
+    private static final class TermsTask extends RecursiveTask<long[]> {
+        private static final long serialVersionUID = 6010251917427733092L;
+
+        private final Monomial[]  monomials;
+        private final BitVector[] contributions;
+        private final int[]       terms;
+        private final long[]      input;
+        private final int         outputLength;
+        private final int         from;
+        private final int         to;
+        private final int         leafSize;
+
+        TermsTask(
+                Monomial[] monomials,
+                BitVector[] contributions,
+                int[] terms,
+                long[] input,
+                int outputLength,
+                int from,
+                int to,
+                int leafSize ) {
+            this.monomials = monomials;
+            this.contributions = contributions;
+            this.terms = terms;
+            this.input = input;
+            this.outputLength = outputLength;
+            this.from = from;
+            this.to = to;
+            this.leafSize = leafSize;
+        }
+
+        @Override
+        protected long[] compute() {
+            if ( to - from <= leafSize ) {
+                long[] partial = new long[ ( outputLength + 63 ) >>> 6 ];
+                for ( int k = from; k < to; ++k ) {
+                    int i = terms[ k ];
+                    if ( monomials[ i ].eval( input ) ) {
+                        long[] contribution = contributions[ i ].elements();
+                        for ( int w = 0; w < partial.length; ++w ) {
+                            partial[ w ] ^= contribution[ w ];
                         }
                     }
-                    synchronized ( result ) {
-                        result.xor( intermediary );
-                    }
-                    latch.countDown();
                 }
-            };
-            executor.execute( r );
+                return partial;
+            }
+
+            int mid = ( from + to ) >>> 1;
+            TermsTask left = new TermsTask( monomials, contributions, terms, input, outputLength, from, mid, leafSize );
+            TermsTask right = new TermsTask( monomials, contributions, terms, input, outputLength, mid, to, leafSize );
+            left.fork();
+            long[] partial = right.compute();
+            long[] leftPartial = left.join();
+            for ( int w = 0; w < partial.length; ++w ) {
+                partial[ w ] ^= leftPartial[ w ];
+            }
+            return partial;
+        }
+    }
+
+    /**
+     * Accumulates the buckets on the calling thread and on idle threads of the shared executor. Workers claim buckets
+     * one at a time and each accumulates into its own {@link QuadraticContributions}, so no locking is needed until
+     * the partial results are xored together once every bucket is done.
+     */
+    @Override
+    QuadraticContributions accumulateBuckets(
+            final BitVector[][] buckets,
+            final EnhancedBitMatrix BT,
+            final EnhancedBitMatrix B,
+            final int innerInputLength ) {
+        final int bucketCount = buckets.length - 1;
+        final AtomicInteger next = new AtomicInteger();
+        int helperCount = availableHelpers( Math.min( CONCURRENCY_LEVEL, bucketCount ) - 1 );
+        List<ListenableFuture<QuadraticContributions>> helpers = Lists.newArrayListWithCapacity( helperCount );
+        for ( int w = 0; w < helperCount; ++w ) {
+            helpers.add( executor.submit( new Callable<QuadraticContributions>() {
+                @Override
+                public QuadraticContributions call() {
+                    return accumulateClaimedBuckets( next, buckets, BT, B, innerInputLength );
+                }
+            } ) );
         }
+
+        List<QuadraticContributions> partials = Lists.newArrayListWithCapacity( helperCount + 1 );
+        partials.add( accumulateClaimedBuckets( next, buckets, BT, B, innerInputLength ) );
         try {
-            latch.await();
+            partials.addAll( Futures.allAsList( helpers ).get() );
         } catch ( InterruptedException e ) {
-            logger.error( "Concurrent apply() latch interrupted." );
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException( "Interrupted while accumulating buckets.", e );
+        } catch ( ExecutionException e ) {
+            throw Throwables.propagate( e.getCause() );
         }
-        return result;
+
+        long start = System.nanoTime();
+        QuadraticContributions mc = partials.get( 0 );
+        for ( int w = 1; w < partials.size(); ++w ) {
+            mc.xorAll( partials.get( w ) );
+        }
+        logger.debug(
+                "Merged {} partial results of {} buckets in {} ms.",
+                partials.size(),
+                bucketCount,
+                TimeUnit.NANOSECONDS.toMillis( System.nanoTime() - start ) );
+        return mc;
     }
 
+    private QuadraticContributions accumulateClaimedBuckets(
+            AtomicInteger next,
+            BitVector[][] buckets,
+            EnhancedBitMatrix BT,
+            EnhancedBitMatrix B,
+            int innerInputLength ) {
+        int bucketCount = buckets.length - 1;
+        QuadraticContributions partial = new QuadraticContributions( innerInputLength, outputLength );
+        for ( int i = next.getAndIncrement(); i < bucketCount; i = next.getAndIncrement() ) {
+            accumulateBucket( i, buckets, BT, B, partial );
+        }
+        return partial;
+    }
+
+    /**
+     * Expands the outer monomials on the calling thread and on idle threads of the shared executor. Workers claim
+     * monomials one at a time, so workers that draw cheap monomials move on to others instead of idling while the
+     * expensive ones finish, and new product monomials are interned without a global lock.
+     */
     @Override
-    protected BitVector[] expandOuterMonomials(
-            final List<Monomial> mList,
-            final BitVector[] innerRows,
-            final ConcurrentMap<Monomial, Integer> indices ) {
-        final CountDownLatch latch = new CountDownLatch( CONCURRENCY_LEVEL );
+    BitVector[] expandOuterMonomials( final MonomialInterner mList, final BitVector[] innerRows ) {
         final BitVector[] results = new BitVector[ monomials.length ];
-        int blocks = monomials.length / CONCURRENCY_LEVEL;
-        int leftover = monomials.length % CONCURRENCY_LEVEL;
-
-        for ( int i = 0; i < CONCURRENCY_LEVEL; i++ ) {
-            final int fromIndex = i * blocks;
-            int targetIndex = fromIndex + blocks;
-            if ( leftover != 0 && i == CONCURRENCY_LEVEL - 1 ) {
-                targetIndex += leftover;
-            }
-            final int toIndex = targetIndex;
-
-            executor.execute( new Runnable() {
-
+        final AtomicInteger next = new AtomicInteger();
+        int helperCount = availableHelpers( Math.min( CONCURRENCY_LEVEL, monomials.length ) - 1 );
+        List<ListenableFuture<?>> helpers = Lists.newArrayListWithCapacity( helperCount );
+        for ( int w = 0; w < helperCount; ++w ) {
+            helpers.add( executor.submit( new Runnable() {
                 @Override
                 public void run() {
-                    for ( int j = fromIndex; j < toIndex; j++ ) {
-                        Monomial outerMonomial = monomials[ j ];
-                        BitVector newContributions = null;
-                        if ( outerMonomial.isZero() ) {
-                            newContributions = new BitVector( mList.size() );
+                    expandClaimedMonomials( next, mList, innerRows, results );
+                }
+            } ) );
+        }
+
+        expandClaimedMonomials( next, mList, innerRows, results );
+        try {
+            Futures.allAsList( helpers ).get();
+        } catch ( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException( "Interrupted while expanding outer monomials.", e );
+        } catch ( ExecutionException e ) {
+            throw Throwables.propagate( e.getCause() );
+        }
+        return results;
+    }
+
+    private void expandClaimedMonomials(
+            AtomicInteger next,
+            MonomialInterner mList,
+            BitVector[] innerRows,
+            BitVector[] results ) {
+        for ( int j = next.getAndIncrement(); j < monomials.length; j = next.getAndIncrement() ) {
+            Monomial outerMonomial = monomials[ j ];
+            BitVector newContributions = null;
+            if ( outerMonomial.isZero() ) {
+                newContributions = new BitVector( mList.size() );
+            } else {
+                for ( int i = Long.numberOfTrailingZeros( outerMonomial.elements()[ 0 ] ); i < outerMonomial
+                        .size(); ++i ) {
+                    if ( outerMonomial.get( i ) ) {
+                        if ( newContributions == null ) {
+                            newContributions = innerRows[ i ];
                         } else {
-                            for ( int i = Long.numberOfTrailingZeros( outerMonomial.elements()[ 0 ] ); i < outerMonomial
-                                    .size(); ++i ) {
-                                if ( outerMonomial.get( i ) ) {
-                                    if ( newContributions == null ) {
-                                        newContributions = innerRows[ i ];
-                                    } else {
-                                        newContributions = product( newContributions, innerRows[ i ], mList, indices );
-                                    }
-                                }
-                            }
+                            newContributions = product( newContributions, innerRows[ i ], mList );
                         }
-                        results[ j ] = newContributions;
                     }
-                    latch.countDown();
                 }
-            } );
+            }
+            results[ j ] = newContributions;
+        }
+    }
 
+    /**
+     * Number of helpers, up to {@code wanted}, that may be submitted to the shared executor without queueing behind
+     * other work. Callers already running on the executor get none, since blocking a pool thread on tasks queued
+     * behind it can starve or deadlock the pool, for example when composing from a batch of a
+     * {@link StreamingEvaluator}.
+     */
+    private static int availableHelpers( int wanted ) {
+        if ( Boolean.TRUE.equals( onExecutor.get() ) ) {
+            return 0;
         }
+        int idle = pool.getMaximumPoolSize() - pool.getActiveCount() - pool.getQueue().size();
+        return Math.max( Math.min( wanted, idle ), 0 );
+    }
 
-        try {
-            latch.await();
-        } catch ( InterruptedException e ) {
-            e.printStackTrace();
+    /**
+     * Creates the threads of the shared executor, marking each so that work started on them runs inline.
+     */
+    private static final class ExecutorThreadFactory implements ThreadFactory {
+        private final ThreadFactory threads = Executors.defaultThreadFactory();
+
+        @Override
+        public Thread newThread( final Runnable r ) {
+            return threads.newThread( new Runnable() {
+                @Override
+                public void run() {
+                    onExecutor.set( Boolean.TRUE );
+                    r.run();
+                }
+            } );
         }
-        return results;
     }
 }
@@ -0,0 +1,168 @@
+package com.kryptnostic.multivariate.polynomial;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Thresholds for parallel evaluation in {@link OptimizedPolynomialFunctionGF2}. They default to constants that suit
+ * the functions produced by key generation on commodity hardware, and can be pinned with the
+ * {@code kryptnostic.apply.sequentialThreshold} and {@code kryptnostic.apply.leafSize} system properties.
+ *
+ * {@link #calibrate()} replaces the defaults by timing monomial evaluation against the cost of a fork/join round trip
+ * on this machine. Calibration takes a noticeable fraction of a second and spins up the fork/join pool, so it is never
+ * done implicitly; applications and benchmarks that want it call it once at startup.
+ */
+public final class ParallelApplyThresholds {
+    private static final Logger logger                       = LoggerFactory.getLogger( ParallelApplyThresholds.class );
+
+    public static final String  SEQUENTIAL_PROPERTY          = "kryptnostic.apply.sequentialThreshold";
+    public static final String  LEAF_SIZE_PROPERTY           = "kryptnostic.apply.leafSize";
+
+    public static final int     DEFAULT_SEQUENTIAL_THRESHOLD = 1024;
+    public static final int     DEFAULT_LEAF_SIZE            = 256;
+
+    private static final int    MIN_THRESHOLD                = 256;
+    private static final int    MAX_THRESHOLD                = 1 << 16;
+    private static final int    MIN_LEAF_SIZE                = 64;
+
+    private static volatile int sequentialThreshold          = Integer.getInteger(
+                                                                     SEQUENTIAL_PROPERTY,
+                                                                     DEFAULT_SEQUENTIAL_THRESHOLD );
+    private static volatile int leafSize                     = Integer.getInteger(
+                                                                     LEAF_SIZE_PROPERTY,
+                                                                     DEFAULT_LEAF_SIZE );
+
+    private ParallelApplyThresholds() {}
+
+    /**
+     * @return number of terms to test below which functions are evaluated on the calling thread.
+     */
+    public static int getSequentialThreshold() {
+        return sequentialThreshold;
+    }
+
+    /**
+     * @return smallest number of terms worth handing to a separate fork/join task.
+     */
+    public static int getLeafSize() {
+        return leafSize;
+    }
+
+    /**
+     * Measures this machine and replaces whichever thresholds were not pinned with system properties.
+     */
+    public static synchronized void calibrate() {
+        boolean sequentialPinned = Integer.getInteger( SEQUENTIAL_PROPERTY ) != null;
+        boolean leafPinned = Integer.getInteger( LEAF_SIZE_PROPERTY ) != null;
+        if ( sequentialPinned && leafPinned ) {
+            return;
+        }
+        double nanosPerTerm = measureNanosPerTerm();
+        double nanosPerTask = measureNanosPerTask( OptimizedPolynomialFunctionGF2.forkJoinPool );
+        /*
+         * Splitting only pays off once the work clearly outweighs waking up the pool, and each task should do several
+         * times its own scheduling cost in work.
+         */
+        if ( !sequentialPinned ) {
+            sequentialThreshold = clamp(
+                    4 * nanosPerTask * OptimizedPolynomialFunctionGF2.CONCURRENCY_LEVEL / nanosPerTerm,
+                    MIN_THRESHOLD,
+                    MAX_THRESHOLD );
+        }
+        if ( !leafPinned ) {
+            leafSize = clamp( 4 * nanosPerTask / nanosPerTerm, MIN_LEAF_SIZE, MAX_THRESHOLD );
+        }
+        logger.info(
+                "Calibrated parallel apply at {} ns per term and {} ns per task, "
+                        + "sequential below {} terms with leaves of {} terms.",
+                new Object[] { nanosPerTerm, nanosPerTask, sequentialThreshold, leafSize } );
+    }
+
+    private static int clamp( double value, int min, int max ) {
+        return (int) Math.max( min, Math.min( max, value ) );
+    }
+
+    /*
+     * Times the inner loop of apply on random order three monomials over 256 variables with 256 bit contributions,
+     * which is representative of the functions produced by key generation.
+     */
+    private static double measureNanosPerTerm() {
+        Random r = new Random( 0 );
+        int terms = 4096;
+        int words = 4;
+        long[] monomials = new long[ terms * words ];
+        long[] contributions = new long[ terms * words ];
+        for ( int i = 0; i < terms; ++i ) {
+            for ( int k = 0; k < 3; ++k ) {
+                int variable = r.nextInt( words << 6 );
+                monomials[ i * words + ( variable >>> 6 ) ] |= 1L << variable;
+            }
+            for ( int w = 0; w < words; ++w ) {
+                contributions[ i * words + w ] = r.nextLong();
+            }
+        }
+        long[] input = new long[ words ];
+        long[] output = new long[ words ];
+        long best = Long.MAX_VALUE;
+        for ( int round = 0; round < 50; ++round ) {
+            for ( int w = 0; w < words; ++w ) {
+                input[ w ] = r.nextLong();
+            }
+            long start = System.nanoTime();
+            for ( int i = 0; i < terms; ++i ) {
+                int offset = i * words;
+                boolean fires = true;
+                for ( int w = 0; w < words && fires; ++w ) {
+                    long m = monomials[ offset + w ];
+                    fires = ( input[ w ] & m ) == m;
+                }
+                if ( fires ) {
+                    for ( int w = 0; w < words; ++w ) {
+                        output[ w ] ^= contributions[ offset + w ];
+                    }
+                }
+            }
+            best = Math.min( best, System.nanoTime() - start );
+        }
+        // Keep the result live so the loop cannot be eliminated.
+        if ( Arrays.hashCode( output ) == 42 ) {
+            logger.trace( "Calibration output hashed to 42." );
+        }
+        return Math.max( best, 1L ) / (double) terms;
+    }
+
+    /*
+     * Times submitting a task that forks one empty subtask per worker and joins them, taking the best of several runs.
+     */
+    private static double measureNanosPerTask( ForkJoinPool pool ) {
+        final int fanOut = OptimizedPolynomialFunctionGF2.CONCURRENCY_LEVEL;
+        long best = Long.MAX_VALUE;
+        for ( int round = 0; round < 200; ++round ) {
+            long start = System.nanoTime();
+            pool.invoke( new RecursiveAction() {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected void compute() {
+                    RecursiveAction[] tasks = new RecursiveAction[ fanOut ];
+                    for ( int i = 0; i < fanOut; ++i ) {
+                        tasks[ i ] = new RecursiveAction() {
+                            private static final long serialVersionUID = 1L;
+
+                            @Override
+                            protected void compute() {}
+                        };
+                    }
+                    invokeAll( tasks );
+                }
+            } );
+            best = Math.min( best, System.nanoTime() - start );
+        }
+        return Math.max( best, 1L ) / (double) fanOut;
+    }
+}
@@ -1,5 +1,6 @@
 package com.kryptnostic.multivariate.polynomial;
 
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
@@ -12,6 +13,7 @@ import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
 import com.kryptnostic.bitwise.BitVectors;
+import com.kryptnostic.linear.BitUtils;
 import com.kryptnostic.multivariate.gf2.CompoundPolynomialFunction;
 import com.kryptnostic.multivariate.gf2.Monomial;
 import com.kryptnostic.multivariate.gf2.SimplePolynomialFunction;
@@ -27,13 +29,16 @@ public class ParameterizedPolynomialFunctionGF2 extends OptimizedPolynomialFunct
         SimplePolynomialFunction {
     private static final long                      serialVersionUID   = 3192164840103405264L;
 
-    private static final String                    PIPELINES_PROPERTY = "property";
+    protected static final String                  PIPELINES_PROPERTY = "property";
 
     private final List<CompoundPolynomialFunction> pipelines;
+    private final int[]                            pipelineOffsets;
+    private transient volatile WordScratch         parameterScratch;
 
     public ParameterizedPolynomialFunctionGF2() {
         super();
         this.pipelines = null;
+        this.pipelineOffsets = null;
     }
 
     /**
@@ -60,6 +65,16 @@ public class ParameterizedPolynomialFunctionGF2 extends OptimizedPolynomialFunct
                     "The input length of each pipeline must be the same as the input length to the overall function." );
         }
         this.pipelines = ImmutableList.copyOf( pipelines );
+
+        /*
+         * The output of each pipeline lands at a fixed offset of the extended input, with the final entry holding the
+         * length of the extended input.
+         */
+        this.pipelineOffsets = new int[ this.pipelines.size() + 1 ];
+        pipelineOffsets[ 0 ] = inputLength;
+        for ( int i = 0; i < this.pipelines.size(); ++i ) {
+            pipelineOffsets[ i + 1 ] = pipelineOffsets[ i ] + this.pipelines.get( i ).getOutputLength();
+        }
     }
 
     /**
@@ -68,13 +83,95 @@ public class ParameterizedPolynomialFunctionGF2 extends OptimizedPolynomialFunct
      */
     @Override
     public BitVector apply( BitVector input ) {
-        BitVector[] parameters = new BitVector[ pipelines.size() + 1 ];
-        parameters[ 0 ] = input;
+        Preconditions.checkArgument(
+                input.size() == inputLength,
+                "Input length must match the input length of the function." );
+        long[] extended = parameterize( input.elements() );
+        if ( degreeBuckets().getNonlinearTerms().length >= ParallelApplyThresholds.getSequentialThreshold() ) {
+            /*
+             * Tasks of the parallel path may run other evaluations on this thread while it waits, which could reuse the
+             * per thread buffer, so the parallel path gets its own copy of the extended input.
+             */
+            int extendedLength = pipelineOffsets[ pipelines.size() ];
+            return super.apply( new BitVector(
+                    Arrays.copyOf( extended, ( extendedLength + 63 ) >>> 6 ),
+                    extendedLength ) );
+        }
+        long[] result = new long[ ( outputLength + 63 ) >>> 6 ];
+        applyMonomials( extended, result );
+        return new BitVector( result, outputLength );
+    }
+
+    /**
+     * Parameterizes the input into a per thread buffer and evaluates the base monomials on it, so that steady state
+     * evaluation performs no allocation.
+     */
+    @Override
+    public void apply( long[] input, long[] output ) {
+        applyMonomials( parameterize( input ), output );
+    }
+
+    /**
+     * Evaluates the pipelines for each input and then evaluates the base monomials on all of the extended inputs as a
+     * single batch.
+     */
+    @Override
+    public long[][] applyBatch( long[][] inputs ) {
+        int inputWords = ( inputLength + 63 ) >>> 6;
+        long[][] parameterized = new long[ inputs.length ][];
+        for ( int i = 0; i < inputs.length; ++i ) {
+            Preconditions.checkArgument(
+                    inputs[ i ].length >= inputWords,
+                    "Each input must have enough words to hold the input length of the function." );
+            long[] extended = parameterize( inputs[ i ] );
+            parameterized[ i ] = Arrays.copyOf( extended, ( pipelineOffsets[ pipelines.size() ] + 63 ) >>> 6 );
+        }
+        return evaluateBatch( parameterized );
+    }
+
+    /**
+     * Extends the input with the output of every pipeline, producing the input to the base monomials.
+     * 
+     * @param input vector of the function's input length.
+     * @return the concatenation of the input and the output of each pipeline on that input.
+     */
+    protected BitVector parameterize( BitVector input ) {
+        int extendedLength = pipelineOffsets[ pipelines.size() ];
+        long[] extended = parameterize( input.elements() );
+        return new BitVector( Arrays.copyOf( extended, ( extendedLength + 63 ) >>> 6 ), extendedLength );
+    }
+
+    /**
+     * Word level variant of {@link #parameterize(BitVector)}, which writes into a per thread buffer instead of
+     * allocating the extended input. Each pipeline is evaluated into a second per thread buffer and its output is
+     * copied to its precomputed offset, so no intermediate vectors are allocated or concatenated.
+     * 
+     * @param input words of a vector of the function's input length.
+     * @return this thread's buffer holding the extended input, which is only valid until the next call on this thread.
+     */
+    protected long[] parameterize( long[] input ) {
+        WordScratch scratch = parameterScratch();
+        int parameterizedWords = ( pipelineOffsets[ pipelines.size() ] + 63 ) >>> 6;
+        long[] parameterized = scratch.get( 0, parameterizedWords );
+        Arrays.fill( parameterized, 0, parameterizedWords, 0L );
+        BitUtils.copyBits( input, inputLength, parameterized, 0 );
+
         for ( int i = 0; i < pipelines.size(); ++i ) {
-            CompoundPolynomialFunction pipeline = pipelines.get( i );
-            parameters[ i + 1 ] = pipeline.apply( input );
+            int pipelineOutputLength = pipelineOffsets[ i + 1 ] - pipelineOffsets[ i ];
+            long[] pipelineOutput = scratch.get( 1, ( pipelineOutputLength + 63 ) >>> 6 );
+            pipelines.get( i ).apply( input, pipelineOutput );
+            BitUtils.copyBits( pipelineOutput, pipelineOutputLength, parameterized, pipelineOffsets[ i ] );
+        }
+        return parameterized;
+    }
+
+    private WordScratch parameterScratch() {
+        WordScratch scratch = parameterScratch;
+        if ( scratch == null ) {
+            scratch = new WordScratch( 2 );
+            parameterScratch = scratch;
         }
-        return super.apply( BitVectors.concatenate( parameters ) );
+        return scratch;
     }
 
     @Override
@@ -100,6 +197,35 @@ public class ParameterizedPolynomialFunctionGF2 extends OptimizedPolynomialFunct
                 pipelines );
     }
 
+    /**
+     * Inner functions that are not parameterized have to be extended with the pipeline variables before composing, so
+     * only parameterized inner functions reuse the prepared work.
+     */
+    @Override
+    public SimplePolynomialFunction compose( PreparedInner inner ) {
+        if ( !inner.getFunction().isParameterized() ) {
+            return compose( inner.getFunction() );
+        }
+        for ( CompoundPolynomialFunction pipeline : pipelines ) {
+            pipeline.composeHeadDirectly( inner.getFunction() );
+        }
+        SimplePolynomialFunction newBase = super.compose( inner );
+        return new ParameterizedPolynomialFunctionGF2(
+                inner.getFunction().getInputLength(),
+                outputLength,
+                newBase.getMonomials(),
+                newBase.getContributions(),
+                pipelines );
+    }
+
+    /**
+     * Packing the base monomials would drop the pipelines, so parameterized functions are returned as is.
+     */
+    @Override
+    public SimplePolynomialFunction optimize() {
+        return this;
+    }
+
     @Override
     public boolean isParameterized() {
         return true;
@@ -0,0 +1,399 @@
+package com.kryptnostic.multivariate.polynomial;
+
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import cern.colt.bitvector.BitVector;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.kryptnostic.multivariate.gf2.CompoundPolynomialFunction;
+import com.kryptnostic.multivariate.gf2.PolynomialFunction;
+
+/**
+ * Evaluates a compound function on many inputs by streaming chunks of inputs through its functions, with every
+ * function of the chain running on its own thread. Consecutive stages hand chunks to each other through bounded queues,
+ * and each stage recycles a fixed set of chunk buffers, by default two so that a stage fills one buffer while the next
+ * stage drains the other. All stages of a long compound function therefore stay busy at once, instead of each input
+ * walking the whole chain before the next one starts.
+ *
+ * Each stage keeps running totals of the inputs it evaluated, the time it spent evaluating, the time it spent waiting
+ * for input and the time it spent waiting for a free buffer, which are available from {@link #getStageStatistics()}.
+ * The stage with the most busy time is the bottleneck of the chain.
+ *
+ * Evaluators may be shared between threads, but concurrent batches are not pipelined with each other.
+ */
+public final class PipelinedBatchEvaluator {
+    private static final Logger          logger             = LoggerFactory.getLogger( PipelinedBatchEvaluator.class );
+    private static final ExecutorService stageExecutor      = Executors.newCachedThreadPool( new ThreadFactoryBuilder()
+                                                                    .setDaemon( true )
+                                                                    .setNameFormat( "compound-stage-%d" )
+                                                                    .build() );
+
+    public static final int              DEFAULT_CHUNK_SIZE = 64;
+    public static final int              DEFAULT_BUFFERS    = 2;
+
+    private static final Chunk           END                = new Chunk( null );
+
+    private final List<PolynomialFunction> functions;
+    private final int                      chunkSize;
+    private final int                      buffers;
+    private final Stage[]                  stages;
+
+    public PipelinedBatchEvaluator( CompoundPolynomialFunction function ) {
+        this( function, DEFAULT_CHUNK_SIZE, DEFAULT_BUFFERS );
+    }
+
+    /**
+     * @param function compound function to evaluate.
+     * @param chunkSize number of inputs handed from one stage to the next at a time.
+     * @param buffers number of chunk buffers owned by each stage, which bounds how far a stage can run ahead of the
+     *            next one.
+     */
+    public PipelinedBatchEvaluator( CompoundPolynomialFunction function, int chunkSize, int buffers ) {
+        Preconditions.checkArgument( chunkSize > 0, "Chunk size must be positive." );
+        Preconditions.checkArgument( buffers > 0, "Each stage needs at least one buffer." );
+        this.functions = ImmutableList.copyOf( function.getFunctions() );
+        this.chunkSize = chunkSize;
+        this.buffers = buffers;
+        this.stages = new Stage[ functions.size() ];
+        for ( int i = 0; i < stages.length; ++i ) {
+            stages[ i ] = new Stage( functions.get( i ) );
+        }
+    }
+
+    public BitVector[] apply( BitVector[] inputs ) {
+        int inputLength = functions.isEmpty() ? 0 : functions.get( 0 ).getInputLength();
+        int outputLength = functions.isEmpty() ? 0 : functions.get( functions.size() - 1 ).getOutputLength();
+        long[][] words = new long[ inputs.length ][];
+        for ( int i = 0; i < inputs.length; ++i ) {
+            Preconditions.checkArgument(
+                    inputs[ i ].size() == inputLength,
+                    "Input length must match the input length of the function." );
+            words[ i ] = inputs[ i ].elements();
+        }
+        long[][] outputs = apply( words );
+        BitVector[] results = new BitVector[ outputs.length ];
+        for ( int i = 0; i < outputs.length; ++i ) {
+            results[ i ] = new BitVector( outputs[ i ], outputLength );
+        }
+        return results;
+    }
+
+    /**
+     * Evaluates the compound function on every input, preserving order. Batches of a single chunk, and chains of a
+     * single function, are evaluated on the calling thread since there is nothing to overlap.
+     *
+     * @param inputs words of each input.
+     * @return words of each output.
+     */
+    public long[][] apply( long[][] inputs ) {
+        Preconditions.checkArgument( !functions.isEmpty(), "Cannot evaluate an empty compound function." );
+        int outputWords = ( functions.get( functions.size() - 1 ).getOutputLength() + 63 ) >>> 6;
+        long[][] outputs = new long[ inputs.length ][];
+        for ( int i = 0; i < outputs.length; ++i ) {
+            outputs[ i ] = new long[ outputWords ];
+        }
+        if ( stages.length == 1 || inputs.length <= chunkSize ) {
+            evaluateSequentially( inputs, outputs );
+        } else {
+            evaluatePipelined( inputs, outputs );
+        }
+        if ( logger.isDebugEnabled() ) {
+            logger.debug( "Stage statistics after batch of {}: {}", inputs.length, getStageStatistics() );
+        }
+        return outputs;
+    }
+
+    /**
+     * @return running totals for each stage, in the order of the functions of the chain.
+     */
+    public List<StageStatistics> getStageStatistics() {
+        List<StageStatistics> statistics = Lists.newArrayListWithCapacity( stages.length );
+        for ( int i = 0; i < stages.length; ++i ) {
+            statistics.add( stages[ i ].snapshot( i ) );
+        }
+        return statistics;
+    }
+
+    private void evaluateSequentially( long[][] inputs, long[][] outputs ) {
+        int maximumWords = 0;
+        for ( PolynomialFunction f : functions ) {
+            maximumWords = Math.max( maximumWords, ( f.getOutputLength() + 63 ) >>> 6 );
+        }
+        long[][] intermediates = new long[ 2 ][ maximumWords ];
+        for ( int i = 0; i < inputs.length; ++i ) {
+            long[] current = inputs[ i ];
+            for ( int s = 0; s < stages.length; ++s ) {
+                PolynomialFunction f = functions.get( s );
+                long[] next = s == stages.length - 1 ? outputs[ i ] : intermediates[ s & 1 ];
+                long start = System.nanoTime();
+                CompoundPolynomialFunctionGF2.apply( f, current, next );
+                stages[ s ].busyNanos.addAndGet( System.nanoTime() - start );
+                stages[ s ].items.incrementAndGet();
+                current = next;
+            }
+        }
+    }
+
+    private void evaluatePipelined( final long[][] inputs, final long[][] outputs ) {
+        /*
+         * Queue i carries chunks from stage i to stage i + 1, and free queue i returns the buffers of stage i once
+         * stage i + 1 is done reading them. The first stage reads the inputs in place and the last stage writes the
+         * outputs in place, so neither needs buffers of its own.
+         */
+        final int count = stages.length;
+        final List<BlockingQueue<Chunk>> handOffs = Lists.newArrayListWithCapacity( count - 1 );
+        final List<BlockingQueue<Chunk>> free = Lists.newArrayListWithCapacity( count - 1 );
+        for ( int s = 0; s < count - 1; ++s ) {
+            int words = ( functions.get( s ).getOutputLength() + 63 ) >>> 6;
+            BlockingQueue<Chunk> pool = new ArrayBlockingQueue<Chunk>( buffers );
+            for ( int b = 0; b < buffers; ++b ) {
+                pool.add( new Chunk( new long[ chunkSize ][ words ] ) );
+            }
+            free.add( pool );
+            handOffs.add( new ArrayBlockingQueue<Chunk>( buffers + 1 ) );
+        }
+
+        CompletionService<Void> completion = new ExecutorCompletionService<Void>( stageExecutor );
+        List<Future<Void>> futures = Lists.newArrayListWithCapacity( count );
+        for ( int s = 0; s < count; ++s ) {
+            final int index = s;
+            futures.add( completion.submit( new Callable<Void>() {
+                @Override
+                public Void call() throws InterruptedException {
+                    runStage(
+                            index,
+                            inputs,
+                            outputs,
+                            index == 0 ? null : handOffs.get( index - 1 ),
+                            index == 0 ? null : free.get( index - 1 ),
+                            index == count - 1 ? null : handOffs.get( index ),
+                            index == count - 1 ? null : free.get( index ) );
+                    return null;
+                }
+            } ) );
+        }
+
+        /*
+         * Stages are waited on in completion order, so that a failure in any stage is noticed even while earlier stages
+         * are still blocked on it.
+         */
+        try {
+            for ( int s = 0; s < count; ++s ) {
+                completion.take().get();
+            }
+        } catch ( InterruptedException e ) {
+            cancel( futures );
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException( "Interrupted while waiting for pipelined evaluation.", e );
+        } catch ( ExecutionException e ) {
+            // A failed stage would leave its neighbours blocked on their queues forever.
+            cancel( futures );
+            throw Throwables.propagate( e.getCause() );
+        }
+    }
+
+    private void runStage(
+            int index,
+            long[][] inputs,
+            long[][] outputs,
+            BlockingQueue<Chunk> in,
+            BlockingQueue<Chunk> inFree,
+            BlockingQueue<Chunk> out,
+            BlockingQueue<Chunk> outFree ) throws InterruptedException {
+        Stage stage = stages[ index ];
+        PolynomialFunction f = functions.get( index );
+        int next = 0;
+        while ( true ) {
+            Chunk source = null;
+            int first;
+            int length;
+            if ( in == null ) {
+                if ( next == inputs.length ) {
+                    out.put( END );
+                    return;
+                }
+                first = next;
+                length = Math.min( chunkSize, inputs.length - next );
+                next += length;
+            } else {
+                long waitStart = System.nanoTime();
+                source = in.take();
+                stage.idleNanos.addAndGet( System.nanoTime() - waitStart );
+                if ( source == END ) {
+                    if ( out != null ) {
+                        out.put( END );
+                    }
+                    return;
+                }
+                first = source.start;
+                length = source.count;
+            }
+
+            Chunk target = null;
+            if ( out != null ) {
+                long blockStart = System.nanoTime();
+                target = outFree.take();
+                stage.blockedNanos.addAndGet( System.nanoTime() - blockStart );
+                target.start = first;
+                target.count = length;
+            }
+
+            long busyStart = System.nanoTime();
+            for ( int k = 0; k < length; ++k ) {
+                long[] input = source == null ? inputs[ first + k ] : source.rows[ k ];
+                long[] output = out == null ? outputs[ first + k ] : target.rows[ k ];
+                CompoundPolynomialFunctionGF2.apply( f, input, output );
+            }
+            stage.busyNanos.addAndGet( System.nanoTime() - busyStart );
+            stage.items.addAndGet( length );
+
+            if ( source != null ) {
+                inFree.put( source );
+            }
+            if ( out != null ) {
+                out.put( target );
+            }
+        }
+    }
+
+    private static void cancel( List<Future<Void>> futures ) {
+        for ( Future<Void> future : futures ) {
+            future.cancel( true );
+        }
+    }
+
+    /**
+     * Buffer of intermediate results for a run of consecutive inputs, starting at input {@code start}.
+     */
+    private static final class Chunk {
+        private final long[][] rows;
+        private int            start;
+        private int            count;
+
+        private Chunk( long[][] rows ) {
+            this.rows = rows;
+        }
+    }
+
+    private static final class Stage {
+        private final PolynomialFunction function;
+        private final AtomicLong         items        = new AtomicLong();
+        private final AtomicLong         busyNanos    = new AtomicLong();
+        private final AtomicLong         idleNanos    = new AtomicLong();
+        private final AtomicLong         blockedNanos = new AtomicLong();
+
+        private Stage( PolynomialFunction function ) {
+            this.function = function;
+        }
+
+        private StageStatistics snapshot( int index ) {
+            return new StageStatistics(
+                    index,
+                    function.getInputLength(),
+                    function.getOutputLength(),
+                    items.get(),
+                    busyNanos.get(),
+                    idleNanos.get(),
+                    blockedNanos.get() );
+        }
+    }
+
+    /**
+     * Running totals of a single stage.
+     */
+    public static final class StageStatistics {
+        private final int  index;
+        private final int  inputLength;
+        private final int  outputLength;
+        private final long items;
+        private final long busyNanos;
+        private final long idleNanos;
+        private final long blockedNanos;
+
+        private StageStatistics(
+                int index,
+                int inputLength,
+                int outputLength,
+                long items,
+                long busyNanos,
+                long idleNanos,
+                long blockedNanos ) {
+            this.index = index;
+            this.inputLength = inputLength;
+            this.outputLength = outputLength;
+            this.items = items;
+            this.busyNanos = busyNanos;
+            this.idleNanos = idleNanos;
+            this.blockedNanos = blockedNanos;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public long getItems() {
+            return items;
+        }
+
+        /**
+         * @return time spent evaluating the stage's function.
+         */
+        public long getBusyTime( TimeUnit unit ) {
+            return unit.convert( busyNanos, TimeUnit.NANOSECONDS );
+        }
+
+        /**
+         * @return time spent waiting for the previous stage to hand over a chunk.
+         */
+        public long getIdleTime( TimeUnit unit ) {
+            return unit.convert( idleNanos, TimeUnit.NANOSECONDS );
+        }
+
+        /**
+         * @return time spent waiting for the next stage to hand back a free buffer.
+         */
+        public long getBlockedTime( TimeUnit unit ) {
+            return unit.convert( blockedNanos, TimeUnit.NANOSECONDS );
+        }
+
+        /**
+         * @return inputs evaluated per second of busy time, which is the most the whole chain can sustain if this stage
+         *         is its bottleneck.
+         */
+        public double getThroughput() {
+            return busyNanos == 0L ? 0.0 : items * 1e9 / busyNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(
+                    "stage %d (%d -> %d bits): %d inputs, %.1f inputs/s, busy %d ms, idle %d ms, blocked %d ms",
+                    index,
+                    inputLength,
+                    outputLength,
+                    items,
+                    getThroughput(),
+                    getBusyTime( TimeUnit.MILLISECONDS ),
+                    getIdleTime( TimeUnit.MILLISECONDS ),
+                    getBlockedTime( TimeUnit.MILLISECONDS ) );
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package com.kryptnostic.multivariate.polynomial;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import cern.colt.bitvector.BitVector;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.kryptnostic.linear.BitUtils;
+import com.kryptnostic.multivariate.gf2.Monomial;
+import com.kryptnostic.multivariate.gf2.SimplePolynomialFunction;
+
+/**
+ * Partial evaluation of a function on a fixed number of leading input bits, prepared once so that the function can be
+ * resolved against many prefixes. Each monomial is split into the words of its prefix variables, which decide whether
+ * the monomial survives, and the index of its suffix among the distinct suffixes of the function, which is where its
+ * contribution lands when it does. Resolving a prefix is then word operations on the prefix and one row xor per
+ * surviving monomial, instead of slicing and hashing every monomial.
+ *
+ * The suffix monomials are shared by every function this resolver produces, which is safe because monomials of
+ * functions are never modified in place.
+ */
+final class PrefixResolver {
+    private final int         prefixLength;
+    private final int         resolvedInputLength;
+    private final int         outputLength;
+    private final int         prefixWords;
+    private final int         rowLength;
+    private final long[]      prefixMasks;
+    private final int[]       suffixIds;
+    private final long[][]    contributions;
+    private final Monomial[]  suffixes;
+    private final WordScratch scratch = new WordScratch( 1 );
+
+    /**
+     * @param monomials of the function, which must all have {@code variableCount} variables.
+     * @param contributions of the function.
+     * @param variableCount number of variables of each monomial.
+     * @param inputLength input length of the function.
+     * @param outputLength output length of the function.
+     * @param prefixLength number of leading variables fixed by each prefix.
+     */
+    PrefixResolver(
+            Monomial[] monomials,
+            BitVector[] contributions,
+            int variableCount,
+            int inputLength,
+            int outputLength,
+            int prefixLength ) {
+        Preconditions.checkArgument(
+                monomials.length == 0 || prefixLength < variableCount,
+                "Size of monomial must be strictly greater than input." );
+        this.prefixLength = prefixLength;
+        int suffixLength = Math.max( variableCount - prefixLength, 0 );
+        this.resolvedInputLength = inputLength - prefixLength;
+        this.outputLength = outputLength;
+        this.prefixWords = ( prefixLength + 63 ) >>> 6;
+        this.rowLength = ( outputLength + 63 ) >>> 6;
+        this.prefixMasks = new long[ monomials.length * prefixWords ];
+        this.suffixIds = new int[ monomials.length ];
+        this.contributions = new long[ monomials.length ][];
+
+        Map<Monomial, Integer> ids = Maps.newHashMap();
+        List<Monomial> distinct = Lists.newArrayList();
+        for ( int m = 0; m < monomials.length; ++m ) {
+            long[] words = monomials[ m ].elements();
+            System.arraycopy( words, 0, prefixMasks, m * prefixWords, prefixWords );
+            if ( ( prefixLength & 63 ) != 0 ) {
+                prefixMasks[ ( m + 1 ) * prefixWords - 1 ] &= ( 1L << prefixLength ) - 1;
+            }
+            Monomial suffix = new Monomial( shiftDown( words, prefixLength, suffixLength ), suffixLength );
+            Integer id = ids.get( suffix );
+            if ( id == null ) {
+                id = distinct.size();
+                ids.put( suffix, id );
+                distinct.add( suffix );
+            }
+            suffixIds[ m ] = id;
+            this.contributions[ m ] = contributions[ m ].elements();
+        }
+        this.suffixes = distinct.toArray( new Monomial[ distinct.size() ] );
+    }
+
+    int getPrefixLength() {
+        return prefixLength;
+    }
+
+    /**
+     * @param prefix words of the values of the first {@code prefixLength} variables.
+     * @return the function of the remaining variables obtained by fixing the prefix.
+     */
+    SimplePolynomialFunction resolve( long[] prefix ) {
+        long[] rows = clearedRows();
+        for ( int m = 0; m < suffixIds.length; ++m ) {
+            if ( Monomial.eval( prefixMasks, m * prefixWords, prefixWords, prefix ) ) {
+                xorRow( contributions[ m ], rows, suffixIds[ m ] * rowLength );
+            }
+        }
+        return collect( rows );
+    }
+
+    /**
+     * Resolves many prefixes at once. Prefixes are bit-sliced in blocks of 64, so whether a monomial survives is
+     * decided for a whole block by and-ing one word per prefix variable, and each prefix only revisits the monomials
+     * that survive for it.
+     *
+     * @param prefixes words of the values of the first {@code prefixLength} variables, for each prefix.
+     * @return the resolved function for each prefix, in order.
+     */
+    List<SimplePolynomialFunction> resolveAll( long[][] prefixes ) {
+        List<SimplePolynomialFunction> resolved = Lists.newArrayListWithCapacity( prefixes.length );
+        long[] sliced = new long[ prefixWords << 6 ];
+        long[] lanes = new long[ suffixIds.length ];
+        for ( int offset = 0; offset < prefixes.length; offset += 64 ) {
+            int count = Math.min( 64, prefixes.length - offset );
+            BitUtils.slice( prefixes, offset, count, prefixWords, sliced );
+            long all = count == 64 ? -1L : ( 1L << count ) - 1;
+            for ( int m = 0; m < suffixIds.length; ++m ) {
+                long surviving = all;
+                for ( int w = 0; w < prefixWords && surviving != 0L; ++w ) {
+                    for ( long bits = prefixMasks[ m * prefixWords + w ]; bits != 0L; bits &= bits - 1 ) {
+                        surviving &= sliced[ ( w << 6 ) + Long.numberOfTrailingZeros( bits ) ];
+                    }
+                }
+                lanes[ m ] = surviving;
+            }
+            for ( int lane = 0; lane < count; ++lane ) {
+                long bit = 1L << lane;
+                long[] rows = clearedRows();
+                for ( int m = 0; m < suffixIds.length; ++m ) {
+                    if ( ( lanes[ m ] & bit ) != 0L ) {
+                        xorRow( contributions[ m ], rows, suffixIds[ m ] * rowLength );
+                    }
+                }
+                resolved.add( collect( rows ) );
+            }
+        }
+        return resolved;
+    }
+
+    private long[] clearedRows() {
+        int words = suffixes.length * rowLength;
+        long[] rows = scratch.get( 0, words );
+        Arrays.fill( rows, 0, words, 0L );
+        return rows;
+    }
+
+    private void xorRow( long[] contribution, long[] rows, int offset ) {
+        for ( int w = 0; w < rowLength; ++w ) {
+            rows[ offset + w ] ^= contribution[ w ];
+        }
+    }
+
+    /*
+     * Builds a function from the non-zero rows, dropping suffixes whose contributions cancelled out.
+     */
+    private SimplePolynomialFunction collect( long[] rows ) {
+        int nonZero = 0;
+        for ( int s = 0; s < suffixes.length; ++s ) {
+            if ( !isZero( rows, s * rowLength ) ) {
+                ++nonZero;
+            }
+        }
+        Monomial[] monomials = new Monomial[ nonZero ];
+        BitVector[] newContributions = new BitVector[ nonZero ];
+        int index = 0;
+        for ( int s = 0; s < suffixes.length; ++s ) {
+            if ( !isZero( rows, s * rowLength ) ) {
+                monomials[ index ] = suffixes[ s ];
+                newContributions[ index ] = new BitVector(
+                        Arrays.copyOfRange( rows, s * rowLength, ( s + 1 ) * rowLength ),
+                        outputLength );
+                ++index;
+            }
+        }
+        return new OptimizedPolynomialFunctionGF2( resolvedInputLength, outputLength, monomials, newContributions );
+    }
+
+    private boolean isZero( long[] rows, int offset ) {
+        for ( int w = 0; w < rowLength; ++w ) {
+            if ( rows[ offset + w ] != 0L ) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /*
+     * Returns bits [ shift, shift + length ) of words, moved down to start at bit zero.
+     */
+    private static long[] shiftDown( long[] words, int shift, int length ) {
+        long[] result = new long[ ( length + 63 ) >>> 6 ];
+        int base = shift >>> 6;
+        int offset = shift & 63;
+        for ( int w = 0; w < result.length; ++w ) {
+            long low = base + w < words.length ? words[ base + w ] >>> offset : 0L;
+            long high = offset != 0 && base + w + 1 < words.length ? words[ base + w + 1 ] << ( 64 - offset ) : 0L;
+            result[ w ] = low | high;
+        }
+        if ( ( length & 63 ) != 0 ) {
+            result[ result.length - 1 ] &= ( 1L << length ) - 1;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,122 @@
+package com.kryptnostic.multivariate.polynomial;
+
+import java.util.Arrays;
+
+import cern.colt.bitvector.BitVector;
+
+import com.google.common.base.Preconditions;
+import com.kryptnostic.linear.EnhancedBitMatrix;
+import com.kryptnostic.multivariate.gf2.Monomial;
+import com.kryptnostic.multivariate.gf2.SimplePolynomialFunction;
+
+/**
+ * Inner function of a composition together with the work that composing with it requires, which only depends on the
+ * inner function: its contributions transposed into one row per output, the index of its monomials and, for affine
+ * functions, the ordered matrix of affine contributions. Each part is computed the first time a composition needs it
+ * and reused by every later composition, so composing many outer functions with the same inner function, such as a
+ * decryptor, only prepares it once.
+ *
+ * Instances are safe for concurrent use. Compositions copy whatever they modify, so the prepared parts are never
+ * changed after they are computed.
+ */
+public final class PreparedInner {
+    private final SimplePolynomialFunction      function;
+    private final int                           variableCount;
+
+    private volatile BitVector[]                innerRows;
+    private volatile MonomialInterner           monomials;
+    private volatile AffineContributions        affineContributions;
+
+    public PreparedInner( SimplePolynomialFunction function ) {
+        this.function = Preconditions.checkNotNull( function, "Inner function cannot be null." );
+        Monomial[] functionMonomials = function.getMonomials();
+        this.variableCount = ( function instanceof ParameterizedPolynomialFunctionGF2 && functionMonomials.length != 0 )
+                ? functionMonomials[ 0 ].size() : function.getInputLength();
+    }
+
+    /**
+     * @return the inner function.
+     */
+    public SimplePolynomialFunction getFunction() {
+        return function;
+    }
+
+    /**
+     * Composes {@code outer} with the inner function, reusing the prepared work when {@code outer} supports it.
+     *
+     * @return a function computing {@code outer( inner( x ) )}.
+     */
+    public SimplePolynomialFunction composeWith( SimplePolynomialFunction outer ) {
+        if ( outer instanceof BasePolynomialFunction ) {
+            return ( (BasePolynomialFunction) outer ).compose( this );
+        }
+        return outer.compose( function );
+    }
+
+    /*
+     * Number of variables of the monomials of the composed function.
+     */
+    int getVariableCount() {
+        return variableCount;
+    }
+
+    /*
+     * Transposed contributions of the inner function, copied because compose resizes them in place.
+     */
+    BitVector[] copyInnerRows() {
+        BitVector[] rows = innerRows;
+        if ( rows == null ) {
+            EnhancedBitMatrix contributionRows = new EnhancedBitMatrix( Arrays.asList( function.getContributions() ) );
+            EnhancedBitMatrix.transpose( contributionRows );
+            rows = new BitVector[ function.getOutputLength() ];
+            for ( int i = 0; i < rows.length; ++i ) {
+                rows[ i ] = contributionRows.getRow( i );
+            }
+            innerRows = rows;
+        }
+        BitVector[] copy = new BitVector[ rows.length ];
+        for ( int i = 0; i < rows.length; ++i ) {
+            copy[ i ] = rows[ i ].copy();
+        }
+        return copy;
+    }
+
+    /*
+     * Interner seeded with the monomials of the inner function, which compose then grows with product monomials.
+     */
+    MonomialInterner newInterner() {
+        MonomialInterner template = monomials;
+        if ( template == null ) {
+            Monomial[] functionMonomials = function.getMonomials();
+            template = new MonomialInterner(
+                    functionMonomials.length == 0 ? function.getInputLength() : functionMonomials[ 0 ].size(),
+                    Arrays.asList( functionMonomials ) );
+            monomials = template;
+        }
+        return new MonomialInterner( template );
+    }
+
+    /*
+     * Affine contributions ordered by variable with the constant last, as rows and transposed, for inner functions
+     * whose monomials all have order at most one.
+     */
+    AffineContributions affineContributions() {
+        AffineContributions affine = affineContributions;
+        if ( affine == null ) {
+            EnhancedBitMatrix BT = ( (BasePolynomialFunction) function ).orderedAffineContributions();
+            affine = new AffineContributions( BT, BT.transpose() );
+            affineContributions = affine;
+        }
+        return affine;
+    }
+
+    static final class AffineContributions {
+        final EnhancedBitMatrix BT;
+        final EnhancedBitMatrix B;
+
+        AffineContributions( EnhancedBitMatrix BT, EnhancedBitMatrix B ) {
+            this.BT = BT;
+            this.B = B;
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.kryptnostic.multivariate.polynomial;
+
+import java.util.Arrays;
+
+import cern.colt.bitvector.BitVector;
+
+import com.google.common.base.Preconditions;
+import com.kryptnostic.linear.Kernels;
+import com.kryptnostic.multivariate.gf2.Monomial;
+import com.kryptnostic.multivariate.gf2.SimplePolynomialFunction;
+
+/**
+ * Contributions of every monomial of order at most two in a fixed number of variables, stored in one flat array of
+ * words. Since x<sub>j</sub>x<sub>j</sub> = x<sub>j</sub> over GF(2), the basis is the constant followed by the upper
+ * triangle of products x<sub>j</sub>x<sub>k</sub> with j &le; k, with the diagonal standing for the linear monomials,
+ * which is the same flat indexing used by
+ * {@link com.kryptnostic.multivariate.util.SimplePolynomialFunctions#denseRandomMultivariateQuadratic(int, int)}. A
+ * product is addressed by arithmetic on its variable indices, so accumulating it needs neither a monomial nor a hash
+ * lookup.
+ *
+ * Instances are not safe for concurrent use.
+ */
+final class QuadraticContributions {
+    private final int    variableCount;
+    private final int    outputLength;
+    private final int    rowLength;
+    private final long[] rows;
+
+    /**
+     * @param variableCount number of variables, which is also the index used for the constant in
+     *            {@link #xor(int, int, long[])}.
+     * @param outputLength length of each contribution.
+     */
+    QuadraticContributions( int variableCount, int outputLength ) {
+        Preconditions.checkArgument( variableCount >= 0, "Number of variables cannot be negative." );
+        Preconditions.checkArgument( outputLength >= 0, "Output length cannot be negative." );
+        this.variableCount = variableCount;
+        this.outputLength = outputLength;
+        this.rowLength = ( outputLength + 63 ) >>> 6;
+        this.rows = new long[ monomialCount( variableCount ) * rowLength ];
+    }
+
+    /**
+     * @return the number of monomials of order at most two in {@code variableCount} variables.
+     */
+    static int monomialCount( int variableCount ) {
+        return 1 + ( ( variableCount * ( variableCount + 1 ) ) >>> 1 );
+    }
+
+    /**
+     * @return the flat index of x<sub>j</sub>x<sub>k</sub>, for 0 &le; j &le; k &lt; {@code variableCount}.
+     */
+    static int index( int j, int k, int variableCount ) {
+        return 1 + j * ( variableCount - 1 ) - ( ( j * ( j - 1 ) ) >>> 1 ) + k;
+    }
+
+    /**
+     * Xors {@code contribution} into the contribution of the product of the j-th and k-th factors, where factors below
+     * {@code variableCount} are variables and {@code variableCount} itself is the constant.
+     */
+    void xor( int j, int k, long[] contribution ) {
+        int flat;
+        if ( j == variableCount ) {
+            flat = k == variableCount ? 0 : index( k, k, variableCount );
+        } else if ( k == variableCount ) {
+            flat = index( j, j, variableCount );
+        } else {
+            flat = j <= k ? index( j, k, variableCount ) : index( k, j, variableCount );
+        }
+        Kernels.get().xor( contribution, 0, rows, flat * rowLength, rowLength );
+    }
+
+    /**
+     * Xors every contribution of {@code other} into this accumulator, which is how partial results accumulated by
+     * different threads are combined.
+     */
+    void xorAll( QuadraticContributions other ) {
+        Preconditions.checkArgument(
+                other.variableCount == variableCount && other.outputLength == outputLength,
+                "Accumulators must have the same number of variables and output length." );
+        Kernels.get().xor( other.rows, 0, rows, 0, rows.length );
+    }
+
+    /**
+     * @param inputLength input length of the function, which may exceed the number of variables.
+     * @return a function with every monomial whose contribution is non-zero, in flat index order.
+     */
+    SimplePolynomialFunction toFunction( int inputLength ) {
+        int nonZero = 0;
+        for ( int row = 0; row < rows.length; row += rowLength ) {
+            if ( !isZero( row ) ) {
+                ++nonZero;
+            }
+        }
+        Monomial[] monomials = new Monomial[ nonZero ];
+        BitVector[] contributions = new BitVector[ nonZero ];
+        int i = 0;
+        if ( !isZero( 0 ) ) {
+            monomials[ i ] = Monomial.constantMonomial( variableCount );
+            contributions[ i ] = contribution( 0 );
+            ++i;
+        }
+        for ( int j = 0; j < variableCount; ++j ) {
+            for ( int k = j; k < variableCount; ++k ) {
+                int row = index( j, k, variableCount ) * rowLength;
+                if ( !isZero( row ) ) {
+                    monomials[ i ] = new Monomial( variableCount ).chainSet( j ).chainSet( k );
+                    contributions[ i ] = contribution( row );
+                    ++i;
+                }
+            }
+        }
+        return new OptimizedPolynomialFunctionGF2( inputLength, outputLength, monomials, contributions );
+    }
+
+    private BitVector contribution( int row ) {
+        return new BitVector( Arrays.copyOfRange( rows, row, row + rowLength ), outputLength );
+    }
+
+    private boolean isZero( int offset ) {
+        for ( int w = 0; w < rowLength; ++w ) {
+            if ( rows[ offset + w ] != 0L ) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,156 @@
+package com.kryptnostic.multivariate.polynomial;
+
+import java.util.Arrays;
+
+import cern.colt.bitvector.BitVector;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.base.Preconditions;
+import com.kryptnostic.multivariate.gf2.Monomial;
+import com.kryptnostic.multivariate.gf2.SimplePolynomialFunction;
+
+/**
+ * Polynomial function over GF(2) of order at most two, stored as a quadratic form
+ *
+ * <pre>
+ * y = c + L x + sum_i x_i ( Q_i x )
+ * </pre>
+ *
+ * where {@code L} holds one output row per variable and {@code Q_i} holds one output row for each variable
+ * {@code j > i} that appears together with {@code x_i} in a monomial. Evaluation only visits the blocks of variables
+ * set in the input and xors whole output rows, instead of testing every monomial of the function against the input.
+ *
+ * Instances are produced by {@link BasePolynomialFunction#optimize()} for functions whose maximum monomial order is at
+ * most two. The monomials and contributions are retained, so all algebraic operations behave exactly as they do for
+ * {@link OptimizedPolynomialFunctionGF2}.
+ */
+public class QuadraticPolynomialFunctionGF2 extends OptimizedPolynomialFunctionGF2 {
+    private static final long serialVersionUID = -1503357291402526372L;
+
+    private final int         variableCount;
+    private final int         rowLength;
+    private final long[]      constant;
+    private final long[]      linearRows;
+    private final int[]       partnerOffsets;
+    private final int[]       partners;
+    private final long[]      quadraticRows;
+
+    @JsonCreator
+    public QuadraticPolynomialFunctionGF2(
+            @JsonProperty( INPUT_LENGTH_PROPERTY ) int inputLength,
+            @JsonProperty( OUTPUT_LENGTH_PROPERTY ) int outputLength,
+            @JsonProperty( MONOMIALS_PROPERTY ) Monomial[] monomials,
+            @JsonProperty( CONTRIBUTIONS_PROPERTY ) BitVector[] contributions ) {
+        super( inputLength, outputLength, monomials, contributions );
+        variableCount = monomials.length == 0 ? inputLength : monomials[ 0 ].size();
+        rowLength = ( outputLength + 63 ) >>> 6;
+        constant = new long[ rowLength ];
+        linearRows = new long[ variableCount * rowLength ];
+        partnerOffsets = new int[ variableCount + 1 ];
+
+        /*
+         * First pass counts the quadratic terms led by each variable, so that the partners of x_i can be laid out
+         * contiguously starting at partnerOffsets[ i ].
+         */
+        int[] lowest = new int[ monomials.length ];
+        int[] highest = new int[ monomials.length ];
+        for ( int m = 0; m < monomials.length; ++m ) {
+            Monomial monomial = monomials[ m ];
+            Preconditions.checkArgument(
+                    monomial.size() == variableCount,
+                    "All monomials must have the same number of variables." );
+            Preconditions.checkArgument(
+                    contributions[ m ].size() == outputLength,
+                    "All contributions must have the same length as the output." );
+            lowest[ m ] = -1;
+            highest[ m ] = -1;
+            long[] words = monomial.elements();
+            int order = 0;
+            for ( int w = 0; w < words.length; ++w ) {
+                for ( long bits = words[ w ]; bits != 0L; bits &= bits - 1 ) {
+                    int variable = ( w << 6 ) + Long.numberOfTrailingZeros( bits );
+                    if ( order++ == 0 ) {
+                        lowest[ m ] = variable;
+                    } else {
+                        highest[ m ] = variable;
+                    }
+                }
+            }
+            Preconditions.checkArgument( order <= 2, "Monomials of a quadratic function must have order at most two." );
+            if ( order == 2 ) {
+                ++partnerOffsets[ lowest[ m ] + 1 ];
+            }
+        }
+        for ( int i = 0; i < variableCount; ++i ) {
+            partnerOffsets[ i + 1 ] += partnerOffsets[ i ];
+        }
+
+        partners = new int[ partnerOffsets[ variableCount ] ];
+        quadraticRows = new long[ partners.length * rowLength ];
+        int[] next = Arrays.copyOf( partnerOffsets, variableCount );
+        for ( int m = 0; m < monomials.length; ++m ) {
+            long[] contribution = contributions[ m ].elements();
+            if ( lowest[ m ] < 0 ) {
+                xorRow( contribution, 0, constant, 0 );
+            } else if ( highest[ m ] < 0 ) {
+                xorRow( contribution, 0, linearRows, lowest[ m ] * rowLength );
+            } else {
+                int slot = next[ lowest[ m ] ]++;
+                partners[ slot ] = highest[ m ];
+                System.arraycopy( contribution, 0, quadraticRows, slot * rowLength, rowLength );
+            }
+        }
+    }
+
+    @Override
+    public BitVector apply( BitVector input ) {
+        Preconditions.checkArgument(
+                input.size() == variableCount,
+                "Input length must match the number of variables in each monomial." );
+        final long[] result = new long[ rowLength ];
+        apply( input.elements(), result );
+        return new BitVector( result, outputLength );
+    }
+
+    @Override
+    public void apply( long[] in, long[] result ) {
+        final int inputWords = ( variableCount + 63 ) >>> 6;
+        Preconditions.checkArgument(
+                in.length >= inputWords,
+                "Input must have enough words to hold the number of variables in each monomial." );
+        Preconditions.checkArgument(
+                result.length >= rowLength,
+                "Output must have enough words to hold the output length of the function." );
+        System.arraycopy( constant, 0, result, 0, rowLength );
+        final long tailMask = ( variableCount & 63 ) == 0 ? -1L : ( 1L << variableCount ) - 1;
+
+        for ( int w = 0; w < inputWords; ++w ) {
+            long word = w == inputWords - 1 ? in[ w ] & tailMask : in[ w ];
+            for ( long bits = word; bits != 0L; bits &= bits - 1 ) {
+                int i = ( w << 6 ) + Long.numberOfTrailingZeros( bits );
+                xorRow( linearRows, i * rowLength, result, 0 );
+                for ( int k = partnerOffsets[ i ]; k < partnerOffsets[ i + 1 ]; ++k ) {
+                    int j = partners[ k ];
+                    if ( ( in[ j >>> 6 ] & ( 1L << j ) ) != 0L ) {
+                        xorRow( quadraticRows, k * rowLength, result, 0 );
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Already specialized, so there is nothing left to do.
+     */
+    @Override
+    public SimplePolynomialFunction optimize() {
+        return this;
+    }
+
+    private void xorRow( long[] src, int srcOffset, long[] dst, int dstOffset ) {
+        for ( int w = 0; w < rowLength; ++w ) {
+            dst[ dstOffset + w ] ^= src[ srcOffset + w ];
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.kryptnostic.multivariate.polynomial;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+import cern.colt.bitvector.BitVector;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.kryptnostic.multivariate.gf2.SimplePolynomialFunction;
+
+/**
+ * Bounded, least recently used cache of the functions obtained by resolving a function against prefixes, for callers
+ * that fix the same leading inputs repeatedly. Resolved functions are never modified by the library, so they are
+ * returned as is rather than copied. Concurrent misses on the same prefix resolve it only once.
+ */
+public final class ResolveCache {
+    private final SimplePolynomialFunction                  function;
+    private final Cache<WordsKey, SimplePolynomialFunction> cache;
+
+    private ResolveCache( SimplePolynomialFunction function, long maximumEntries ) {
+        Preconditions.checkArgument( maximumEntries >= 0, "Maximum number of entries cannot be negative." );
+        this.function = function;
+        this.cache = CacheBuilder.newBuilder().maximumSize( maximumEntries ).recordStats()
+                .<WordsKey, SimplePolynomialFunction> build();
+    }
+
+    /**
+     * @param function to resolve.
+     * @param maximumEntries number of resolved functions retained.
+     * @return a cache retaining at most {@code maximumEntries} resolved functions.
+     */
+    public static ResolveCache withMaximumEntries( SimplePolynomialFunction function, long maximumEntries ) {
+        return new ResolveCache( function, maximumEntries );
+    }
+
+    /**
+     * @param prefix values of the leading inputs of the function.
+     * @return the function resolved against {@code prefix}, from the cache if it has been resolved before.
+     */
+    public SimplePolynomialFunction resolve( final BitVector prefix ) {
+        Preconditions.checkArgument(
+                prefix.size() < function.getInputLength(),
+                "Prefix must be shorter than the input of the function." );
+        try {
+            return cache.get( WordsKey.of( prefix ), new Callable<SimplePolynomialFunction>() {
+                @Override
+                public SimplePolynomialFunction call() {
+                    return function.resolve( prefix );
+                }
+            } );
+        } catch ( ExecutionException | UncheckedExecutionException e ) {
+            throw Throwables.propagate( e.getCause() );
+        }
+    }
+
+    /**
+     * @return the function being resolved.
+     */
+    public SimplePolynomialFunction getFunction() {
+        return function;
+    }
+
+    /**
+     * @return hit, miss, load and eviction counts since the cache was created.
+     */
+    public CacheStats getStats() {
+        return cache.stats();
+    }
+
+    /**
+     * @return approximate number of cached functions.
+     */
+    public long size() {
+        return cache.size();
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+}
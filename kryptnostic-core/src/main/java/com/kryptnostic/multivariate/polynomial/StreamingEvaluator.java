@@ -0,0 +1,197 @@
+package com.kryptnostic.multivariate.polynomial;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import cern.colt.bitvector.BitVector;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
+import com.google.common.collect.UnmodifiableIterator;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.kryptnostic.multivariate.gf2.CompoundPolynomialFunction;
+import com.kryptnostic.multivariate.gf2.PolynomialFunction;
+import com.kryptnostic.multivariate.gf2.SimplePolynomialFunction;
+
+/**
+ * Evaluates a function over a stream of inputs. Inputs are pulled from the source in batches, each batch is evaluated
+ * as a single task on an executor, and outputs are handed back in input order. At most a fixed number of batches are
+ * evaluated ahead of the consumer, so memory use stays bounded however long the stream is.
+ *
+ * Batches of simple functions are evaluated with {@link SimplePolynomialFunction#applyBatch(BitVector[])}. Batches of
+ * compound functions are evaluated one input at a time on the task's thread rather than pipelined, because batches
+ * already run concurrently and a pipeline per batch would start a thread per stage on top of them.
+ */
+public final class StreamingEvaluator {
+    public static final int                DEFAULT_BATCH_SIZE    = 256;
+    public static final int                DEFAULT_MAX_IN_FLIGHT = 2 * OptimizedPolynomialFunctionGF2.CONCURRENCY_LEVEL;
+
+    private final PolynomialFunction       function;
+    private final ListeningExecutorService executor;
+    private final int                      batchSize;
+    private final int                      maxBatchesInFlight;
+
+    /**
+     * Receives outputs from {@link StreamingEvaluator#applyAll(Iterator, OutputSink)}.
+     */
+    public interface OutputSink {
+        /**
+         * @param index position of the input in the stream, starting at zero.
+         * @param output of the function on that input.
+         */
+        void accept( long index, BitVector output );
+    }
+
+    /**
+     * Creates an evaluator with the default batch size and in flight limit, running on the shared executor of
+     * {@link OptimizedPolynomialFunctionGF2}.
+     */
+    public StreamingEvaluator( PolynomialFunction function ) {
+        this(
+                function,
+                OptimizedPolynomialFunctionGF2.executor,
+                DEFAULT_BATCH_SIZE,
+                DEFAULT_MAX_IN_FLIGHT );
+    }
+
+    /**
+     * @param function to evaluate.
+     * @param executor on which batches are evaluated.
+     * @param batchSize number of inputs evaluated by each task.
+     * @param maxBatchesInFlight number of batches that may be queued or evaluating ahead of the consumer.
+     */
+    public StreamingEvaluator(
+            PolynomialFunction function,
+            ListeningExecutorService executor,
+            int batchSize,
+            int maxBatchesInFlight ) {
+        Preconditions.checkArgument( batchSize > 0, "Batch size must be positive." );
+        Preconditions.checkArgument( maxBatchesInFlight > 0, "At least one batch must be allowed in flight." );
+        this.function = function;
+        this.executor = executor;
+        this.batchSize = batchSize;
+        this.maxBatchesInFlight = maxBatchesInFlight;
+    }
+
+    /**
+     * Lazily evaluates the function on every input of the stream. Inputs are only pulled from {@code inputs} as
+     * outputs are consumed, keeping at most {@code maxBatchesInFlight} batches ahead of the consumer. A failure while
+     * evaluating an input is rethrown from {@code next()} when the consumer reaches the output of its batch.
+     *
+     * The returned iterator must be used from a single thread.
+     *
+     * @param inputs vectors of the function's input length.
+     * @return outputs of the function, in the order of the inputs.
+     */
+    public Iterator<BitVector> applyAll( final Iterator<BitVector> inputs ) {
+        return new UnmodifiableIterator<BitVector>() {
+            private final Deque<Future<BitVector[]>> pending = new ArrayDeque<Future<BitVector[]>>();
+            private BitVector[]                      current = new BitVector[ 0 ];
+            private int                              position;
+
+            @Override
+            public boolean hasNext() {
+                if ( position < current.length ) {
+                    return true;
+                }
+                fill();
+                while ( !pending.isEmpty() ) {
+                    current = await( pending.removeFirst() );
+                    position = 0;
+                    fill();
+                    if ( current.length > 0 ) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+
+            @Override
+            public BitVector next() {
+                if ( !hasNext() ) {
+                    throw new NoSuchElementException();
+                }
+                BitVector output = current[ position ];
+                current[ position++ ] = null;
+                return output;
+            }
+
+            private void fill() {
+                while ( pending.size() < maxBatchesInFlight && inputs.hasNext() ) {
+                    pending.addLast( submit( nextBatch( inputs ) ) );
+                }
+            }
+        };
+    }
+
+    /**
+     * Evaluates the function on every input of the stream, handing each output to {@code sink} on the calling thread in
+     * input order.
+     *
+     * @param inputs vectors of the function's input length.
+     * @param sink receiving each output.
+     * @return number of inputs evaluated.
+     */
+    public long applyAll( Iterator<BitVector> inputs, OutputSink sink ) {
+        long index = 0;
+        for ( Iterator<BitVector> outputs = applyAll( inputs ); outputs.hasNext(); ++index ) {
+            sink.accept( index, outputs.next() );
+        }
+        return index;
+    }
+
+    private BitVector[] nextBatch( Iterator<BitVector> inputs ) {
+        BitVector[] batch = new BitVector[ batchSize ];
+        int count = 0;
+        while ( count < batchSize && inputs.hasNext() ) {
+            batch[ count++ ] = inputs.next();
+        }
+        return count == batchSize ? batch : Arrays.copyOf( batch, count );
+    }
+
+    private Future<BitVector[]> submit( final BitVector[] batch ) {
+        return executor.submit( new Callable<BitVector[]>() {
+            @Override
+            public BitVector[] call() {
+                return evaluate( batch );
+            }
+        } );
+    }
+
+    private BitVector[] evaluate( BitVector[] batch ) {
+        if ( function instanceof SimplePolynomialFunction ) {
+            return ( (SimplePolynomialFunction) function ).applyBatch( batch );
+        }
+        if ( function instanceof CompoundPolynomialFunction ) {
+            CompoundPolynomialFunction compound = (CompoundPolynomialFunction) function;
+            BitVector[] outputs = new BitVector[ batch.length ];
+            for ( int i = 0; i < batch.length; ++i ) {
+                outputs[ i ] = new BitVector( compound.getOutputLength() );
+                compound.applyInto( batch[ i ], outputs[ i ] );
+            }
+            return outputs;
+        }
+        BitVector[] outputs = new BitVector[ batch.length ];
+        for ( int i = 0; i < batch.length; ++i ) {
+            outputs[ i ] = function.apply( batch[ i ] );
+        }
+        return outputs;
+    }
+
+    private static BitVector[] await( Future<BitVector[]> future ) {
+        try {
+            return future.get();
+        } catch ( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException( "Interrupted while waiting for a batch to be evaluated.", e );
+        } catch ( ExecutionException e ) {
+            throw Throwables.propagate( e.getCause() );
+        }
+    }
+}
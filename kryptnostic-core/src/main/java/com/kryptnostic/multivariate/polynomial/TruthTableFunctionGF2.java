@@ -0,0 +1,97 @@
+package com.kryptnostic.multivariate.polynomial;
+
+import cern.colt.bitvector.BitVector;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.base.Preconditions;
+import com.kryptnostic.multivariate.gf2.Monomial;
+import com.kryptnostic.multivariate.gf2.SimplePolynomialFunction;
+
+/**
+ * Polynomial function over GF(2) with few enough inputs to tabulate its output on every input, so that evaluation is a
+ * single row copy regardless of the number or order of its monomials. The table is built with
+ * {@link MobiusTransform#toTruthTable(SimplePolynomialFunction)}.
+ *
+ * Instances are produced by {@link BasePolynomialFunction#optimize()} for functions whose table fits in
+ * {@link #MAX_INPUT_LENGTH} input bits and the memory budget set by the {@value #BUDGET_PROPERTY} system property,
+ * which defaults to {@value #DEFAULT_BUDGET} bytes. The monomials and contributions are retained, so all algebraic
+ * operations behave exactly as they do for {@link OptimizedPolynomialFunctionGF2}.
+ */
+public class TruthTableFunctionGF2 extends OptimizedPolynomialFunctionGF2 {
+    private static final long  serialVersionUID = 2809141502553735281L;
+
+    public static final int    MAX_INPUT_LENGTH = 22;
+    public static final String BUDGET_PROPERTY  = "kryptnostic.optimize.truthTableBytes";
+    public static final long   DEFAULT_BUDGET   = 32L << 20;
+
+    private final int          rowLength;
+    private final long         indexMask;
+    private final long[]       table;
+
+    @JsonCreator
+    public TruthTableFunctionGF2(
+            @JsonProperty( INPUT_LENGTH_PROPERTY ) int inputLength,
+            @JsonProperty( OUTPUT_LENGTH_PROPERTY ) int outputLength,
+            @JsonProperty( MONOMIALS_PROPERTY ) Monomial[] monomials,
+            @JsonProperty( CONTRIBUTIONS_PROPERTY ) BitVector[] contributions ) {
+        super( inputLength, outputLength, monomials, contributions );
+        Preconditions.checkArgument( inputLength <= MAX_INPUT_LENGTH, "Function has too many inputs to tabulate." );
+        rowLength = ( outputLength + 63 ) >>> 6;
+        indexMask = ( 1L << inputLength ) - 1;
+        table = MobiusTransform.toTruthTable( this );
+    }
+
+    /**
+     * @param inputLength number of input bits of a function.
+     * @param outputLength number of output bits of a function.
+     * @return true if the truth table of such a function is within the input length limit and the memory budget.
+     */
+    public static boolean fits( int inputLength, int outputLength ) {
+        if ( inputLength > MAX_INPUT_LENGTH ) {
+            return false;
+        }
+        long bytes = ( (long) ( ( outputLength + 63 ) >>> 6 ) << inputLength ) << 3;
+        return bytes <= Long.getLong( BUDGET_PROPERTY, DEFAULT_BUDGET );
+    }
+
+    @Override
+    public BitVector apply( BitVector input ) {
+        Preconditions.checkArgument(
+                input.size() == inputLength,
+                "Input length must match the input length of the function." );
+        final long[] result = new long[ rowLength ];
+        apply( input.elements(), result );
+        return new BitVector( result, outputLength );
+    }
+
+    @Override
+    public void apply( long[] in, long[] result ) {
+        Preconditions.checkArgument(
+                result.length >= rowLength,
+                "Output must have enough words to hold the output length of the function." );
+        System.arraycopy( table, rowOffset( in ), result, 0, rowLength );
+    }
+
+    @Override
+    protected long[][] evaluateBatch( long[][] inputs ) {
+        long[][] results = new long[ inputs.length ][];
+        for ( int i = 0; i < inputs.length; ++i ) {
+            results[ i ] = new long[ rowLength ];
+            System.arraycopy( table, rowOffset( inputs[ i ] ), results[ i ], 0, rowLength );
+        }
+        return results;
+    }
+
+    /**
+     * Already specialized, so there is nothing left to do.
+     */
+    @Override
+    public SimplePolynomialFunction optimize() {
+        return this;
+    }
+
+    private int rowOffset( long[] in ) {
+        return inputLength == 0 ? 0 : (int) ( in[ 0 ] & indexMask ) * rowLength;
+    }
+}
@@ -0,0 +1,39 @@
+package com.kryptnostic.multivariate.polynomial;
+
+/**
+ * Per thread scratch buffers for word level evaluation. Buffers only grow, so once every buffer has reached the size
+ * needed by its caller, handing them out performs no allocation.
+ *
+ * A buffer is only valid until the next request for the same index on the same thread, so callers must not hold on to
+ * a buffer across a call that may use the same scratch.
+ */
+final class WordScratch {
+    private final int                   count;
+    private final ThreadLocal<long[][]> buffers = new ThreadLocal<long[][]>();
+
+    /**
+     * @param count number of distinct buffers handed out to each thread.
+     */
+    WordScratch( int count ) {
+        this.count = count;
+    }
+
+    /**
+     * @param index of the buffer.
+     * @param words minimum number of words in the buffer.
+     * @return this thread's buffer at {@code index}, with unspecified contents.
+     */
+    long[] get( int index, int words ) {
+        long[][] threadBuffers = buffers.get();
+        if ( threadBuffers == null ) {
+            threadBuffers = new long[ count ][];
+            buffers.set( threadBuffers );
+        }
+        long[] buffer = threadBuffers[ index ];
+        if ( buffer == null || buffer.length < words ) {
+            buffer = new long[ words ];
+            threadBuffers[ index ] = buffer;
+        }
+        return buffer;
+    }
+}
@@ -0,0 +1,44 @@
+package com.kryptnostic.multivariate.polynomial;
+
+import java.util.Arrays;
+
+import cern.colt.bitvector.BitVector;
+
+/**
+ * Cache key holding a copy of the words of a vector, with value semantics. Bits beyond the length of the vector are
+ * cleared when the key is built, so the words alone identify the vector.
+ */
+final class WordsKey {
+    private final long[] words;
+    private final int    hash;
+
+    private WordsKey( long[] words ) {
+        this.words = words;
+        this.hash = Arrays.hashCode( words );
+    }
+
+    static WordsKey of( BitVector v ) {
+        long[] words = Arrays.copyOf( v.elements(), ( v.size() + 63 ) >>> 6 );
+        if ( ( v.size() & 63 ) != 0 ) {
+            words[ words.length - 1 ] &= ( 1L << v.size() ) - 1;
+        }
+        return new WordsKey( words );
+    }
+
+    /**
+     * @return approximate memory used by the words of the key, in bytes.
+     */
+    int bytes() {
+        return words.length << 3;
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public boolean equals( Object obj ) {
+        return obj instanceof WordsKey && Arrays.equals( words, ( (WordsKey) obj ).words );
+    }
+}
@@ -1,7 +1,80 @@
 package com.kryptnostic.bitwise;
 
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.kryptnostic.linear.BitUtils;
 
 public class BitUtilsTests {
+    private static final Random r = new Random( 0 );
+
     //TODO: Add test for long parity.
-}
 
+    @Test
+    public void testTranspose() {
+        long[] block = new long[ 64 ];
+        for ( int i = 0; i < block.length; ++i ) {
+            block[ i ] = r.nextLong();
+        }
+        long[] transposed = block.clone();
+        BitUtils.transpose( transposed, 0 );
+
+        for ( int row = 0; row < 64; ++row ) {
+            for ( int col = 0; col < 64; ++col ) {
+                Assert.assertEquals( ( block[ row ] >>> col ) & 1L, ( transposed[ col ] >>> row ) & 1L );
+            }
+        }
+
+        BitUtils.transpose( transposed, 0 );
+        Assert.assertArrayEquals( block, transposed );
+    }
+
+    @Test
+    public void testSliceAndUnslice() {
+        int words = 3;
+        int count = 37;
+        long[][] vectors = new long[ count ][];
+        for ( int i = 0; i < count; ++i ) {
+            vectors[ i ] = new long[] { r.nextLong(), r.nextLong(), r.nextLong() };
+        }
+
+        long[] sliced = new long[ words << 6 ];
+        BitUtils.slice( vectors, 0, count, words, sliced );
+        for ( int bit = 0; bit < ( words << 6 ); ++bit ) {
+            for ( int lane = 0; lane < 64; ++lane ) {
+                long expected = lane < count ? ( vectors[ lane ][ bit >>> 6 ] >>> ( bit & 63 ) ) & 1L : 0L;
+                Assert.assertEquals( expected, ( sliced[ bit ] >>> lane ) & 1L );
+            }
+        }
+
+        long[][] recovered = new long[ count ][ words ];
+        BitUtils.unslice( sliced, words, recovered, 0, count );
+        for ( int i = 0; i < count; ++i ) {
+            Assert.assertArrayEquals( vectors[ i ], recovered[ i ] );
+        }
+    }
+
+    @Test
+    public void testCopyBits() {
+        for ( int offset : new int[] { 0, 1, 63, 64, 100 } ) {
+            for ( int length : new int[] { 1, 63, 64, 65, 130 } ) {
+                long[] src = new long[] { r.nextLong(), r.nextLong(), r.nextLong() };
+                long[] dst = new long[] { r.nextLong(), r.nextLong(), r.nextLong(), r.nextLong(), r.nextLong() };
+                long[] original = dst.clone();
+                BitUtils.copyBits( src, length, dst, offset );
+                for ( int bit = 0; bit < ( dst.length << 6 ); ++bit ) {
+                    long expected = bit >= offset && bit < offset + length ? bitOf( src, bit - offset ) : bitOf(
+                            original,
+                            bit );
+                    Assert.assertEquals( expected, bitOf( dst, bit ) );
+                }
+            }
+        }
+    }
+
+    private static long bitOf( long[] words, int bit ) {
+        return ( words[ bit >>> 6 ] >>> ( bit & 63 ) ) & 1L;
+    }
+}
@@ -1,5 +1,8 @@
 package com.kryptnostic.crypto;
 
+import java.util.Arrays;
+import java.util.Random;
+
 import org.apache.commons.lang3.StringUtils;
 import org.junit.Assert;
 import org.junit.BeforeClass;
@@ -67,6 +70,22 @@ public class KeyTests {
         Assert.assertTrue(StringUtils.startsWith(decryptedPlaintext, plaintext));
     }
 
+    @Test
+    public void testEncryptDecryptManyBlocks() {
+        byte[] plaintextBytes = new byte[ ( PublicKey.MIN_BATCH_BLOCKS * 3 + 5 ) * ( pubKey.getLongsPerBlock() << 3 ) ];
+        new Random( 0 ).nextBytes( plaintextBytes );
+        byte[] ciphertext = pubKey.encrypt( plaintextBytes );
+        byte[] decryptedBytes = privKey.decrypt( ciphertext );
+        Assert.assertArrayEquals( plaintextBytes, Arrays.copyOf( decryptedBytes, plaintextBytes.length ) );
+    }
+
+    @Test( expected = IllegalArgumentException.class )
+    public void testDecryptRejectsPartialBlock() {
+        int blockBytes = pubKey.getLongsPerBlock() << 3;
+        byte[] ciphertext = pubKey.encrypt( new byte[ PublicKey.MIN_BATCH_BLOCKS * blockBytes ] );
+        privKey.decrypt( Arrays.copyOf( ciphertext, ciphertext.length - 1 ) );
+    }
+
     @Test
     public void testEncryptDecryptWithEnvelope() {
         String plaintext = "hey!1234hey!1234hey!1234hey!1";
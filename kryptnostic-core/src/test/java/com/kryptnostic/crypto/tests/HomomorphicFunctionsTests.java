@@ -10,6 +10,8 @@ import com.kryptnostic.crypto.PrivateKey;
 import com.kryptnostic.crypto.PublicKey;
 import com.kryptnostic.crypto.fhe.HomomorphicFunctions;
 import com.kryptnostic.multivariate.gf2.SimplePolynomialFunction;
+import com.kryptnostic.multivariate.polynomial.FunctionBundle;
+import com.kryptnostic.multivariate.util.FunctionUtils;
 import com.kryptnostic.multivariate.util.SimplePolynomialOperators;
 
 
@@ -53,6 +55,29 @@ public class HomomorphicFunctionsTests {
 		testBinaryHomomorphicFunction(binaryXor, homomorphicBinaryXor);
 	}
 	
+	// TODO Enable with the binary h-function tests once concatenating parameterized decryptors works.
+//	@Test
+	public void homomorphicHalfAdderBundleTest() {
+		FunctionBundle halfAdder = HomomorphicFunctions.HomomorphicHalfAdderBundle( LENGTH, privKey );
+		Assert.assertEquals( 3, halfAdder.size() );
+		Assert.assertEquals( encryptor.getOutputLength() << 1, halfAdder.getInputLength() );
+
+		BitVector[] inputs = new BitVector[ 10 ];
+		for ( int i = 0; i < inputs.length; ++i ) {
+			inputs[ i ] = FunctionUtils.concatenate(
+					encryptor.apply( BitVectors.randomVector( encryptor.getInputLength() ) ),
+					encryptor.apply( BitVectors.randomVector( encryptor.getInputLength() ) ) );
+		}
+		BitVector[][] batch = halfAdder.applyBatch( inputs );
+		for ( int i = 0; i < inputs.length; ++i ) {
+			BitVector[] outputs = halfAdder.apply( inputs[ i ] );
+			Assert.assertArrayEquals( outputs, batch[ i ] );
+			for ( BitVector output : outputs ) {
+				Assert.assertEquals( decryptor.getInputLength(), output.size() );
+			}
+		}
+	}
+
 	private void testHomomorphicFunction(SimplePolynomialFunction function, 
 			SimplePolynomialFunction homomorphicFunction) {
 		
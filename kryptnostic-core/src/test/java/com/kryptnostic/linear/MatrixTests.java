@@ -278,5 +278,17 @@ public class MatrixTests {
             }
         }
     }
-    
+
+    @Test
+    public void testFourRussiansProductMatchesMultiply() {
+        for ( int rows : new int[] { 1, 8, 63, 130, 256 } ) {
+            EnhancedBitMatrix m = EnhancedBitMatrix.randomMatrix( rows, 100 );
+            FourRussiansMatrix table = new FourRussiansMatrix( m.getRows(), 100 );
+            EnhancedBitMatrix mt = m.transpose();
+            for ( int i = 0; i < 50; ++i ) {
+                BitVector v = BitVectors.randomVector( rows );
+                Assert.assertEquals( mt.multiply( v ), table.multiply( v ) );
+            }
+        }
+    }
 }
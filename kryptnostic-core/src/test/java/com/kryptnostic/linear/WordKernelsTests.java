@@ -0,0 +1,49 @@
+package com.kryptnostic.linear;
+
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class WordKernelsTests {
+    private static final Random r = new Random();
+
+    @Test
+    public void testSelectedKernelsMatchDefinitions() {
+        WordKernels kernels = Kernels.get();
+        for ( int length = 0; length < 20; ++length ) {
+            long[] a = randomWords( length + 2 );
+            long[] b = randomWords( length + 2 );
+
+            long and = 0L;
+            for ( int w = 0; w < length; ++w ) {
+                and ^= a[ w ] & b[ w ];
+            }
+            Assert.assertEquals( BitUtils.parity( and ) == 1L, kernels.andParity( a, b, length ) );
+
+            long[] xored = b.clone();
+            kernels.xor( a, 2, xored, 1, length );
+            for ( int w = 0; w < xored.length; ++w ) {
+                long expected = w >= 1 && w < length + 1 ? b[ w ] ^ a[ w + 1 ] : b[ w ];
+                Assert.assertEquals( expected, xored[ w ] );
+            }
+        }
+
+        long[] block = randomWords( 66 );
+        long[] transposed = block.clone();
+        kernels.transpose( transposed, 2 );
+        for ( int row = 0; row < 64; ++row ) {
+            for ( int col = 0; col < 64; ++col ) {
+                Assert.assertEquals( ( block[ 2 + row ] >>> col ) & 1L, ( transposed[ 2 + col ] >>> row ) & 1L );
+            }
+        }
+    }
+
+    private static long[] randomWords( int length ) {
+        long[] words = new long[ length ];
+        for ( int w = 0; w < length; ++w ) {
+            words[ w ] = r.nextLong();
+        }
+        return words;
+    }
+}
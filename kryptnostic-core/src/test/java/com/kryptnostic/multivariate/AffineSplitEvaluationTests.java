@@ -0,0 +1,53 @@
+package com.kryptnostic.multivariate;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import cern.colt.bitvector.BitVector;
+
+import com.kryptnostic.bitwise.BitVectors;
+import com.kryptnostic.linear.EnhancedBitMatrix;
+import com.kryptnostic.multivariate.gf2.Monomial;
+import com.kryptnostic.multivariate.gf2.SimplePolynomialFunction;
+import com.kryptnostic.multivariate.polynomial.OptimizedPolynomialFunctionGF2;
+import com.kryptnostic.multivariate.util.SimplePolynomialFunctions;
+
+public class AffineSplitEvaluationTests {
+    @Test
+    public void testAffinePlusNonlinearMatchesDirectEvaluation() {
+        SimplePolynomialFunction linear = EnhancedBitMatrix.randomMatrix( 128, 256 ).multiply(
+                SimplePolynomialFunctions.identity( 256 ) );
+        SimplePolynomialFunction f = SimplePolynomialFunctions.randomFunction( 256, 128, 64, 4 ).xor( linear ).xor(
+                SimplePolynomialFunctions.constant( 256, BitVectors.randomVector( 128 ) ) );
+        verify( f );
+        verify( new OptimizedPolynomialFunctionGF2(
+                f.getInputLength(),
+                f.getOutputLength(),
+                f.getMonomials(),
+                f.getContributions() ) );
+        verify( f.deoptimize() );
+    }
+
+    @Test
+    public void testPurelyAffineFunctionMatchesDirectEvaluation() {
+        SimplePolynomialFunction f = EnhancedBitMatrix.randomMatrix( 100, 200 ).multiply(
+                SimplePolynomialFunctions.identity( 200 ) );
+        verify( f );
+        verify( f.deoptimize() );
+    }
+
+    private static void verify( SimplePolynomialFunction f ) {
+        Monomial[] monomials = f.getMonomials();
+        BitVector[] contributions = f.getContributions();
+        for ( int i = 0; i < 100; ++i ) {
+            BitVector input = BitVectors.randomVector( f.getInputLength() );
+            BitVector expected = new BitVector( f.getOutputLength() );
+            for ( int m = 0; m < monomials.length; ++m ) {
+                if ( monomials[ m ].eval( input ) ) {
+                    expected.xor( contributions[ m ] );
+                }
+            }
+            Assert.assertEquals( expected, f.apply( input ) );
+        }
+    }
+}
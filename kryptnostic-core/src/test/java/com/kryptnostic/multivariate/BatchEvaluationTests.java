@@ -0,0 +1,54 @@
+package com.kryptnostic.multivariate;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import cern.colt.bitvector.BitVector;
+
+import com.kryptnostic.bitwise.BitVectors;
+import com.kryptnostic.multivariate.gf2.SimplePolynomialFunction;
+import com.kryptnostic.multivariate.util.ParameterizedPolynomialFunctions;
+import com.kryptnostic.multivariate.util.SimplePolynomialFunctions;
+
+public class BatchEvaluationTests {
+    private static final int INPUT_COUNT = 150;
+
+    @Test
+    public void testApplyBatchMatchesApply() {
+        verifyBatch( SimplePolynomialFunctions.randomFunction( 200, 70, 32, 4 ) );
+        verifyBatch( SimplePolynomialFunctions.denseRandomMultivariateQuadratic( 128, 128 ) );
+        verifyBatch( SimplePolynomialFunctions.identity( 64 ) );
+    }
+
+    @Test
+    public void testApplyBatchOfParameterizedFunction() {
+        verifyBatch( ParameterizedPolynomialFunctions.randomParameterizedFunction( 128, 128 ) );
+    }
+
+    @Test
+    public void testApplyBatchOnWords() {
+        SimplePolynomialFunction f = SimplePolynomialFunctions.randomFunction( 128, 192 );
+        long[][] inputs = new long[ INPUT_COUNT ][];
+        for ( int i = 0; i < inputs.length; ++i ) {
+            inputs[ i ] = BitVectors.randomVector( 128 ).elements();
+        }
+
+        long[][] outputs = f.applyBatch( inputs );
+        for ( int i = 0; i < inputs.length; ++i ) {
+            Assert.assertArrayEquals( f.apply( new BitVector( inputs[ i ], 128 ) ).elements(), outputs[ i ] );
+        }
+    }
+
+    private static void verifyBatch( SimplePolynomialFunction f ) {
+        BitVector[] inputs = new BitVector[ INPUT_COUNT ];
+        for ( int i = 0; i < inputs.length; ++i ) {
+            inputs[ i ] = BitVectors.randomVector( f.getInputLength() );
+        }
+
+        BitVector[] outputs = f.applyBatch( inputs );
+        Assert.assertEquals( inputs.length, outputs.length );
+        for ( int i = 0; i < inputs.length; ++i ) {
+            Assert.assertEquals( f.apply( inputs[ i ] ), outputs[ i ] );
+        }
+    }
+}
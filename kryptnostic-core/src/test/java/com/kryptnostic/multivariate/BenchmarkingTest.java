@@ -9,10 +9,14 @@ import cern.colt.bitvector.BitVector;
 
 import com.google.common.base.Stopwatch;
 import com.kryptnostic.bitwise.BitVectors;
+import com.kryptnostic.multivariate.compilation.CompiledPolynomialFunction;
+import com.kryptnostic.multivariate.compilation.PolynomialFunctionCompiler;
 import com.kryptnostic.multivariate.gf2.SimplePolynomialFunction;
 import com.kryptnostic.multivariate.util.SimplePolynomialFunctions;
 
 public class BenchmarkingTest {
+    private static final String BASE_LABEL = "Base (variable index, evaluation plan or degree buckets)";
+
     @Test
     @Ignore
     public void benchmark() {
@@ -31,4 +35,73 @@ public class BenchmarkingTest {
         System.out.println("Total millis: elapsed: " + elapsed + " ms");
         System.out.println("Mean millis: elapsed: " + ((double)elapsed)/iterations + " ms");
     }
+
+    @Test
+    @Ignore
+    public void benchmarkQuadraticEvaluators() {
+        SimplePolynomialFunction base = SimplePolynomialFunctions.denseRandomMultivariateQuadratic( 256, 256 )
+                .deoptimize();
+        BitVector [] inputs = randomInputs( 2000, 256 );
+        time( BASE_LABEL, base, inputs, false );
+        time( "Quadratic form", base.optimize(), inputs, false );
+        time( "Quadratic form, batched", base.optimize(), inputs, true );
+    }
+
+    @Test
+    @Ignore
+    public void benchmarkHigherOrderEvaluators() {
+        SimplePolynomialFunction base = SimplePolynomialFunctions.randomFunction( 512, 256, 64, 5 ).deoptimize();
+        CompiledPolynomialFunction compiled = PolynomialFunctionCompiler.compile( base );
+        BitVector [] inputs = randomInputs( 2000, 512 );
+        time( BASE_LABEL, base, inputs, false );
+        time( "Optimized (parallel above threshold)", base.optimize(), inputs, false );
+        time( "Compiled", compiled, inputs, false );
+        System.out.println( "Compilation time: " + compiled.getCompilationTime( TimeUnit.MILLISECONDS ) + " ms" );
+    }
+
+    @Test
+    @Ignore
+    public void benchmarkSparseInputs() {
+        SimplePolynomialFunction optimized = SimplePolynomialFunctions.randomFunction( 512, 256, 64, 5 ).optimize();
+        BitVector [] sparse = new BitVector[ 2000 ];
+        for( int i = 0 ; i < sparse.length ; ++i ) {
+            sparse[ i ] = new BitVector( 512 );
+            sparse[ i ].set( i % 512 );
+            sparse[ i ].set( ( i * 7 ) % 512 );
+        }
+        time( "Dense inputs", optimized, randomInputs( 2000, 512 ), false );
+        time( "Sparse inputs", optimized, sparse, false );
+    }
+
+    private static BitVector[] randomInputs( int count, int length ) {
+        BitVector [] inputs = new BitVector[ count ];
+        for( int i = 0 ; i < inputs.length ; ++i ) {
+            inputs[ i ] = BitVectors.randomVector( length );
+        }
+        return inputs;
+    }
+
+    /*
+     * Evaluates f on every input once to warm it up, then prints the mean time per input over five timed rounds.
+     */
+    private static void time( String label, SimplePolynomialFunction f, BitVector[] inputs, boolean batch ) {
+        int rounds = 5;
+        evaluate( f, inputs, batch );
+        Stopwatch w = Stopwatch.createStarted();
+        for( int r = 0 ; r < rounds ; ++r ) {
+            evaluate( f, inputs, batch );
+        }
+        long elapsed = w.elapsed( TimeUnit.MICROSECONDS );
+        System.out.println( label + " mean: " + ((double)elapsed)/( inputs.length * rounds ) + " us" );
+    }
+
+    private static void evaluate( SimplePolynomialFunction f, BitVector[] inputs, boolean batch ) {
+        if ( batch ) {
+            f.applyBatch( inputs );
+        } else {
+            for( int i = 0 ; i < inputs.length ; ++i ) {
+                f.apply( inputs[ i ] );
+            }
+        }
+    }
 }
@@ -0,0 +1,90 @@
+package com.kryptnostic.multivariate;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import cern.colt.bitvector.BitVector;
+
+import com.google.common.collect.Lists;
+import com.kryptnostic.bitwise.BitVectors;
+import com.kryptnostic.multivariate.gf2.SimplePolynomialFunction;
+import com.kryptnostic.multivariate.polynomial.CachingPolynomialFunction;
+import com.kryptnostic.multivariate.util.SimplePolynomialFunctions;
+
+public class CachingPolynomialFunctionTests {
+    @Test
+    public void testRepeatedInputsHitTheCache() {
+        SimplePolynomialFunction f = SimplePolynomialFunctions.randomFunction( 128, 128 );
+        CachingPolynomialFunction cached = CachingPolynomialFunction.withMaximumEntries( f, 16 );
+        BitVector zero = new BitVector( 128 );
+        BitVector input = BitVectors.randomVector( 128 );
+
+        for ( int i = 0; i < 10; ++i ) {
+            Assert.assertEquals( f.apply( zero ), cached.apply( zero ) );
+            Assert.assertEquals( f.apply( input ), cached.apply( input ) );
+        }
+        Assert.assertEquals( 2, cached.getStats().missCount() );
+        Assert.assertEquals( 18, cached.getStats().hitCount() );
+
+        // Modifying a returned output must not corrupt the cache.
+        cached.apply( input ).not();
+        Assert.assertEquals( f.apply( input ), cached.apply( input ) );
+    }
+
+    @Test
+    public void testEntriesAreEvictedBeyondTheBound() {
+        SimplePolynomialFunction f = SimplePolynomialFunctions.randomFunction( 64, 64 );
+        CachingPolynomialFunction bySize = CachingPolynomialFunction.withMaximumEntries( f, 8 );
+        CachingPolynomialFunction byBytes = CachingPolynomialFunction.withMaximumBytes( f, 4096 );
+        for ( int i = 0; i < 200; ++i ) {
+            BitVector input = BitVectors.randomVector( 64 );
+            Assert.assertEquals( f.apply( input ), bySize.apply( input ) );
+            Assert.assertEquals( f.apply( input ), byBytes.apply( input ) );
+        }
+        Assert.assertTrue( bySize.size() <= 8 );
+        Assert.assertTrue( bySize.getStats().evictionCount() >= 192 );
+        Assert.assertTrue( byBytes.size() < 200 );
+        Assert.assertTrue( byBytes.getStats().evictionCount() > 0 );
+    }
+
+    @Test
+    public void testConcurrentUse() throws Exception {
+        final SimplePolynomialFunction f = SimplePolynomialFunctions.randomFunction( 128, 128 );
+        final CachingPolynomialFunction cached = CachingPolynomialFunction.withMaximumEntries( f, 1024 );
+        final List<BitVector> inputs = Lists.newArrayList();
+        for ( int i = 0; i < 16; ++i ) {
+            inputs.add( BitVectors.randomVector( 128 ) );
+        }
+        ExecutorService executor = Executors.newFixedThreadPool( 4 );
+        try {
+            List<Future<Boolean>> results = Lists.newArrayList();
+            for ( int t = 0; t < 4; ++t ) {
+                results.add( executor.submit( new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() {
+                        for ( int i = 0; i < 1000; ++i ) {
+                            BitVector input = inputs.get( i % inputs.size() );
+                            if ( !f.apply( input ).equals( cached.apply( input ) ) ) {
+                                return false;
+                            }
+                        }
+                        return true;
+                    }
+                } ) );
+            }
+            for ( Future<Boolean> result : results ) {
+                Assert.assertTrue( result.get() );
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        // Threads that miss while another thread is evaluating the same input wait for it instead of evaluating again.
+        Assert.assertEquals( inputs.size(), cached.getStats().loadSuccessCount() );
+    }
+}
@@ -0,0 +1,114 @@
+package com.kryptnostic.multivariate;
+
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import cern.colt.bitvector.BitVector;
+
+import com.google.common.collect.Lists;
+import com.kryptnostic.bitwise.BitVectors;
+import com.kryptnostic.multivariate.gf2.PolynomialFunction;
+import com.kryptnostic.multivariate.gf2.SimplePolynomialFunction;
+import com.kryptnostic.multivariate.polynomial.PreparedInner;
+import com.kryptnostic.multivariate.polynomial.StreamingEvaluator;
+import com.kryptnostic.multivariate.util.FunctionUtils;
+import com.kryptnostic.multivariate.util.SimplePolynomialFunctions;
+
+public class ComposeTests {
+    @Test
+    public void testHighOrderComposeMatchesSequentialEvaluation() {
+        SimplePolynomialFunction outer = SimplePolynomialFunctions.randomFunction( 32, 32, 50, 3 );
+        SimplePolynomialFunction inner = SimplePolynomialFunctions.randomFunction( 32, 32, 10, 2 );
+        // The optimized function expands outer monomials on the shared executor, the base function on this thread.
+        verify( outer, inner );
+        verify( outer.deoptimize(), inner );
+    }
+
+    @Test
+    public void testQuadraticComposeMatchesSequentialEvaluation() {
+        SimplePolynomialFunction outer = SimplePolynomialFunctions.denseRandomMultivariateQuadratic( 64, 40 ).xor(
+                SimplePolynomialFunctions.constant( 64, BitVectors.randomVector( 40 ) ) );
+        SimplePolynomialFunction inner = SimplePolynomialFunctions.randomFunction( 48, 64, 40, 1 ).xor(
+                SimplePolynomialFunctions.constant( 48, BitVectors.randomVector( 64 ) ) );
+        Assert.assertEquals( 2, outer.getMaximumMonomialOrder() );
+        Assert.assertEquals( 1, inner.getMaximumMonomialOrder() );
+        // The optimized function accumulates buckets on the shared executor, the base function on this thread.
+        verify( outer, inner );
+        verify( outer.deoptimize(), inner );
+    }
+
+    @Test
+    public void testPreparedInnerIsReusable() {
+        SimplePolynomialFunction inner = SimplePolynomialFunctions.randomFunction( 32, 32, 10, 2 );
+        SimplePolynomialFunction affine = SimplePolynomialFunctions.randomFunction( 24, 32, 20, 1 );
+        PreparedInner prepared = new PreparedInner( inner );
+        PreparedInner preparedAffine = new PreparedInner( affine );
+        for ( int i = 0; i < 3; ++i ) {
+            SimplePolynomialFunction cubic = SimplePolynomialFunctions.randomFunction( 32, 16, 20, 3 );
+            SimplePolynomialFunction quadratic = SimplePolynomialFunctions.denseRandomMultivariateQuadratic( 32, 16 );
+            verify( cubic, inner, prepared.composeWith( cubic ) );
+            verify( quadratic, inner, prepared.composeWith( quadratic ) );
+            verify( quadratic, affine, preparedAffine.composeWith( quadratic ) );
+        }
+    }
+
+    @Test( timeout = 60000 )
+    public void testComposeFromSharedExecutorTask() {
+        final SimplePolynomialFunction cubic = SimplePolynomialFunctions.randomFunction( 32, 32, 50, 3 );
+        final SimplePolynomialFunction quadratic = SimplePolynomialFunctions.denseRandomMultivariateQuadratic( 32, 32 );
+        final SimplePolynomialFunction inner = SimplePolynomialFunctions.randomFunction( 32, 32, 10, 2 );
+        // Batches run on the shared executor, which composing also fans out onto.
+        PolynomialFunction composing = new PolynomialFunction() {
+            @Override
+            public BitVector apply( BitVector input ) {
+                BitVector output = cubic.compose( inner ).apply( input );
+                output.xor( quadratic.compose( inner ).apply( input ) );
+                return output;
+            }
+
+            @Override
+            public BitVector apply( BitVector lhs, BitVector rhs ) {
+                return apply( FunctionUtils.concatenate( lhs, rhs ) );
+            }
+
+            @Override
+            public int getInputLength() {
+                return inner.getInputLength();
+            }
+
+            @Override
+            public int getOutputLength() {
+                return cubic.getOutputLength();
+            }
+        };
+
+        List<BitVector> inputs = Lists.newArrayList();
+        for ( int i = 0; i < 4; ++i ) {
+            inputs.add( BitVectors.randomVector( inner.getInputLength() ) );
+        }
+        Iterator<BitVector> outputs = new StreamingEvaluator( composing ).applyAll( inputs.iterator() );
+        for ( BitVector input : inputs ) {
+            BitVector expected = cubic.apply( inner.apply( input ) );
+            expected.xor( quadratic.apply( inner.apply( input ) ) );
+            Assert.assertEquals( expected, outputs.next() );
+        }
+        Assert.assertFalse( outputs.hasNext() );
+    }
+
+    private static void verify( SimplePolynomialFunction outer, SimplePolynomialFunction inner ) {
+        verify( outer, inner, outer.compose( inner ) );
+    }
+
+    private static void verify(
+            SimplePolynomialFunction outer,
+            SimplePolynomialFunction inner,
+            SimplePolynomialFunction composed ) {
+        for ( int i = 0; i < 50; ++i ) {
+            BitVector input = BitVectors.randomVector( inner.getInputLength() );
+            Assert.assertEquals( outer.apply( inner.apply( input ) ), composed.apply( input ) );
+        }
+    }
+}
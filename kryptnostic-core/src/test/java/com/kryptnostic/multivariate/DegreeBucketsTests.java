@@ -0,0 +1,78 @@
+package com.kryptnostic.multivariate;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import cern.colt.bitvector.BitVector;
+
+import com.kryptnostic.bitwise.BitVectors;
+import com.kryptnostic.multivariate.gf2.Monomial;
+import com.kryptnostic.multivariate.gf2.SimplePolynomialFunction;
+import com.kryptnostic.multivariate.polynomial.BasePolynomialFunction;
+import com.kryptnostic.multivariate.polynomial.OptimizedPolynomialFunctionGF2;
+import com.kryptnostic.multivariate.util.SimplePolynomialFunctions;
+
+public class DegreeBucketsTests {
+    @Test
+    public void testMixedOrdersMatchDirectEvaluation() {
+        SimplePolynomialFunction f = SimplePolynomialFunctions.randomFunction( 130, 70, 200, 4 )
+                .xor( SimplePolynomialFunctions.denseRandomMultivariateQuadratic( 130, 70 ) )
+                .xor( SimplePolynomialFunctions.constant( 130, BitVectors.randomVector( 70 ) ) );
+        verify( f );
+    }
+
+    @Test
+    public void testSparseLinearTermsMatchDirectEvaluation() {
+        Monomial[] monomials = new Monomial[] {
+                Monomial.constantMonomial( 100 ),
+                Monomial.linearMonomial( 100, 3 ),
+                Monomial.linearMonomial( 100, 99 ),
+                new Monomial( 100 ).chainSet( 63 ).chainSet( 64 ),
+                new Monomial( 100 ).chainSet( 1 ).chainSet( 50 ).chainSet( 98 ) };
+        BitVector[] contributions = new BitVector[ monomials.length ];
+        for ( int i = 0; i < contributions.length; ++i ) {
+            contributions[ i ] = BitVectors.randomVector( 65 );
+        }
+        verify( new BasePolynomialFunction( 100, 65, monomials, contributions ) );
+    }
+
+    @Test
+    public void testOrderAndCount() {
+        Monomial[] monomials = new Monomial[] {
+                Monomial.linearMonomial( 64, 5 ),
+                new Monomial( 64 ).chainSet( 1 ).chainSet( 2 ).chainSet( 3 ) };
+        BitVector[] contributions = new BitVector[] { new BitVector( 8 ), new BitVector( 8 ) };
+        contributions[ 0 ].set( 0 );
+        contributions[ 0 ].set( 7 );
+        contributions[ 1 ].set( 4 );
+        SimplePolynomialFunction f = new BasePolynomialFunction( 64, 8, monomials, contributions );
+        Assert.assertEquals( 3, f.getMaximumMonomialOrder() );
+        Assert.assertEquals( 3, f.getTotalMonomialCount() );
+
+        SimplePolynomialFunction empty = new BasePolynomialFunction( 64, 8, new Monomial[ 0 ], new BitVector[ 0 ] );
+        Assert.assertEquals( 0, empty.getMaximumMonomialOrder() );
+        Assert.assertEquals( 0, empty.getTotalMonomialCount() );
+    }
+
+    private static void verify( SimplePolynomialFunction f ) {
+        SimplePolynomialFunction optimized = new OptimizedPolynomialFunctionGF2(
+                f.getInputLength(),
+                f.getOutputLength(),
+                f.getMonomials(),
+                f.getContributions() );
+        SimplePolynomialFunction base = f.deoptimize();
+        Monomial[] monomials = f.getMonomials();
+        BitVector[] contributions = f.getContributions();
+        for ( int i = 0; i < 100; ++i ) {
+            BitVector input = BitVectors.randomVector( f.getInputLength() );
+            BitVector expected = new BitVector( f.getOutputLength() );
+            for ( int m = 0; m < monomials.length; ++m ) {
+                if ( monomials[ m ].eval( input ) ) {
+                    expected.xor( contributions[ m ] );
+                }
+            }
+            Assert.assertEquals( expected, optimized.apply( input ) );
+            Assert.assertEquals( expected, base.apply( input ) );
+        }
+    }
+}
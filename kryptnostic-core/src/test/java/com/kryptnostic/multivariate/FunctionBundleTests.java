@@ -0,0 +1,81 @@
+package com.kryptnostic.multivariate;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import cern.colt.bitvector.BitVector;
+
+import com.kryptnostic.bitwise.BitVectors;
+import com.kryptnostic.multivariate.gf2.SimplePolynomialFunction;
+import com.kryptnostic.multivariate.polynomial.FunctionBundle;
+import com.kryptnostic.multivariate.polynomial.OptimizedPolynomialFunctionGF2;
+import com.kryptnostic.multivariate.polynomial.ParameterizedPolynomialFunctionGF2;
+import com.kryptnostic.multivariate.util.ParameterizedPolynomialFunctions;
+import com.kryptnostic.multivariate.util.SimplePolynomialFunctions;
+
+public class FunctionBundleTests {
+    @Test
+    public void testBundleMatchesSeparateEvaluation() {
+        SimplePolynomialFunction f = SimplePolynomialFunctions.denseRandomMultivariateQuadratic( 128, 128 );
+        SimplePolynomialFunction g = withRandomContributions( f, 70 );
+        SimplePolynomialFunction h = SimplePolynomialFunctions.randomFunction( 128, 33 );
+        FunctionBundle bundle = FunctionBundle.of( f, g, h );
+        Assert.assertEquals( 3, bundle.size() );
+        Assert.assertTrue( bundle.getMonomialCount() <= f.getMonomials().length + h.getMonomials().length );
+
+        BitVector[] inputs = new BitVector[ 100 ];
+        long[][] outputs = new long[][] { new long[ 2 ], new long[ 2 ], new long[ 1 ] };
+        for ( int i = 0; i < inputs.length; ++i ) {
+            inputs[ i ] = BitVectors.randomVector( 128 );
+            BitVector[] expected = new BitVector[] { f.apply( inputs[ i ] ), g.apply( inputs[ i ] ),
+                    h.apply( inputs[ i ] ) };
+            Assert.assertArrayEquals( expected, bundle.apply( inputs[ i ] ) );
+
+            bundle.apply( inputs[ i ].elements(), outputs );
+            for ( int k = 0; k < expected.length; ++k ) {
+                Assert.assertEquals( expected[ k ], new BitVector( outputs[ k ], expected[ k ].size() ) );
+            }
+        }
+
+        BitVector[][] batch = bundle.applyBatch( inputs );
+        for ( int i = 0; i < inputs.length; ++i ) {
+            Assert.assertArrayEquals( bundle.apply( inputs[ i ] ), batch[ i ] );
+        }
+    }
+
+    @Test
+    public void testParameterizedFunctionsShareMonomialsAndPipelines() {
+        SimplePolynomialFunction f = ParameterizedPolynomialFunctions.randomParameterizedFunction( 64, 64 );
+        SimplePolynomialFunction g = withRandomContributions( f, 64 );
+        FunctionBundle bundle = FunctionBundle.of( f, g );
+        Assert.assertEquals( f.getMonomials().length, bundle.getMonomialCount() );
+
+        for ( int i = 0; i < 50; ++i ) {
+            BitVector input = BitVectors.randomVector( 64 );
+            Assert.assertArrayEquals( new BitVector[] { f.apply( input ), g.apply( input ) }, bundle.apply( input ) );
+        }
+    }
+
+    @Test( expected = IllegalArgumentException.class )
+    public void testMismatchedInputLengthsAreRejected() {
+        FunctionBundle.of(
+                SimplePolynomialFunctions.randomFunction( 64, 64 ),
+                SimplePolynomialFunctions.randomFunction( 128, 64 ) );
+    }
+
+    private static SimplePolynomialFunction withRandomContributions( SimplePolynomialFunction f, int outputLength ) {
+        BitVector[] contributions = new BitVector[ f.getMonomials().length ];
+        for ( int i = 0; i < contributions.length; ++i ) {
+            contributions[ i ] = BitVectors.randomVector( outputLength );
+        }
+        if ( f instanceof ParameterizedPolynomialFunctionGF2 ) {
+            return new ParameterizedPolynomialFunctionGF2(
+                    f.getInputLength(),
+                    outputLength,
+                    f.getMonomials(),
+                    contributions,
+                    ( (ParameterizedPolynomialFunctionGF2) f ).getPipelines() );
+        }
+        return new OptimizedPolynomialFunctionGF2( f.getInputLength(), outputLength, f.getMonomials(), contributions );
+    }
+}
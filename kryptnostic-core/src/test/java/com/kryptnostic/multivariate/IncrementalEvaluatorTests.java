@@ -0,0 +1,86 @@
+package com.kryptnostic.multivariate;
+
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import cern.colt.bitvector.BitVector;
+
+import com.kryptnostic.bitwise.BitVectors;
+import com.kryptnostic.multivariate.gf2.SimplePolynomialFunction;
+import com.kryptnostic.multivariate.polynomial.IncrementalEvaluator;
+import com.kryptnostic.multivariate.polynomial.IncrementalEvaluator.AssignmentVisitor;
+import com.kryptnostic.multivariate.util.ParameterizedPolynomialFunctions;
+import com.kryptnostic.multivariate.util.SimplePolynomialFunctions;
+
+public class IncrementalEvaluatorTests {
+    private static final Random r = new Random();
+
+    @Test
+    public void testFlipsMatchApply() {
+        SimplePolynomialFunction f = SimplePolynomialFunctions.randomFunction( 150, 70, 32, 4 ).xor(
+                SimplePolynomialFunctions.constant( 150, BitVectors.randomVector( 70 ) ) );
+        IncrementalEvaluator evaluator = new IncrementalEvaluator( f );
+        Assert.assertEquals( f.apply( new BitVector( 150 ) ), evaluator.getOutput() );
+
+        BitVector input = BitVectors.randomVector( 150 );
+        evaluator.reset( input );
+        for ( int i = 0; i < 500; ++i ) {
+            int variable = r.nextInt( 150 );
+            evaluator.flip( variable );
+            input.put( variable, !input.get( variable ) );
+            Assert.assertEquals( input, evaluator.getInput() );
+            Assert.assertEquals( f.apply( input ), evaluator.getOutput() );
+        }
+    }
+
+    @Test
+    public void testGrayCodeEnumerationVisitsEveryAssignment() {
+        final SimplePolynomialFunction f = SimplePolynomialFunctions.denseRandomMultivariateQuadratic( 64, 64 );
+        final IncrementalEvaluator evaluator = new IncrementalEvaluator( f );
+        evaluator.reset( BitVectors.randomVector( 64 ) );
+        final int[] variables = new int[] { 3, 17, 40, 41, 63 };
+        final BitVector base = evaluator.getInput();
+        final boolean[] visited = new boolean[ 1 << variables.length ];
+
+        boolean completed = evaluator.enumerate( variables, new AssignmentVisitor() {
+            @Override
+            public boolean visit( long assignment, long[] output ) {
+                BitVector expectedInput = base.copy();
+                for ( int j = 0; j < variables.length; ++j ) {
+                    expectedInput.put( variables[ j ], ( ( assignment >>> j ) & 1L ) != 0L );
+                }
+                Assert.assertFalse( visited[ (int) assignment ] );
+                visited[ (int) assignment ] = true;
+                Assert.assertEquals( expectedInput, evaluator.getInput() );
+                Assert.assertEquals( f.apply( expectedInput ), new BitVector( output.clone(), 64 ) );
+                return true;
+            }
+        } );
+
+        Assert.assertTrue( completed );
+        for ( boolean v : visited ) {
+            Assert.assertTrue( v );
+        }
+    }
+
+    @Test
+    public void testEnumerationStopsWhenVisitorDeclines() {
+        IncrementalEvaluator evaluator = new IncrementalEvaluator( SimplePolynomialFunctions.randomFunction( 64, 64 ) );
+        final int[] count = new int[ 1 ];
+        boolean completed = evaluator.enumerate( new int[] { 0, 1, 2, 3 }, new AssignmentVisitor() {
+            @Override
+            public boolean visit( long assignment, long[] output ) {
+                return ++count[ 0 ] < 5;
+            }
+        } );
+        Assert.assertFalse( completed );
+        Assert.assertEquals( 5, count[ 0 ] );
+    }
+
+    @Test( expected = IllegalArgumentException.class )
+    public void testParameterizedFunctionsAreRejected() {
+        new IncrementalEvaluator( ParameterizedPolynomialFunctions.randomParameterizedFunction( 128, 128 ) );
+    }
+}
@@ -0,0 +1,63 @@
+package com.kryptnostic.multivariate;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import cern.colt.bitvector.BitVector;
+
+import com.kryptnostic.bitwise.BitVectors;
+import com.kryptnostic.multivariate.gf2.Monomial;
+import com.kryptnostic.multivariate.gf2.SimplePolynomialFunction;
+import com.kryptnostic.multivariate.polynomial.MonomialEvaluationPlan;
+import com.kryptnostic.multivariate.polynomial.OptimizedPolynomialFunctionGF2;
+import com.kryptnostic.multivariate.util.SimplePolynomialFunctions;
+
+public class MonomialEvaluationPlanTests {
+    @Test
+    public void testPlanMatchesDirectEvaluation() {
+        SimplePolynomialFunction f = SimplePolynomialFunctions.randomFunction( 300, 64, 32, 5 );
+        Monomial[] monomials = f.getMonomials();
+        MonomialEvaluationPlan plan = MonomialEvaluationPlan.build( monomials );
+
+        for ( int i = 0; i < 200; ++i ) {
+            BitVector input = BitVectors.randomVector( 300 );
+            long[] fired = plan.evaluate( input.elements() );
+            for ( int m = 0; m < monomials.length; ++m ) {
+                Assert.assertEquals( monomials[ m ].eval( input ), ( fired[ m >>> 6 ] & ( 1L << m ) ) != 0L );
+            }
+        }
+    }
+
+    @Test
+    public void testCommonFactorsAreShared() {
+        Monomial[] monomials = new Monomial[] {
+                Monomial.fromString( 128, "x1*x2*x3" ),
+                Monomial.fromString( 128, "x1*x2*x4" ),
+                Monomial.fromString( 128, "x1*x2*x3*x5" ),
+                Monomial.fromString( 128, "x1*x2" ),
+                Monomial.constantMonomial( 128 ) };
+        MonomialEvaluationPlan plan = MonomialEvaluationPlan.build( monomials );
+
+        // x1, x1*x2, x1*x2*x3, x1*x2*x4, x1*x2*x3*x5
+        Assert.assertEquals( 5, plan.getNodeCount() );
+        Assert.assertTrue( plan.isCheaperThanDirectEvaluation() );
+    }
+
+    @Test
+    public void testApplyWithPlanMatchesOptimized() {
+        SimplePolynomialFunction f = SimplePolynomialFunctions.randomFunction( 256, 128, 32, 4 );
+        SimplePolynomialFunction optimized = new OptimizedPolynomialFunctionGF2(
+                f.getInputLength(),
+                f.getOutputLength(),
+                f.getMonomials(),
+                f.getContributions() );
+        SimplePolynomialFunction base = f.deoptimize();
+
+        for ( int i = 0; i < 200; ++i ) {
+            BitVector input = BitVectors.randomVector( 256 );
+            BitVector expected = optimized.apply( input );
+            Assert.assertEquals( expected, f.apply( input ) );
+            Assert.assertEquals( expected, base.apply( input ) );
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.kryptnostic.multivariate;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import cern.colt.bitvector.BitVector;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.kryptnostic.bitwise.BitVectors;
+import com.kryptnostic.multivariate.gf2.Monomial;
+import com.kryptnostic.multivariate.gf2.SimplePolynomialFunction;
+import com.kryptnostic.multivariate.polynomial.BasePolynomialFunction;
+import com.kryptnostic.multivariate.polynomial.MonomialContributions;
+import com.kryptnostic.multivariate.polynomial.MonomialIndex;
+import com.kryptnostic.multivariate.util.SimplePolynomialFunctions;
+
+public class MonomialIndexTests {
+    private static final Random r = new Random( 0 );
+
+    @Test
+    public void testIndexMatchesHashMap() {
+        MonomialIndex index = new MonomialIndex( 130, 1 );
+        Map<Monomial, Integer> expected = Maps.newHashMap();
+        List<Monomial> order = Lists.newArrayList();
+        for ( int i = 0; i < 5000; ++i ) {
+            Monomial m = Monomial.randomMonomial( 130, 1 + r.nextInt( 4 ) );
+            Integer existing = expected.get( m );
+            Assert.assertEquals( existing == null ? -1 : existing.intValue(), index.putIfAbsent( m, i ) );
+            if ( existing == null ) {
+                expected.put( m, i );
+                order.add( m );
+            }
+        }
+
+        Assert.assertEquals( expected.size(), index.size() );
+        for ( int entry = 0; entry < order.size(); ++entry ) {
+            Assert.assertEquals( order.get( entry ), index.getMonomial( entry ) );
+            Assert.assertEquals( expected.get( order.get( entry ) ).intValue(), index.getValue( entry ) );
+            Assert.assertEquals( expected.get( order.get( entry ) ).intValue(), index.get( order.get( entry ) ) );
+        }
+        Assert.assertEquals( -1, index.get( Monomial.constantMonomial( 130 ) ) );
+    }
+
+    @Test
+    public void testContributionsCancel() {
+        Monomial m = Monomial.linearMonomial( 64, 7 );
+        BitVector contribution = BitVectors.randomVector( 10 );
+        MonomialContributions results = new MonomialContributions( 64, 10, 0 );
+        results.xor( m, contribution );
+        results.xor( Monomial.constantMonomial( 64 ), contribution );
+        results.xor( m, contribution );
+
+        SimplePolynomialFunction f = results.toFunction( 64 );
+        Assert.assertEquals( 2, results.size() );
+        Assert.assertArrayEquals( new Monomial[] { Monomial.constantMonomial( 64 ) }, f.getMonomials() );
+        Assert.assertEquals( contribution, f.getContributions()[ 0 ] );
+    }
+
+    @Test
+    public void testXorAndAnd() {
+        SimplePolynomialFunction f = SimplePolynomialFunctions.randomFunction( 80, 70, 60, 3 );
+        SimplePolynomialFunction g = SimplePolynomialFunctions.randomFunction( 80, 70, 60, 2 );
+        SimplePolynomialFunction xor = f.xor( g );
+        SimplePolynomialFunction and = f.and( g );
+        for ( int i = 0; i < 100; ++i ) {
+            BitVector input = BitVectors.randomVector( 80 );
+            BitVector expectedXor = f.apply( input );
+            expectedXor.xor( g.apply( input ) );
+            BitVector expectedAnd = f.apply( input );
+            expectedAnd.and( g.apply( input ) );
+            Assert.assertEquals( expectedXor, xor.apply( input ) );
+            Assert.assertEquals( expectedAnd, and.apply( input ) );
+        }
+        Assert.assertEquals( 0, f.xor( f ).getMonomials().length );
+    }
+
+    @Test
+    public void testComposeWithOuterConstantOnly() {
+        SimplePolynomialFunction outer = SimplePolynomialFunctions.randomFunction( 32, 16, 10, 3 )
+                .xor( SimplePolynomialFunctions.constant( 32, BitVectors.randomVector( 16 ) ) );
+        Monomial[] monomials = new Monomial[ 32 ];
+        BitVector[] contributions = new BitVector[ 32 ];
+        for ( int i = 0; i < 32; ++i ) {
+            monomials[ i ] = Monomial.linearMonomial( 24, i % 24 );
+            contributions[ i ] = BitVectors.randomVector( 32 );
+        }
+        SimplePolynomialFunction inner = new BasePolynomialFunction( 24, 32, monomials, contributions );
+        SimplePolynomialFunction composed = outer.compose( inner );
+        for ( int i = 0; i < 100; ++i ) {
+            BitVector input = BitVectors.randomVector( 24 );
+            Assert.assertEquals( outer.apply( inner.apply( input ) ), composed.apply( input ) );
+        }
+    }
+}
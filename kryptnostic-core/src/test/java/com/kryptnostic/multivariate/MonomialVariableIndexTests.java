@@ -0,0 +1,82 @@
+package com.kryptnostic.multivariate;
+
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import cern.colt.bitvector.BitVector;
+
+import com.kryptnostic.bitwise.BitVectors;
+import com.kryptnostic.multivariate.gf2.Monomial;
+import com.kryptnostic.multivariate.gf2.SimplePolynomialFunction;
+import com.kryptnostic.multivariate.polynomial.MonomialVariableIndex;
+import com.kryptnostic.multivariate.util.SimplePolynomialFunctions;
+
+public class MonomialVariableIndexTests {
+    private static final Random r = new Random();
+
+    @Test
+    public void testSparseInputsMatchDirectEvaluation() {
+        SimplePolynomialFunction f = SimplePolynomialFunctions.randomFunction( 300, 64, 32, 5 ).xor(
+                SimplePolynomialFunctions.constant( 300, BitVectors.randomVector( 64 ) ) );
+        Monomial[] monomials = f.getMonomials();
+        MonomialVariableIndex index = MonomialVariableIndex.build( monomials );
+
+        for ( int i = 0; i < 200; ++i ) {
+            BitVector input = sparseVector( 300, r.nextInt( 16 ) );
+            long[] fired = index.evaluate( input.elements() );
+            Assert.assertNotNull( fired );
+            for ( int m = 0; m < monomials.length; ++m ) {
+                Assert.assertEquals( monomials[ m ].eval( input ), ( fired[ m >>> 6 ] & ( 1L << m ) ) != 0L );
+            }
+        }
+    }
+
+    @Test
+    public void testDenseInputsAreDeclined() {
+        SimplePolynomialFunction f = SimplePolynomialFunctions.randomFunction( 128, 64, 32, 3 );
+        MonomialVariableIndex index = MonomialVariableIndex.build( f.getMonomials() );
+
+        BitVector ones = new BitVector( 128 );
+        ones.not();
+        Assert.assertNull( index.evaluate( ones.elements() ) );
+        Assert.assertNotNull( index.evaluate( new BitVector( 128 ).elements() ) );
+        Assert.assertTrue( index.getMaximumWeight() < 128 );
+    }
+
+    @Test
+    public void testApplyOnSparseInputsMatchesDirectEvaluation() {
+        SimplePolynomialFunction f = SimplePolynomialFunctions.randomFunction( 256, 128, 64, 4 );
+        SimplePolynomialFunction base = f.deoptimize();
+        SimplePolynomialFunction optimized = base.optimize();
+        Monomial[] monomials = f.getMonomials();
+        BitVector[] contributions = f.getContributions();
+
+        for ( int i = 0; i < 200; ++i ) {
+            // Alternate between a few scattered bits and a block whose upper half is zero filled.
+            BitVector input = sparseVector( 256, r.nextInt( 24 ) );
+            if ( ( i & 1 ) == 1 ) {
+                input = BitVectors.randomVector( 256 );
+                input.replaceFromToWith( 128, 255, false );
+            }
+            BitVector expected = new BitVector( 128 );
+            for ( int m = 0; m < monomials.length; ++m ) {
+                if ( monomials[ m ].eval( input ) ) {
+                    expected.xor( contributions[ m ] );
+                }
+            }
+            Assert.assertEquals( expected, f.apply( input ) );
+            Assert.assertEquals( expected, base.apply( input ) );
+            Assert.assertEquals( expected, optimized.apply( input ) );
+        }
+    }
+
+    private static BitVector sparseVector( int length, int weight ) {
+        BitVector v = new BitVector( length );
+        for ( int i = 0; i < weight; ++i ) {
+            v.set( r.nextInt( length ) );
+        }
+        return v;
+    }
+}
@@ -10,9 +10,12 @@ import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import cern.colt.bitvector.BitVector;
+
 import com.google.common.base.Stopwatch;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
+import com.kryptnostic.bitwise.BitVectors;
 import com.kryptnostic.multivariate.gf2.Monomial;
 import com.kryptnostic.multivariate.util.Monomials;
 
@@ -89,4 +92,20 @@ public class MonomialsTests {
     	Set<Monomial> monomials = Monomials.allMonomials(128, 2);
 		Assert.assertEquals(monomials.size(), 8257);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void wordEvalMatchesEvalTest() {
+        for ( int i = 0; i < 1000; ++i ) {
+            Monomial m = Monomial.randomMonomial( 200, 4 );
+            BitVector input = BitVectors.randomVector( 200 );
+            BitVector check = m.copy();
+            check.and( input );
+            boolean expected = check.equals( m );
+
+            Assert.assertEquals( expected, m.eval( input ) );
+            Assert.assertEquals( expected, m.eval( input.elements() ) );
+            Assert.assertEquals( expected, Monomial.eval( m.elements(), input.elements() ) );
+        }
+        Assert.assertTrue( Monomial.constantMonomial( 130 ).eval( new BitVector( 130 ).elements() ) );
+    }
+}
@@ -0,0 +1,51 @@
+package com.kryptnostic.multivariate;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import cern.colt.bitvector.BitVector;
+
+import com.kryptnostic.bitwise.BitVectors;
+import com.kryptnostic.multivariate.gf2.SimplePolynomialFunction;
+import com.kryptnostic.multivariate.polynomial.OptimizedPolynomialFunctionGF2;
+import com.kryptnostic.multivariate.polynomial.QuadraticPolynomialFunctionGF2;
+import com.kryptnostic.multivariate.util.SimplePolynomialFunctions;
+
+public class OptimizedPolynomialFunctionTests {
+    @Test
+    public void testOptimizeProducesOptimizedFunction() {
+        SimplePolynomialFunction f = SimplePolynomialFunctions.randomFunction( 128, 128 ).deoptimize();
+        SimplePolynomialFunction optimized = f.optimize();
+
+        Assert.assertTrue( optimized instanceof OptimizedPolynomialFunctionGF2 );
+        Assert.assertEquals( f, optimized );
+        Assert.assertSame( optimized, optimized.optimize() );
+    }
+
+    @Test
+    public void testEvaluationMatchesBase() {
+        SimplePolynomialFunction f = SimplePolynomialFunctions.randomFunction( 200, 70, 32, 4 ).deoptimize();
+        SimplePolynomialFunction optimized = f.optimize();
+
+        for ( int i = 0; i < 1000; ++i ) {
+            BitVector input = BitVectors.randomVector( f.getInputLength() );
+            Assert.assertEquals( f.apply( input ), optimized.apply( input ) );
+        }
+    }
+
+    @Test
+    public void testDenseQuadraticEvaluationMatchesBase() {
+        SimplePolynomialFunction f = SimplePolynomialFunctions.denseRandomMultivariateQuadratic( 128, 128 ).deoptimize();
+        SimplePolynomialFunction optimized = new OptimizedPolynomialFunctionGF2(
+                f.getInputLength(),
+                f.getOutputLength(),
+                f.getMonomials(),
+                f.getContributions() );
+        Assert.assertTrue( optimized.optimize() instanceof QuadraticPolynomialFunctionGF2 );
+
+        for ( int i = 0; i < 100; ++i ) {
+            BitVector input = BitVectors.randomVector( f.getInputLength() );
+            Assert.assertEquals( f.apply( input ), optimized.apply( input ) );
+        }
+    }
+}
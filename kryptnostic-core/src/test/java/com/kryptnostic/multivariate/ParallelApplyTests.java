@@ -0,0 +1,81 @@
+package com.kryptnostic.multivariate;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import cern.colt.bitvector.BitVector;
+
+import com.kryptnostic.bitwise.BitVectors;
+import com.kryptnostic.multivariate.gf2.Monomial;
+import com.kryptnostic.multivariate.gf2.SimplePolynomialFunction;
+import com.kryptnostic.multivariate.polynomial.OptimizedPolynomialFunctionGF2;
+import com.kryptnostic.multivariate.polynomial.ParallelApplyThresholds;
+import com.kryptnostic.multivariate.util.ParameterizedPolynomialFunctions;
+import com.kryptnostic.multivariate.util.SimplePolynomialFunctions;
+
+public class ParallelApplyTests {
+    @Test
+    public void testSmallFunctionMatchesDirectEvaluation() {
+        verify( optimized( SimplePolynomialFunctions.randomFunction( 128, 64, 4, 3 ) ) );
+    }
+
+    @Test
+    public void testLargeFunctionMatchesDirectEvaluation() {
+        // More terms than the default sequential threshold, so that evaluation is split.
+        verify( optimized( SimplePolynomialFunctions.randomFunction(
+                512,
+                256,
+                ParallelApplyThresholds.DEFAULT_SEQUENTIAL_THRESHOLD + 300,
+                6 ) ) );
+    }
+
+    @Test
+    public void testCalibratedThresholdsMatchDirectEvaluation() {
+        ParallelApplyThresholds.calibrate();
+        Assert.assertTrue( ParallelApplyThresholds.getSequentialThreshold() > 0 );
+        Assert.assertTrue( ParallelApplyThresholds.getLeafSize() > 0 );
+        verify( optimized( SimplePolynomialFunctions.randomFunction( 512, 256, 300, 6 ) ) );
+    }
+
+    @Test
+    public void testApplyFromWithinForkJoinPoolMatchesApply() throws Exception {
+        final SimplePolynomialFunction f = ParameterizedPolynomialFunctions.randomParameterizedFunction( 128, 128 );
+        final BitVector input = BitVectors.randomVector( 128 );
+        BitVector expected = f.apply( input );
+        BitVector actual = new ForkJoinPool( 2 ).invoke( new RecursiveTask<BitVector>() {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected BitVector compute() {
+                return f.apply( input );
+            }
+        } );
+        Assert.assertEquals( expected, actual );
+    }
+
+    private static SimplePolynomialFunction optimized( SimplePolynomialFunction f ) {
+        return new OptimizedPolynomialFunctionGF2(
+                f.getInputLength(),
+                f.getOutputLength(),
+                f.getMonomials(),
+                f.getContributions() );
+    }
+
+    private static void verify( SimplePolynomialFunction f ) {
+        Monomial[] monomials = f.getMonomials();
+        BitVector[] contributions = f.getContributions();
+        for ( int i = 0; i < 20; ++i ) {
+            BitVector input = BitVectors.randomVector( f.getInputLength() );
+            BitVector expected = new BitVector( f.getOutputLength() );
+            for ( int m = 0; m < monomials.length; ++m ) {
+                if ( monomials[ m ].eval( input ) ) {
+                    expected.xor( contributions[ m ] );
+                }
+            }
+            Assert.assertEquals( expected, f.apply( input ) );
+        }
+    }
+}
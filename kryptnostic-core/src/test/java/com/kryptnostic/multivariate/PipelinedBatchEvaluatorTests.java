@@ -0,0 +1,96 @@
+package com.kryptnostic.multivariate;
+
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import cern.colt.bitvector.BitVector;
+
+import com.google.common.collect.ImmutableList;
+import com.kryptnostic.bitwise.BitVectors;
+import com.kryptnostic.multivariate.gf2.CompoundPolynomialFunction;
+import com.kryptnostic.multivariate.polynomial.CompoundPolynomialFunctionGF2;
+import com.kryptnostic.multivariate.polynomial.PipelinedBatchEvaluator;
+import com.kryptnostic.multivariate.polynomial.PipelinedBatchEvaluator.StageStatistics;
+import com.kryptnostic.multivariate.util.CompoundPolynomialFunctions;
+import com.kryptnostic.multivariate.util.SimplePolynomialFunctions;
+
+public class PipelinedBatchEvaluatorTests {
+    private static final CompoundPolynomialFunction cpf = CompoundPolynomialFunctions.fromFunctions(
+                                                                SimplePolynomialFunctions.randomFunction( 128, 100 ),
+                                                                SimplePolynomialFunctions.randomFunction( 100, 256 ),
+                                                                SimplePolynomialFunctions
+                                                                        .denseRandomMultivariateQuadratic( 256, 64 ),
+                                                                SimplePolynomialFunctions.randomFunction( 64, 128 ) );
+
+    @Test
+    public void testPipelinedBatchMatchesApply() {
+        BitVector[] inputs = randomInputs( 1000 );
+        verify( inputs, new PipelinedBatchEvaluator( cpf ).apply( inputs ) );
+        verify( inputs, new PipelinedBatchEvaluator( cpf, 1, 1 ).apply( inputs ) );
+        verify( inputs, new PipelinedBatchEvaluator( cpf, 7, 3 ).apply( inputs ) );
+        verify( inputs, ( (CompoundPolynomialFunctionGF2) cpf ).applyBatch( inputs ) );
+    }
+
+    @Test
+    public void testSmallBatchMatchesApply() {
+        BitVector[] inputs = randomInputs( 10 );
+        verify( inputs, new PipelinedBatchEvaluator( cpf ).apply( inputs ) );
+        verify( new BitVector[ 0 ], new PipelinedBatchEvaluator( cpf, 1, 1 ).apply( new BitVector[ 0 ] ) );
+    }
+
+    @Test
+    public void testStageStatisticsCountEveryInput() {
+        PipelinedBatchEvaluator evaluator = new PipelinedBatchEvaluator( cpf, 16, 2 );
+        evaluator.apply( randomInputs( 500 ) );
+        evaluator.apply( randomInputs( 10 ) );
+        List<StageStatistics> statistics = evaluator.getStageStatistics();
+        Assert.assertEquals( cpf.count(), statistics.size() );
+        for ( StageStatistics stage : statistics ) {
+            Assert.assertEquals( 510, stage.getItems() );
+            Assert.assertTrue( stage.getThroughput() > 0.0 );
+        }
+    }
+
+    @Test
+    public void testApplyBatchReusesEvaluatorUntilChainChanges() {
+        CompoundPolynomialFunctionGF2 f = new CompoundPolynomialFunctionGF2( cpf.getFunctions() );
+        PipelinedBatchEvaluator evaluator = f.getBatchEvaluator();
+        f.applyBatch( randomInputs( 300 ) );
+        f.applyBatch( randomInputs( 20 ) );
+        Assert.assertSame( evaluator, f.getBatchEvaluator() );
+        for ( StageStatistics stage : evaluator.getStageStatistics() ) {
+            Assert.assertEquals( 320, stage.getItems() );
+        }
+
+        f.suffix( SimplePolynomialFunctions.randomFunction( cpf.getOutputLength(), 64 ) );
+        Assert.assertNotSame( evaluator, f.getBatchEvaluator() );
+        Assert.assertEquals( f.count(), f.getBatchEvaluator().getStageStatistics().size() );
+    }
+
+    @Test( expected = IllegalArgumentException.class, timeout = 60000 )
+    public void testStageFailureIsPropagated() {
+        // The second function expects twice the output of the first, so the second stage fails on its first input.
+        CompoundPolynomialFunction broken = new CompoundPolynomialFunctionGF2( ImmutableList.of(
+                SimplePolynomialFunctions.randomFunction( 128, 64 ),
+                SimplePolynomialFunctions.randomFunction( 128, 64 ),
+                SimplePolynomialFunctions.randomFunction( 64, 64 ) ) );
+        new PipelinedBatchEvaluator( broken, 4, 2 ).apply( randomInputs( 1000 ) );
+    }
+
+    private static BitVector[] randomInputs( int count ) {
+        BitVector[] inputs = new BitVector[ count ];
+        for ( int i = 0; i < count; ++i ) {
+            inputs[ i ] = BitVectors.randomVector( cpf.getInputLength() );
+        }
+        return inputs;
+    }
+
+    private static void verify( BitVector[] inputs, BitVector[] outputs ) {
+        Assert.assertEquals( inputs.length, outputs.length );
+        for ( int i = 0; i < inputs.length; ++i ) {
+            Assert.assertEquals( cpf.apply( inputs[ i ] ), outputs[ i ] );
+        }
+    }
+}
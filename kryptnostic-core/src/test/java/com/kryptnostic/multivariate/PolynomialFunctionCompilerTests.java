@@ -0,0 +1,94 @@
+package com.kryptnostic.multivariate;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import cern.colt.bitvector.BitVector;
+
+import com.kryptnostic.bitwise.BitVectors;
+import com.kryptnostic.multivariate.compilation.CompiledPolynomialFunction;
+import com.kryptnostic.multivariate.compilation.PolynomialFunctionCompiler;
+import com.kryptnostic.multivariate.gf2.SimplePolynomialFunction;
+import com.kryptnostic.multivariate.util.ParameterizedPolynomialFunctions;
+import com.kryptnostic.multivariate.util.SimplePolynomialFunctions;
+
+public class PolynomialFunctionCompilerTests {
+    @Test
+    public void testCompiledRandomFunctionMatchesInterpreter() {
+        verify( SimplePolynomialFunctions.randomFunction( 256, 256, 64, 5 ) );
+        verify( SimplePolynomialFunctions.randomFunction( 100, 70, 16, 3 ) );
+    }
+
+    @Test
+    public void testCompiledDenseQuadraticMatchesInterpreter() {
+        verify( SimplePolynomialFunctions.denseRandomMultivariateQuadratic( 128, 128 ) );
+    }
+
+    @Test
+    public void testCompiledConstantTermsAreApplied() {
+        BitVector constant = BitVectors.randomVector( 128 );
+        verify( SimplePolynomialFunctions.lightRandomFunction( 128, 128 ).xor(
+                SimplePolynomialFunctions.constant( 128, constant ) ) );
+        verify( SimplePolynomialFunctions.constant( 128, constant ) );
+    }
+
+    @Test
+    public void testCompiledParameterizedFunctionMatchesInterpreter() {
+        SimplePolynomialFunction f = ParameterizedPolynomialFunctions.randomParameterizedFunction( 128, 128 );
+        CompiledPolynomialFunction compiled = verify( f );
+        Assert.assertTrue( compiled.isParameterized() );
+    }
+
+    @Test
+    public void testFallsBackToInterpreterAboveLimit() {
+        SimplePolynomialFunction f = SimplePolynomialFunctions.denseRandomMultivariateQuadratic( 64, 64 );
+        CompiledPolynomialFunction compiled = PolynomialFunctionCompiler.compile( f, f.getMonomials().length - 1 );
+        Assert.assertFalse( compiled.isCompiled() );
+        for ( int i = 0; i < 100; ++i ) {
+            BitVector input = BitVectors.randomVector( f.getInputLength() );
+            Assert.assertEquals( f.apply( input ), compiled.apply( input ) );
+        }
+    }
+
+    @Test
+    public void testSerializedCompiledFunctionsAreCompiledAgain() throws Exception {
+        verifyRoundTrip( SimplePolynomialFunctions.randomFunction( 128, 64, 32, 3 ) );
+        verifyRoundTrip( ParameterizedPolynomialFunctions.randomParameterizedFunction( 128, 128 ) );
+    }
+
+    private static void verifyRoundTrip( SimplePolynomialFunction f ) throws Exception {
+        CompiledPolynomialFunction compiled = PolynomialFunctionCompiler.compile( f );
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream( bytes );
+        out.writeObject( compiled );
+        out.close();
+        Object deserialized = new ObjectInputStream( new ByteArrayInputStream( bytes.toByteArray() ) ).readObject();
+        CompiledPolynomialFunction copy = (CompiledPolynomialFunction) deserialized;
+        Assert.assertEquals( compiled.getClass(), copy.getClass() );
+        Assert.assertTrue( copy.isCompiled() );
+        for ( int i = 0; i < 50; ++i ) {
+            BitVector input = BitVectors.randomVector( f.getInputLength() );
+            Assert.assertEquals( f.apply( input ), copy.apply( input ) );
+        }
+    }
+
+    private static CompiledPolynomialFunction verify( SimplePolynomialFunction f ) {
+        CompiledPolynomialFunction compiled = PolynomialFunctionCompiler.compile( f );
+        Assert.assertTrue( compiled.isCompiled() );
+        Assert.assertTrue( compiled.getCompilationTime( TimeUnit.NANOSECONDS ) > 0 );
+        Assert.assertEquals( f, compiled );
+
+        for ( int i = 0; i < 200; ++i ) {
+            BitVector input = BitVectors.randomVector( f.getInputLength() );
+            Assert.assertEquals( f.apply( input ), compiled.apply( input ) );
+        }
+        return compiled;
+    }
+}
@@ -0,0 +1,62 @@
+package com.kryptnostic.multivariate;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import cern.colt.bitvector.BitVector;
+
+import com.kryptnostic.bitwise.BitVectors;
+import com.kryptnostic.multivariate.gf2.SimplePolynomialFunction;
+import com.kryptnostic.multivariate.polynomial.OptimizedPolynomialFunctionGF2;
+import com.kryptnostic.multivariate.polynomial.QuadraticPolynomialFunctionGF2;
+import com.kryptnostic.multivariate.util.SimplePolynomialFunctions;
+
+public class QuadraticPolynomialFunctionTests {
+    @Test
+    public void testOptimizeSelectsQuadraticForm() {
+        SimplePolynomialFunction quadratic = SimplePolynomialFunctions.denseRandomMultivariateQuadratic( 64, 64 )
+                .deoptimize().optimize();
+        Assert.assertTrue( quadratic instanceof QuadraticPolynomialFunctionGF2 );
+        Assert.assertSame( quadratic, quadratic.optimize() );
+
+        SimplePolynomialFunction cubic = SimplePolynomialFunctions.randomFunction( 64, 64, 16, 3 ).deoptimize();
+        if ( cubic.getMaximumMonomialOrder() > 2 ) {
+            SimplePolynomialFunction optimized = cubic.optimize();
+            Assert.assertTrue( optimized instanceof OptimizedPolynomialFunctionGF2 );
+            Assert.assertFalse( optimized instanceof QuadraticPolynomialFunctionGF2 );
+        }
+    }
+
+    @Test
+    public void testDenseQuadraticEvaluationMatchesBase() {
+        verify( SimplePolynomialFunctions.denseRandomMultivariateQuadratic( 200, 130 ).deoptimize() );
+    }
+
+    @Test
+    public void testSparseEvaluationMatchesBase() {
+        verify( SimplePolynomialFunctions.lightRandomFunction( 128, 128 ).deoptimize() );
+        verify( SimplePolynomialFunctions.identity( 128 ).deoptimize() );
+        verify( SimplePolynomialFunctions.randomManyToOneLinearCombination( 64 ).deoptimize() );
+    }
+
+    @Test
+    public void testConstantTermsAreApplied() {
+        BitVector constant = BitVectors.randomVector( 128 );
+        SimplePolynomialFunction f = SimplePolynomialFunctions.denseRandomMultivariateQuadratic( 128, 128 ).xor(
+                SimplePolynomialFunctions.constant( 128, constant ) );
+        verify( f.deoptimize() );
+    }
+
+    private static void verify( SimplePolynomialFunction f ) {
+        SimplePolynomialFunction quadratic = new QuadraticPolynomialFunctionGF2(
+                f.getInputLength(),
+                f.getOutputLength(),
+                f.getMonomials(),
+                f.getContributions() );
+
+        for ( int i = 0; i < 200; ++i ) {
+            BitVector input = BitVectors.randomVector( f.getInputLength() );
+            Assert.assertEquals( f.apply( input ), quadratic.apply( input ) );
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.kryptnostic.multivariate;
+
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import cern.colt.bitvector.BitVector;
+
+import com.google.common.collect.Lists;
+import com.kryptnostic.bitwise.BitVectors;
+import com.kryptnostic.multivariate.gf2.SimplePolynomialFunction;
+import com.kryptnostic.multivariate.polynomial.ResolveCache;
+import com.kryptnostic.multivariate.util.SimplePolynomialFunctions;
+
+public class ResolveTests {
+    private static final int INPUT_LENGTH  = 160;
+    private static final int OUTPUT_LENGTH = 96;
+
+    @Test
+    public void testResolveMatchesApply() {
+        SimplePolynomialFunction f = SimplePolynomialFunctions.denseRandomMultivariateQuadratic(
+                INPUT_LENGTH,
+                OUTPUT_LENGTH );
+        for ( int prefixLength : new int[] { 1, 37, 64, 100, 128 } ) {
+            for ( int i = 0; i < 8; ++i ) {
+                BitVector prefix = BitVectors.randomVector( prefixLength );
+                BitVector suffix = BitVectors.randomVector( INPUT_LENGTH - prefixLength );
+                SimplePolynomialFunction g = f.resolve( prefix );
+                Assert.assertEquals( INPUT_LENGTH - prefixLength, g.getInputLength() );
+                Assert.assertEquals( f.apply( BitVectors.concatenate( prefix, suffix ) ), g.apply( suffix ) );
+            }
+        }
+    }
+
+    @Test
+    public void testResolveAllMatchesResolve() {
+        SimplePolynomialFunction f = SimplePolynomialFunctions.randomFunction( INPUT_LENGTH, OUTPUT_LENGTH );
+        for ( int prefixLength : new int[] { 37, 64, 100 } ) {
+            List<BitVector> prefixes = Lists.newArrayList();
+            for ( int i = 0; i < 150; ++i ) {
+                prefixes.add( BitVectors.randomVector( prefixLength ) );
+            }
+            List<SimplePolynomialFunction> resolved = f.resolveAll( prefixes );
+            Assert.assertEquals( prefixes.size(), resolved.size() );
+            for ( int i = 0; i < prefixes.size(); ++i ) {
+                BitVector suffix = BitVectors.randomVector( INPUT_LENGTH - prefixLength );
+                Assert.assertEquals(
+                        f.apply( BitVectors.concatenate( prefixes.get( i ), suffix ) ),
+                        resolved.get( i ).apply( suffix ) );
+                Assert.assertEquals(
+                        f.resolve( prefixes.get( i ) ).apply( suffix ),
+                        resolved.get( i ).apply( suffix ) );
+            }
+        }
+        Assert.assertTrue( f.resolveAll( Lists.<BitVector> newArrayList() ).isEmpty() );
+    }
+
+    @Test( expected = IllegalArgumentException.class )
+    public void testResolveAllRejectsMixedLengths() {
+        SimplePolynomialFunction f = SimplePolynomialFunctions.randomFunction( INPUT_LENGTH, OUTPUT_LENGTH );
+        f.resolveAll( Lists.newArrayList( new BitVector( 32 ), new BitVector( 33 ) ) );
+    }
+
+    @Test
+    public void testResolveCacheHits() {
+        SimplePolynomialFunction f = SimplePolynomialFunctions.randomFunction( INPUT_LENGTH, OUTPUT_LENGTH );
+        ResolveCache cache = ResolveCache.withMaximumEntries( f, 4 );
+        BitVector prefix = BitVectors.randomVector( 64 );
+        BitVector suffix = BitVectors.randomVector( INPUT_LENGTH - 64 );
+
+        SimplePolynomialFunction g = cache.resolve( prefix );
+        Assert.assertSame( g, cache.resolve( prefix.copy() ) );
+        Assert.assertEquals( f.apply( BitVectors.concatenate( prefix, suffix ) ), g.apply( suffix ) );
+        Assert.assertEquals( 1, cache.getStats().missCount() );
+        Assert.assertEquals( 1, cache.getStats().hitCount() );
+
+        for ( int i = 0; i < 32; ++i ) {
+            cache.resolve( BitVectors.randomVector( 64 ) );
+        }
+        Assert.assertTrue( cache.size() <= 4 );
+    }
+}
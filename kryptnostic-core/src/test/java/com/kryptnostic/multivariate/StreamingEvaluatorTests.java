@@ -0,0 +1,106 @@
+package com.kryptnostic.multivariate;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Test;
+
+import cern.colt.bitvector.BitVector;
+
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.kryptnostic.bitwise.BitVectors;
+import com.kryptnostic.multivariate.gf2.CompoundPolynomialFunction;
+import com.kryptnostic.multivariate.gf2.SimplePolynomialFunction;
+import com.kryptnostic.multivariate.polynomial.StreamingEvaluator;
+import com.kryptnostic.multivariate.util.CompoundPolynomialFunctions;
+import com.kryptnostic.multivariate.util.SimplePolynomialFunctions;
+
+public class StreamingEvaluatorTests {
+    private static final ListeningExecutorService executor = MoreExecutors.listeningDecorator( Executors
+                                                                   .newFixedThreadPool( 4 ) );
+
+    @AfterClass
+    public static void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testOutputsArriveInInputOrder() {
+        SimplePolynomialFunction f = SimplePolynomialFunctions.randomFunction( 128, 128 );
+        List<BitVector> inputs = randomInputs( 1000, 128 );
+        StreamingEvaluator evaluator = new StreamingEvaluator( f, executor, 37, 3 );
+        Iterator<BitVector> outputs = evaluator.applyAll( inputs.iterator() );
+        for ( BitVector input : inputs ) {
+            Assert.assertTrue( outputs.hasNext() );
+            Assert.assertEquals( f.apply( input ), outputs.next() );
+        }
+        Assert.assertFalse( outputs.hasNext() );
+        Assert.assertFalse( evaluator.applyAll( Lists.<BitVector> newArrayList().iterator() ).hasNext() );
+    }
+
+    @Test
+    public void testSinkReceivesCompoundOutputsInOrder() {
+        final CompoundPolynomialFunction cpf = CompoundPolynomialFunctions.fromFunctions(
+                SimplePolynomialFunctions.randomFunction( 64, 128 ),
+                SimplePolynomialFunctions.randomFunction( 128, 64 ) );
+        final List<BitVector> inputs = randomInputs( 500, 64 );
+        final AtomicInteger received = new AtomicInteger();
+        long count = new StreamingEvaluator( cpf ).applyAll(
+                inputs.iterator(),
+                new StreamingEvaluator.OutputSink() {
+                    @Override
+                    public void accept( long index, BitVector output ) {
+                        Assert.assertEquals( received.getAndIncrement(), index );
+                        Assert.assertEquals( cpf.apply( inputs.get( (int) index ) ), output );
+                    }
+                } );
+        Assert.assertEquals( inputs.size(), count );
+        Assert.assertEquals( inputs.size(), received.get() );
+    }
+
+    @Test
+    public void testInputsArePulledLazily() {
+        SimplePolynomialFunction f = SimplePolynomialFunctions.randomFunction( 64, 64 );
+        final AtomicInteger pulled = new AtomicInteger();
+        Iterator<BitVector> source = new AbstractIterator<BitVector>() {
+            @Override
+            protected BitVector computeNext() {
+                pulled.incrementAndGet();
+                return BitVectors.randomVector( 64 );
+            }
+        };
+        int batchSize = 10;
+        int inFlight = 2;
+        Iterator<BitVector> outputs = new StreamingEvaluator( f, executor, batchSize, inFlight ).applyAll( source );
+        for ( int consumed = 0; consumed < 1000; ++consumed ) {
+            outputs.next();
+            // Only the batch being consumed and the batches in flight may have been pulled.
+            Assert.assertTrue( pulled.get() <= consumed + ( inFlight + 1 ) * batchSize );
+        }
+    }
+
+    @Test( expected = IllegalArgumentException.class )
+    public void testEvaluationFailuresAreRethrown() {
+        SimplePolynomialFunction f = SimplePolynomialFunctions.randomFunction( 64, 64 );
+        Iterator<BitVector> outputs = new StreamingEvaluator( f, executor, 4, 2 ).applyAll( randomInputs( 10, 128 )
+                .iterator() );
+        while ( outputs.hasNext() ) {
+            outputs.next();
+        }
+    }
+
+    private static List<BitVector> randomInputs( int count, int length ) {
+        List<BitVector> inputs = Lists.newArrayListWithCapacity( count );
+        for ( int i = 0; i < count; ++i ) {
+            inputs.add( BitVectors.randomVector( length ) );
+        }
+        return inputs;
+    }
+}
@@ -0,0 +1,82 @@
+package com.kryptnostic.multivariate;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import cern.colt.bitvector.BitVector;
+
+import com.kryptnostic.bitwise.BitVectors;
+import com.kryptnostic.multivariate.gf2.SimplePolynomialFunction;
+import com.kryptnostic.multivariate.polynomial.MobiusTransform;
+import com.kryptnostic.multivariate.polynomial.TruthTableFunctionGF2;
+import com.kryptnostic.multivariate.util.SimplePolynomialFunctions;
+
+public class TruthTableFunctionTests {
+    private static final int INPUT_LENGTH = 12;
+
+    @Test
+    public void testOptimizeSelectsTruthTable() {
+        SimplePolynomialFunction small = SimplePolynomialFunctions.randomFunction( INPUT_LENGTH, 70, 16, 5 )
+                .deoptimize().optimize();
+        Assert.assertTrue( small instanceof TruthTableFunctionGF2 );
+        Assert.assertSame( small, small.optimize() );
+
+        SimplePolynomialFunction large = SimplePolynomialFunctions.randomFunction( 64, 64 ).deoptimize().optimize();
+        Assert.assertFalse( large instanceof TruthTableFunctionGF2 );
+        Assert.assertFalse( TruthTableFunctionGF2.fits( TruthTableFunctionGF2.MAX_INPUT_LENGTH + 1, 1 ) );
+    }
+
+    @Test
+    public void testEvaluationMatchesBase() {
+        SimplePolynomialFunction f = SimplePolynomialFunctions.randomFunction( INPUT_LENGTH, 70, 16, 5 ).xor(
+                SimplePolynomialFunctions.constant( INPUT_LENGTH, BitVectors.randomVector( 70 ) ).deoptimize() );
+        SimplePolynomialFunction base = f.deoptimize();
+        SimplePolynomialFunction table = new TruthTableFunctionGF2(
+                f.getInputLength(),
+                f.getOutputLength(),
+                f.getMonomials(),
+                f.getContributions() );
+
+        BitVector[] inputs = new BitVector[ 100 ];
+        for ( int i = 0; i < inputs.length; ++i ) {
+            inputs[ i ] = BitVectors.randomVector( INPUT_LENGTH );
+            Assert.assertEquals( base.apply( inputs[ i ] ), table.apply( inputs[ i ] ) );
+        }
+        Assert.assertArrayEquals( base.applyBatch( inputs ), table.applyBatch( inputs ) );
+    }
+
+    @Test
+    public void testFunctionRoundTrip() {
+        SimplePolynomialFunction f = SimplePolynomialFunctions.randomFunction( INPUT_LENGTH, 70, 16, 5 ).deoptimize();
+        SimplePolynomialFunction g = MobiusTransform.fromTruthTable(
+                MobiusTransform.toTruthTable( f ),
+                INPUT_LENGTH,
+                70 );
+        Assert.assertEquals( f.getMonomials().length, g.getMonomials().length );
+        for ( int x = 0; x < ( 1 << INPUT_LENGTH ); ++x ) {
+            BitVector input = new BitVector( new long[] { x }, INPUT_LENGTH );
+            Assert.assertEquals( f.apply( input ), g.apply( input ) );
+        }
+    }
+
+    @Test
+    public void testTableRoundTrip() {
+        Random r = new Random( 0 );
+        int rowLength = 2;
+        long[] table = new long[ rowLength << 8 ];
+        for ( int i = 0; i < table.length; ++i ) {
+            table[ i ] = ( i & 1 ) == 0 ? r.nextLong() : r.nextLong() & 0x3FL;
+        }
+        SimplePolynomialFunction f = MobiusTransform.fromTruthTable( table, 8, 70 );
+        Assert.assertArrayEquals( table, MobiusTransform.toTruthTable( f ) );
+        for ( int x = 0; x < 256; ++x ) {
+            BitVector output = f.apply( new BitVector( new long[] { x }, 8 ) );
+            Assert.assertArrayEquals(
+                    Arrays.copyOfRange( table, x * rowLength, ( x + 1 ) * rowLength ),
+                    Arrays.copyOf( output.elements(), rowLength ) );
+        }
+    }
+}
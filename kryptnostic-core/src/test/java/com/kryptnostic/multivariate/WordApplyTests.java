@@ -0,0 +1,138 @@
+package com.kryptnostic.multivariate;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+
+import cern.colt.bitvector.BitVector;
+
+import com.kryptnostic.bitwise.BitVectors;
+import com.kryptnostic.multivariate.compilation.PolynomialFunctionCompiler;
+import com.kryptnostic.multivariate.gf2.CompoundPolynomialFunction;
+import com.kryptnostic.multivariate.gf2.SimplePolynomialFunction;
+import com.kryptnostic.multivariate.polynomial.BasePolynomialFunction;
+import com.kryptnostic.multivariate.polynomial.CompoundPolynomialFunctionGF2;
+import com.kryptnostic.multivariate.polynomial.ParameterizedPolynomialFunctionGF2;
+import com.kryptnostic.multivariate.util.CompoundPolynomialFunctions;
+import com.kryptnostic.multivariate.util.ParameterizedPolynomialFunctions;
+import com.kryptnostic.multivariate.util.SimplePolynomialFunctions;
+
+public class WordApplyTests {
+    @Test
+    public void testWordApplyMatchesApply() {
+        SimplePolynomialFunction f = SimplePolynomialFunctions.randomFunction( 200, 70, 32, 4 );
+        verify( f );
+        verify( f.deoptimize() );
+        verify( SimplePolynomialFunctions.denseRandomMultivariateQuadratic( 128, 128 ) );
+        verify( ParameterizedPolynomialFunctions.randomParameterizedFunction( 128, 128 ) );
+        verify( PolynomialFunctionCompiler.compile( f ) );
+        verify( PolynomialFunctionCompiler.compile( ParameterizedPolynomialFunctions.randomParameterizedFunction(
+                128,
+                128 ) ) );
+    }
+
+    @Test
+    public void testWordApplyOfCompoundMatchesApply() {
+        CompoundPolynomialFunction cpf = CompoundPolynomialFunctions.fromFunctions(
+                SimplePolynomialFunctions.randomFunction( 128, 100 ),
+                SimplePolynomialFunctions.randomFunction( 100, 256 ),
+                SimplePolynomialFunctions.denseRandomMultivariateQuadratic( 256, 64 ) );
+        long[] output = new long[ 1 ];
+        BitVector into = new BitVector( 64 );
+        for ( int i = 0; i < 50; ++i ) {
+            BitVector input = BitVectors.randomVector( cpf.getInputLength() );
+            BitVector expected = cpf.apply( input );
+            cpf.apply( input.elements(), output );
+            Assert.assertEquals( expected, new BitVector( output, 64 ) );
+            cpf.applyInto( input, into );
+            Assert.assertEquals( expected, into );
+        }
+    }
+
+    @Test
+    public void testWordApplyOfEmptyCompoundCopiesOnlyItsOutputLength() {
+        CompoundPolynomialFunction cpf = new CompoundPolynomialFunctionGF2();
+        long[] output = { 7L, 7L };
+        cpf.apply( new long[] { 0x0123456789ABCDEFL, -1L }, output );
+        Assert.assertArrayEquals( new long[] { 7L, 7L }, output );
+    }
+
+    @Test( expected = IllegalArgumentException.class )
+    public void testWordApplyOfCompoundRejectsShortOutput() {
+        CompoundPolynomialFunction cpf = CompoundPolynomialFunctions.fromFunctions(
+                SimplePolynomialFunctions.randomFunction( 64, 128 ),
+                SimplePolynomialFunctions.randomFunction( 128, 128 ) );
+        cpf.apply( new long[ 1 ], new long[ 1 ] );
+    }
+
+    @Test
+    public void testParameterizedApplyMatchesConcatenatedPipelines() {
+        ParameterizedPolynomialFunctionGF2 f = (ParameterizedPolynomialFunctionGF2) ParameterizedPolynomialFunctions
+                .randomParameterizedFunction( 100, 70 );
+        int extendedLength = f.getInputLength() + f.getPipelineOutputLength();
+        SimplePolynomialFunction base = new BasePolynomialFunction(
+                extendedLength,
+                f.getOutputLength(),
+                f.getMonomials(),
+                f.getContributions() );
+
+        BitVector[] inputs = new BitVector[ 50 ];
+        for ( int i = 0; i < inputs.length; ++i ) {
+            inputs[ i ] = BitVectors.randomVector( f.getInputLength() );
+            BitVector[] parameters = new BitVector[ f.getPipelines().size() + 1 ];
+            parameters[ 0 ] = inputs[ i ];
+            for ( int k = 0; k < f.getPipelines().size(); ++k ) {
+                parameters[ k + 1 ] = f.getPipelines().get( k ).apply( inputs[ i ] );
+            }
+            Assert.assertEquals( base.apply( BitVectors.concatenate( parameters ) ), f.apply( inputs[ i ] ) );
+        }
+
+        BitVector[] batch = f.applyBatch( inputs );
+        for ( int i = 0; i < inputs.length; ++i ) {
+            Assert.assertEquals( f.apply( inputs[ i ] ), batch[ i ] );
+        }
+    }
+
+    @Test
+    public void testSteadyStateWordApplyDoesNotAllocate() {
+        Assume.assumeTrue( ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean );
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue( threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled() );
+
+        SimplePolynomialFunction f = ParameterizedPolynomialFunctions.randomParameterizedFunction( 128, 128 );
+        long[] input = BitVectors.randomVector( 128 ).elements();
+        long[] output = new long[ 2 ];
+        // Warm up, so that every per thread buffer and lazily built structure exists.
+        for ( int i = 0; i < 10; ++i ) {
+            f.apply( input, output );
+        }
+
+        long threadId = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes( threadId );
+        for ( int i = 0; i < 1000; ++i ) {
+            f.apply( input, output );
+        }
+        long allocated = threads.getThreadAllocatedBytes( threadId ) - before;
+        // Allow for the bookkeeping of the measurement itself, but not for anything per call.
+        Assert.assertTrue( "Allocated " + allocated + " bytes.", allocated < 1000 );
+    }
+
+    private static void verify( SimplePolynomialFunction f ) {
+        int outputWords = ( f.getOutputLength() + 63 ) >>> 6;
+        long[] output = new long[ outputWords + 1 ];
+        BitVector into = new BitVector( f.getOutputLength() );
+        for ( int i = 0; i < 50; ++i ) {
+            BitVector input = BitVectors.randomVector( f.getInputLength() );
+            BitVector expected = f.apply( input );
+            Arrays.fill( output, -1L );
+            f.apply( input.elements(), output );
+            Assert.assertEquals( expected, new BitVector( Arrays.copyOf( output, outputWords ), f.getOutputLength() ) );
+            Assert.assertEquals( -1L, output[ outputWords ] );
+            f.applyInto( input, into );
+            Assert.assertEquals( expected, into );
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.kryptnostic.linear.simd;
+
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+import com.kryptnostic.linear.WordKernels;
+
+/**
+ * Word kernels using the preferred vector shape of the platform. Loops process as many longs per step as fit in a
+ * vector register and finish the remainder one long at a time.
+ *
+ * The transpose swaps whole runs of rows for the strides of the butterfly that are at least as wide as a vector, and
+ * handles the narrower strides one row at a time.
+ */
+public final class VectorWordKernels implements WordKernels {
+    private static final VectorSpecies<Long> SPECIES = LongVector.SPECIES_PREFERRED;
+    private static final int                 LANES   = SPECIES.length();
+
+    /**
+     * @throws UnsupportedOperationException if the platform has no vector registers wider than a long, in which case
+     *             the scalar kernels are at least as fast.
+     */
+    public VectorWordKernels() {
+        if ( LANES < 2 ) {
+            throw new UnsupportedOperationException( "Platform does not support vectors wider than a long." );
+        }
+    }
+
+    @Override
+    public void xor( long[] src, int srcOffset, long[] dst, int dstOffset, int length ) {
+        int w = 0;
+        for ( int bound = SPECIES.loopBound( length ); w < bound; w += LANES ) {
+            LongVector.fromArray( SPECIES, dst, dstOffset + w )
+                    .lanewise( VectorOperators.XOR, LongVector.fromArray( SPECIES, src, srcOffset + w ) )
+                    .intoArray( dst, dstOffset + w );
+        }
+        for ( ; w < length; ++w ) {
+            dst[ dstOffset + w ] ^= src[ srcOffset + w ];
+        }
+    }
+
+    @Override
+    public boolean andParity( long[] a, long[] b, int length ) {
+        int w = 0;
+        long r = 0L;
+        int bound = SPECIES.loopBound( length );
+        if ( bound > 0 ) {
+            LongVector acc = LongVector.zero( SPECIES );
+            for ( ; w < bound; w += LANES ) {
+                acc = acc.lanewise(
+                        VectorOperators.XOR,
+                        LongVector.fromArray( SPECIES, a, w ).and( LongVector.fromArray( SPECIES, b, w ) ) );
+            }
+            r = acc.reduceLanes( VectorOperators.XOR );
+        }
+        for ( ; w < length; ++w ) {
+            r ^= a[ w ] & b[ w ];
+        }
+        return ( Long.bitCount( r ) & 1 ) != 0;
+    }
+
+    @Override
+    public void transpose( long[] block, int offset ) {
+        long m = 0x00000000FFFFFFFFL;
+        for ( int j = 32; j != 0; j >>>= 1, m ^= m << j ) {
+            if ( j >= LANES ) {
+                /*
+                 * Strides and lanes are powers of two, so a run of LANES rows starting at a multiple of LANES either
+                 * all have bit j set or all have it clear, and in the latter case pairs with the run j rows on.
+                 */
+                for ( int k = 0; k < 64; k += LANES ) {
+                    if ( ( k & j ) != 0 ) {
+                        continue;
+                    }
+                    int lo = offset + k;
+                    int hi = lo + j;
+                    LongVector low = LongVector.fromArray( SPECIES, block, lo );
+                    LongVector high = LongVector.fromArray( SPECIES, block, hi );
+                    LongVector t = low.lanewise( VectorOperators.LSHR, j ).lanewise( VectorOperators.XOR, high )
+                            .and( m );
+                    low.lanewise( VectorOperators.XOR, t.lanewise( VectorOperators.LSHL, j ) ).intoArray( block, lo );
+                    high.lanewise( VectorOperators.XOR, t ).intoArray( block, hi );
+                }
+            } else {
+                for ( int k = 0; k < 64; k = ( ( k | j ) + 1 ) & ~j ) {
+                    int lo = offset + k;
+                    int hi = lo + j;
+                    long t = ( ( block[ lo ] >>> j ) ^ block[ hi ] ) & m;
+                    block[ lo ] ^= t << j;
+                    block[ hi ] ^= t;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.kryptnostic.linear.simd;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.kryptnostic.linear.Kernels;
+import com.kryptnostic.linear.ScalarWordKernels;
+import com.kryptnostic.linear.WordKernels;
+
+public class VectorWordKernelsTests {
+    private static final Random      r      = new Random();
+    private static final WordKernels scalar = new ScalarWordKernels();
+    private static final WordKernels vector = new VectorWordKernels();
+
+    @Test
+    public void testXorMatchesScalar() {
+        for ( int length = 0; length < 40; ++length ) {
+            long[] src = randomWords( length + 5 );
+            long[] expected = randomWords( length + 7 );
+            long[] actual = expected.clone();
+            scalar.xor( src, 5, expected, 3, length );
+            vector.xor( src, 5, actual, 3, length );
+            Assert.assertArrayEquals( expected, actual );
+        }
+    }
+
+    @Test
+    public void testAndParityMatchesScalar() {
+        for ( int length = 0; length < 40; ++length ) {
+            for ( int i = 0; i < 16; ++i ) {
+                long[] a = randomWords( length );
+                long[] b = randomWords( length );
+                Assert.assertEquals( scalar.andParity( a, b, length ), vector.andParity( a, b, length ) );
+            }
+        }
+    }
+
+    @Test
+    public void testTransposeMatchesScalar() {
+        for ( int offset = 0; offset < 4; ++offset ) {
+            long[] expected = randomWords( 64 + offset );
+            long[] actual = Arrays.copyOf( expected, expected.length );
+            scalar.transpose( expected, offset );
+            vector.transpose( actual, offset );
+            Assert.assertArrayEquals( expected, actual );
+        }
+    }
+
+    @Test
+    public void testKernelsAreDiscovered() {
+        Assert.assertTrue( Kernels.get() instanceof VectorWordKernels );
+    }
+
+    private static long[] randomWords( int length ) {
+        long[] words = new long[ length ];
+        for ( int w = 0; w < length; ++w ) {
+            words[ w ] = r.nextLong();
+        }
+        return words;
+    }
+}